@@ -0,0 +1,104 @@
+package com.example.eventapp.database;
+
+import android.content.ContentValues;
+import android.content.Context;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.eventapp.model.Event;
+import com.example.eventapp.model.User;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+// 候补转正遇到已经报过名的队首：旧版本的批量报名不删除候补记录，这样的数据仍可能存在
+@RunWith(AndroidJUnit4.class)
+public class WaitlistPromotionTest {
+    private DatabaseHelper dbHelper;
+    private long eventId;
+    private final List<Long> userIds = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        dbHelper = DatabaseHelper.getInstance(context);
+        long now = System.currentTimeMillis();
+        eventId = dbHelper.insertEvent(new Event("waitlist test", "", "", now + 3600000L,
+                now + 7200000L, "test", 2));
+        assertNotEquals(-1, eventId);
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.deleteEvent(eventId);
+        for (Long userId : userIds) {
+            dbHelper.getWritableDatabase().delete(DatabaseHelper.TABLE_USERS,
+                    DatabaseHelper.COLUMN_ID + " = ?", new String[]{String.valueOf(userId)});
+        }
+    }
+
+    @Test
+    public void registeredUserOnWaitlistCancels() {
+        long first = addUser();
+        long second = addUser();
+        long waiting = addUser();
+        assertEquals(RegistrationResult.CLAIMED, dbHelper.claimSeat(eventId, first));
+        assertEquals(RegistrationResult.CLAIMED, dbHelper.claimSeat(eventId, second));
+        addStaleWaitlistRow(first);
+        assertEquals(RegistrationResult.WAITLISTED, dbHelper.joinWaitlist(eventId, waiting));
+
+        assertTrue(dbHelper.cancelRegistration(eventId, first));
+
+        assertFalse(dbHelper.isUserRegistered(first, eventId));
+        assertTrue(dbHelper.isUserRegistered(waiting, eventId));
+        assertEquals(0, dbHelper.getWaitlistPosition(eventId, first));
+        assertEquals(0, dbHelper.getWaitlistPosition(eventId, waiting));
+        assertEquals(2, dbHelper.getEvent(eventId).getCurrentParticipants());
+    }
+
+    @Test
+    public void registeredWaitlistHeadIsSkipped() {
+        long first = addUser();
+        long second = addUser();
+        long waiting = addUser();
+        assertEquals(RegistrationResult.CLAIMED, dbHelper.claimSeat(eventId, first));
+        assertEquals(RegistrationResult.CLAIMED, dbHelper.claimSeat(eventId, second));
+        addStaleWaitlistRow(first);
+        assertEquals(RegistrationResult.WAITLISTED, dbHelper.joinWaitlist(eventId, waiting));
+
+        assertTrue(dbHelper.cancelRegistration(eventId, second));
+
+        assertTrue(dbHelper.isUserRegistered(first, eventId));
+        assertTrue(dbHelper.isUserRegistered(waiting, eventId));
+        assertEquals(0, dbHelper.getWaitlistPosition(eventId, first));
+        assertEquals(2, dbHelper.getEvent(eventId).getCurrentParticipants());
+        // 之后的取消不再因为重复报名而整体回滚
+        assertTrue(dbHelper.cancelRegistration(eventId, waiting));
+        assertEquals(1, dbHelper.getEvent(eventId).getCurrentParticipants());
+    }
+
+    private long addUser() {
+        String name = "waitlist_" + System.nanoTime();
+        long userId = dbHelper.addUser(new User(name, "secret", name + "@example.com", false));
+        assertNotEquals(-1, userId);
+        userIds.add(userId);
+        return userId;
+    }
+
+    // 直接写入一条候补记录，模拟已报名用户残留在名单里的情况
+    private void addStaleWaitlistRow(long userId) {
+        ContentValues values = new ContentValues();
+        values.put(DatabaseHelper.COLUMN_EVENT_ID, eventId);
+        values.put(DatabaseHelper.COLUMN_USER_ID, userId);
+        values.put(DatabaseHelper.COLUMN_JOIN_TIME, System.currentTimeMillis());
+        assertNotEquals(-1, dbHelper.getWritableDatabase().insert(DatabaseHelper.TABLE_WAITLIST, null, values));
+    }
+}
@@ -3,23 +3,31 @@ package com.example.eventapp;
 import android.app.DatePickerDialog;
 import android.app.TimePickerDialog;
 import android.content.SharedPreferences;
+import android.location.Location;
 import android.os.Bundle;
 import android.text.TextUtils;
 import android.view.MenuItem;
 import android.view.View;
+import android.widget.RadioGroup;
 import android.widget.Toast;
 
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
 
 import com.example.eventapp.database.DatabaseHelper;
 import com.example.eventapp.model.Event;
+import com.example.eventapp.model.EventSeries;
+import com.example.eventapp.utils.EventValidator;
+import com.example.eventapp.utils.LocationHelper;
 import com.google.android.material.textfield.TextInputEditText;
 
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Locale;
+import java.util.Map;
 
 public class CreateEventActivity extends AppCompatActivity {
     private TextInputEditText titleInput;
@@ -28,11 +36,23 @@ public class CreateEventActivity extends AppCompatActivity {
     private TextInputEditText startTimeInput;
     private TextInputEditText endTimeInput;
     private TextInputEditText maxParticipantsInput;
+    private TextInputEditText latitudeInput;
+    private TextInputEditText longitudeInput;
+    private RadioGroup repeatGroup;
+    private View repeatEndLayout;
+    private TextInputEditText repeatCountInput;
+    private TextInputEditText repeatUntilInput;
     private DatabaseHelper dbHelper;
     private Calendar startTime;
     private Calendar endTime;
+    // 重复截止日期，为 null 表示不限
+    private Calendar repeatUntil;
     private SimpleDateFormat dateFormat;
 
+    private final ActivityResultLauncher<String[]> locationPermissionLauncher = registerForActivityResult(
+            new ActivityResultContracts.RequestMultiplePermissions(),
+            this::onLocationPermissionResult);
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -41,7 +61,7 @@ public class CreateEventActivity extends AppCompatActivity {
         // 初始化
         initViews();
         setupToolbar();
-        dbHelper = new DatabaseHelper(this);
+        dbHelper = DatabaseHelper.getInstance(this);
         dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm", Locale.getDefault());
         startTime = Calendar.getInstance();
         endTime = Calendar.getInstance();
@@ -49,9 +69,11 @@ public class CreateEventActivity extends AppCompatActivity {
 
         // 设置时间选择器
         setupTimeInputs();
+        setupRepeatInputs();
 
         // 设置创建按钮
         findViewById(R.id.createButton).setOnClickListener(v -> createEvent());
+        findViewById(R.id.useCurrentLocationButton).setOnClickListener(v -> fillCurrentLocation());
     }
 
     private void initViews() {
@@ -61,6 +83,36 @@ public class CreateEventActivity extends AppCompatActivity {
         startTimeInput = findViewById(R.id.startTimeInput);
         endTimeInput = findViewById(R.id.endTimeInput);
         maxParticipantsInput = findViewById(R.id.maxParticipantsInput);
+        latitudeInput = findViewById(R.id.latitudeInput);
+        longitudeInput = findViewById(R.id.longitudeInput);
+        repeatGroup = findViewById(R.id.repeatGroup);
+        repeatEndLayout = findViewById(R.id.repeatEndLayout);
+        repeatCountInput = findViewById(R.id.repeatCountInput);
+        repeatUntilInput = findViewById(R.id.repeatUntilInput);
+    }
+
+    // 用设备当前位置填写活动坐标，没有定位权限时先申请
+    private void fillCurrentLocation() {
+        if (!LocationHelper.hasPermission(this)) {
+            locationPermissionLauncher.launch(LocationHelper.PERMISSIONS);
+            return;
+        }
+        Location location = LocationHelper.getLastKnownLocation(this);
+        if (location == null) {
+            Toast.makeText(this, "Unable to determine your current location", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        latitudeInput.setText(String.valueOf(location.getLatitude()));
+        longitudeInput.setText(String.valueOf(location.getLongitude()));
+    }
+
+    private void onLocationPermissionResult(Map<String, Boolean> result) {
+        if (LocationHelper.hasPermission(this)) {
+            fillCurrentLocation();
+        } else {
+            Toast.makeText(this, "Location permission is required to use your current location",
+                    Toast.LENGTH_SHORT).show();
+        }
     }
 
     private void setupToolbar() {
@@ -118,6 +170,47 @@ public class CreateEventActivity extends AppCompatActivity {
         endTimeInput.setOnClickListener(timeClickListener);
     }
 
+    // 选择重复方式后才显示次数和截止日期；截止日期取所选那天的最后一刻
+    private void setupRepeatInputs() {
+        repeatGroup.setOnCheckedChangeListener((group, checkedId) ->
+                repeatEndLayout.setVisibility(checkedId == R.id.repeatNone ? View.GONE : View.VISIBLE));
+
+        SimpleDateFormat dayFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
+        repeatUntilInput.setOnClickListener(v -> {
+            Calendar calendar = repeatUntil != null ? repeatUntil : (Calendar) startTime.clone();
+            new DatePickerDialog(this,
+                    (view, year, month, dayOfMonth) -> {
+                        Calendar selected = Calendar.getInstance();
+                        selected.set(year, month, dayOfMonth, 23, 59, 59);
+                        repeatUntil = selected;
+                        repeatUntilInput.setText(dayFormat.format(selected.getTime()));
+                        repeatUntilInput.setError(null);
+                    },
+                    calendar.get(Calendar.YEAR),
+                    calendar.get(Calendar.MONTH),
+                    calendar.get(Calendar.DAY_OF_MONTH)).show();
+        });
+        repeatUntilInput.setOnLongClickListener(v -> {
+            // 长按清除截止日期
+            repeatUntil = null;
+            repeatUntilInput.setText("");
+            return true;
+        });
+    }
+
+    // 选中的重复方式，不重复时返回 null
+    private EventSeries.Frequency selectedFrequency() {
+        int checkedId = repeatGroup.getCheckedRadioButtonId();
+        if (checkedId == R.id.repeatDaily) {
+            return EventSeries.Frequency.DAILY;
+        } else if (checkedId == R.id.repeatWeekly) {
+            return EventSeries.Frequency.WEEKLY;
+        } else if (checkedId == R.id.repeatMonthly) {
+            return EventSeries.Frequency.MONTHLY;
+        }
+        return null;
+    }
+
     @Override
     public boolean onOptionsItemSelected(@NonNull MenuItem item) {
         if (item.getItemId() == android.R.id.home) {
@@ -140,6 +233,13 @@ public class CreateEventActivity extends AppCompatActivity {
         SharedPreferences prefs = getSharedPreferences("EventApp", MODE_PRIVATE);
         String organizer = prefs.getString("username", "");
 
+        // 周期活动只保存一条重复规则，每次的活动在浏览时生成
+        EventSeries.Frequency frequency = selectedFrequency();
+        if (frequency != null) {
+            createEventSeries(frequency, organizer);
+            return;
+        }
+
         // 创建事件对象
         Event event = new Event();
         event.setTitle(titleInput.getText().toString().trim());
@@ -150,6 +250,8 @@ public class CreateEventActivity extends AppCompatActivity {
         event.setOrganizer(organizer);
         event.setMaxParticipants(Integer.parseInt(maxParticipantsInput.getText().toString().trim()));
         event.setCurrentParticipants(0);
+        event.setLatitude(EventValidator.parseCoordinate(latitudeInput.getText()));
+        event.setLongitude(EventValidator.parseCoordinate(longitudeInput.getText()));
 
         // 保存到数据库
         long eventId = dbHelper.insertEvent(event);
@@ -162,53 +264,84 @@ public class CreateEventActivity extends AppCompatActivity {
         }
     }
 
-    private boolean validateInput() {
-        if (TextUtils.isEmpty(titleInput.getText())) {
-            titleInput.setError("Please enter the event title");
-            return false;
-        }
-
-        if (TextUtils.isEmpty(descriptionInput.getText())) {
-            descriptionInput.setError("Please enter the event description");
-            return false;
-        }
-
-        if (TextUtils.isEmpty(locationInput.getText())) {
-            locationInput.setError("Please enter the event location");
-            return false;
-        }
+    private void createEventSeries(EventSeries.Frequency frequency, String organizer) {
+        EventSeries series = new EventSeries();
+        series.setTitle(titleInput.getText().toString().trim());
+        series.setDescription(descriptionInput.getText().toString().trim());
+        series.setLocation(locationInput.getText().toString().trim());
+        series.setStartTime(startTime.getTimeInMillis());
+        series.setEndTime(endTime.getTimeInMillis());
+        series.setOrganizer(organizer);
+        series.setMaxParticipants(Integer.parseInt(maxParticipantsInput.getText().toString().trim()));
+        series.setLatitude(EventValidator.parseCoordinate(latitudeInput.getText()));
+        series.setLongitude(EventValidator.parseCoordinate(longitudeInput.getText()));
+        series.setFrequency(frequency);
+        String count = repeatCountInput.getText() != null ? repeatCountInput.getText().toString().trim() : "";
+        series.setOccurrenceCount(count.isEmpty() ? null : Integer.parseInt(count));
+        series.setUntil(repeatUntil != null ? repeatUntil.getTimeInMillis() : null);
 
-        if (TextUtils.isEmpty(startTimeInput.getText())) {
-            startTimeInput.setError("Please select a start time");
-            return false;
+        long seriesId = dbHelper.insertEventSeries(series);
+        if (seriesId != -1) {
+            Toast.makeText(this, "Recurring event created successfully", Toast.LENGTH_SHORT).show();
+            setResult(RESULT_OK);
+            finish();
+        } else {
+            Toast.makeText(this, "Creation failed, please try again", Toast.LENGTH_SHORT).show();
         }
+    }
 
-        if (TextUtils.isEmpty(endTimeInput.getText())) {
-            endTimeInput.setError("Please select an end time");
-            return false;
+    private boolean validateInput() {
+        Long start = TextUtils.isEmpty(startTimeInput.getText()) ? null : startTime.getTimeInMillis();
+        Long end = TextUtils.isEmpty(endTimeInput.getText()) ? null : endTime.getTimeInMillis();
+        EventValidator.Problem problem = EventValidator.validate(titleInput.getText(),
+                descriptionInput.getText(), locationInput.getText(), start, end,
+                maxParticipantsInput.getText());
+        if (problem == null) {
+            problem = EventValidator.validateCoordinates(latitudeInput.getText(), longitudeInput.getText());
         }
-
-        if (endTime.before(startTime)) {
-            endTimeInput.setError("End time cannot be earlier than start time");
-            return false;
+        if (problem == null && selectedFrequency() != null) {
+            problem = EventValidator.validateRepeat(repeatCountInput.getText(),
+                    repeatUntil != null ? repeatUntil.getTimeInMillis() : null, startTime.getTimeInMillis());
         }
-
-        if (TextUtils.isEmpty(maxParticipantsInput.getText())) {
-            maxParticipantsInput.setError("Please enter the maximum number of participants");
-            return false;
+        if (problem == null) {
+            return true;
         }
 
-        try {
-            int maxParticipants = Integer.parseInt(maxParticipantsInput.getText().toString().trim());
-            if (maxParticipants <= 0) {
-                maxParticipantsInput.setError("Number of participants must be greater than 0");
-                return false;
-            }
-        } catch (NumberFormatException e) {
-            maxParticipantsInput.setError("Please enter a valid number");
-            return false;
+        // 把错误提示显示在对应的输入框上
+        switch (problem) {
+            case TITLE:
+                titleInput.setError(problem.getMessage());
+                break;
+            case DESCRIPTION:
+                descriptionInput.setError(problem.getMessage());
+                break;
+            case LOCATION:
+                locationInput.setError(problem.getMessage());
+                break;
+            case START_TIME:
+                startTimeInput.setError(problem.getMessage());
+                break;
+            case END_TIME:
+            case END_BEFORE_START:
+                endTimeInput.setError(problem.getMessage());
+                break;
+            case COORDINATES_INCOMPLETE:
+            case LATITUDE_INVALID:
+                latitudeInput.setError(problem.getMessage());
+                break;
+            case LONGITUDE_INVALID:
+                longitudeInput.setError(problem.getMessage());
+                break;
+            case REPEAT_COUNT_INVALID:
+                repeatCountInput.setError(problem.getMessage());
+                break;
+            case REPEAT_UNTIL_BEFORE_START:
+                repeatUntilInput.setError(problem.getMessage());
+                break;
+            default:
+                maxParticipantsInput.setError(problem.getMessage());
+                break;
         }
-
-        return true;
+        return false;
     }
 }
\ No newline at end of file
@@ -17,6 +17,8 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
 
 import com.example.eventapp.database.DatabaseHelper;
+import com.example.eventapp.database.InvalidationTracker;
+import com.example.eventapp.database.RegistrationResult;
 import com.example.eventapp.model.Event;
 import com.google.android.material.button.MaterialButton;
 import com.example.eventapp.utils.CalendarHelper;
@@ -26,7 +28,9 @@ import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import java.util.Locale;
 
 public class EventDetailActivity extends AppCompatActivity {
@@ -36,18 +40,28 @@ public class EventDetailActivity extends AppCompatActivity {
     private TextView locationText;
     private TextView participantsText;
     private TextView descriptionText;
+    private TextView conflictText;
     private MaterialButton joinButton;
     private MaterialButton addToCalendarButton;
     private ProgressBar loadingView;
     private DatabaseHelper dbHelper;
+    private long eventId = -1;
     private Event event;
     private long userId;
     private boolean isRegistered;
+    // 在候补名单中的位置，0 表示不在名单里
+    private int waitlistPosition;
+    // 与已报名活动时间重叠的活动，加载详情时就查好，点击报名时不需要再等待
+    private List<Event> conflicts = new ArrayList<>();
     private SimpleDateFormat dateFormat;
     private static final int CALENDAR_PERMISSION_REQUEST_CODE = 1001;
     private View adminButtonsContainer;
+    private View rosterButton;
     private boolean isStaff;
-    private static final int EDIT_EVENT_REQUEST = 1002;
+    // 可见期间订阅活动详情，活动、报名或候补有变化时推送最新内容
+    private InvalidationTracker.Subscription detailSubscription;
+    // 本页删除活动期间，推送来的“活动不存在”不再提示
+    private boolean isDeleting;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -58,7 +72,7 @@ public class EventDetailActivity extends AppCompatActivity {
         initViews();
         setupToolbar();
         
-        dbHelper = new DatabaseHelper(this);
+        dbHelper = DatabaseHelper.getInstance(this);
         dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm", Locale.getDefault());
         
         // 检查是否是工作人员
@@ -66,16 +80,39 @@ public class EventDetailActivity extends AppCompatActivity {
         isStaff = prefs.getBoolean("isStaff", false);
         userId = prefs.getLong("userId", -1);
         
-        // 获取活动ID
-        long eventId = getIntent().getLongExtra("event_id", -1);
+        // 获取活动ID，活动数据在 onStart 订阅后加载
+        eventId = getIntent().getLongExtra("event_id", -1);
         if (eventId == -1) {
             Toast.makeText(this, "Invalid Activity ID", Toast.LENGTH_SHORT).show();
             finish();
+        }
+    }
+
+    @Override
+    protected void onStart() {
+        super.onStart();
+        if (eventId == -1) {
             return;
         }
-        
-        // 加载活动数据
-        loadEventData(eventId);
+        if (event == null) {
+            showLoading(true);
+        }
+        // 同一个用户打开的同一个活动共用一个查询；查询里不引用界面对象
+        final DatabaseHelper db = dbHelper;
+        final long id = eventId;
+        final long user = userId;
+        detailSubscription = dbHelper.getInvalidationTracker().observe("event_detail:" + id + ":" + user,
+                DatabaseHelper.EVENT_DETAIL_TABLES, () -> loadDetail(db, id, user),
+                detail -> runOnUiThread(() -> onDetailLoaded(detail)));
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        if (detailSubscription != null) {
+            detailSubscription.cancel();
+            detailSubscription = null;
+        }
     }
 
     private void initViews() {
@@ -85,10 +122,12 @@ public class EventDetailActivity extends AppCompatActivity {
         locationText = findViewById(R.id.locationText);
         participantsText = findViewById(R.id.participantsText);
         descriptionText = findViewById(R.id.descriptionText);
+        conflictText = findViewById(R.id.conflictText);
         joinButton = findViewById(R.id.joinButton);
         addToCalendarButton = findViewById(R.id.addToCalendarButton);
         loadingView = findViewById(R.id.loadingView);
         adminButtonsContainer = findViewById(R.id.adminButtonsContainer);
+        rosterButton = findViewById(R.id.rosterButton);
         
         joinButton.setOnClickListener(v -> toggleRegistration());
         addToCalendarButton.setOnClickListener(v -> addToCalendar());
@@ -96,6 +135,7 @@ public class EventDetailActivity extends AppCompatActivity {
         // 设置编辑和删除按钮点击事件
         findViewById(R.id.editButton).setOnClickListener(v -> editEvent());
         findViewById(R.id.deleteButton).setOnClickListener(v -> deleteEvent());
+        rosterButton.setOnClickListener(v -> viewRoster());
     }
 
     private void setupToolbar() {
@@ -107,33 +147,42 @@ public class EventDetailActivity extends AppCompatActivity {
         }
     }
 
-    private void loadEventData(long eventId) {
-        showLoading(true);
-        new Thread(() -> {
-            try {
-                // 先获取活动数据
-                event = dbHelper.getEvent(eventId);
-                // 再检查用户报名状态，注意参数顺序：先userId，后eventId
-                isRegistered = dbHelper.isUserRegistered(userId, eventId);
-                
-                runOnUiThread(() -> {
-                    if (event != null) {
-                        updateUI();
-                        // 如果是工作人员，显示管理按钮
-                        adminButtonsContainer.setVisibility(isStaff ? View.VISIBLE : View.GONE);
-                    } else {
-                        Toast.makeText(this, "Failed to load event data", Toast.LENGTH_SHORT).show();
-                        finish();
-                    }
-                    showLoading(false);
-                });
-            } catch (Exception e) {
-                runOnUiThread(() -> {
-                    Toast.makeText(this, "Error occurred while loading data:" + e.getMessage(), Toast.LENGTH_SHORT).show();
-                    showLoading(false);
-                });
-            }
-        }).start();
+    // 在后台线程读取详情页需要的全部数据，出错时返回 null
+    private static EventDetail loadDetail(DatabaseHelper db, long eventId, long userId) {
+        try {
+            EventDetail detail = new EventDetail();
+            // 先获取活动数据
+            detail.event = db.getEvent(eventId);
+            // 再检查用户报名状态，注意参数顺序：先userId，后eventId
+            detail.isRegistered = db.isUserRegistered(userId, eventId);
+            detail.waitlistPosition = detail.isRegistered ? 0 : db.getWaitlistPosition(eventId, userId);
+            detail.conflicts = detail.event != null && !detail.isRegistered
+                    ? db.getConflictingEvents(userId, detail.event) : new ArrayList<>();
+            return detail;
+        } catch (Exception e) {
+            Log.e("EventDetailActivity", "加载活动详情时出错: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void onDetailLoaded(EventDetail detail) {
+        if (detailSubscription == null || isFinishing() || isDeleting) {
+            return;
+        }
+        showLoading(false);
+        if (detail == null || detail.event == null) {
+            Toast.makeText(this, "Failed to load event data", Toast.LENGTH_SHORT).show();
+            finish();
+            return;
+        }
+        event = detail.event;
+        isRegistered = detail.isRegistered;
+        waitlistPosition = detail.waitlistPosition;
+        conflicts = detail.conflicts;
+        updateUI();
+        // 如果是工作人员，显示管理按钮
+        adminButtonsContainer.setVisibility(isStaff ? View.VISIBLE : View.GONE);
+        rosterButton.setVisibility(isStaff ? View.VISIBLE : View.GONE);
     }
 
     private void updateUI() {
@@ -149,6 +198,14 @@ public class EventDetailActivity extends AppCompatActivity {
                     event.getMaxParticipants()));
             descriptionText.setText(event.getDescription());
 
+            // 还没报名时提示时间冲突
+            if (!isRegistered && waitlistPosition == 0 && !conflicts.isEmpty()) {
+                conflictText.setText(getString(R.string.schedule_conflict, describeConflicts()));
+                conflictText.setVisibility(View.VISIBLE);
+            } else {
+                conflictText.setVisibility(View.GONE);
+            }
+
             // 更新按钮状态
             updateButtonState();
         }
@@ -163,47 +220,80 @@ public class EventDetailActivity extends AppCompatActivity {
             joinButton.setEnabled(true); // 已报名的用户始终可以取消报名
             joinButton.setIcon(getDrawable(android.R.drawable.ic_menu_close_clear_cancel));
             addToCalendarButton.setVisibility(View.VISIBLE);
+        } else if (waitlistPosition > 0) {
+            joinButton.setText(getString(R.string.leave_waitlist, waitlistPosition));
+            joinButton.setEnabled(true);
+            joinButton.setIcon(getDrawable(android.R.drawable.ic_menu_close_clear_cancel));
+            addToCalendarButton.setVisibility(View.GONE);
         } else {
-            joinButton.setText(isFull ? getString(R.string.event_full) : getString(R.string.join_event));
-            joinButton.setEnabled(!isFull); // 未报名的用户只有在活动未满时才能报名
+            // 活动已满时可以加入候补名单，有人取消后自动递补
+            joinButton.setText(isFull ? getString(R.string.join_waitlist) : getString(R.string.join_event));
+            joinButton.setEnabled(true);
             joinButton.setIcon(getDrawable(android.R.drawable.ic_menu_add));
             addToCalendarButton.setVisibility(View.GONE);
         }
     }
 
+    // 冲突活动的标题和时间，用于提示
+    private String describeConflicts() {
+        List<String> parts = new ArrayList<>();
+        for (Event conflict : conflicts) {
+            parts.add(String.format("%s (%s - %s)", conflict.getTitle(),
+                    dateFormat.format(new Date(conflict.getStartTime())),
+                    dateFormat.format(new Date(conflict.getEndTime()))));
+        }
+        return TextUtils.join(", ", parts);
+    }
+
     private void toggleRegistration() {
         if (event == null) {
             Toast.makeText(this, "Event data not loaded, please try again later", Toast.LENGTH_SHORT).show();
             return;
         }
 
+        // 报名前先确认时间冲突，冲突列表在加载详情时已经查好
+        if (!isRegistered && waitlistPosition == 0 && !conflicts.isEmpty()) {
+            new androidx.appcompat.app.AlertDialog.Builder(this)
+                    .setTitle("Schedule Conflict")
+                    .setMessage(getString(R.string.schedule_conflict_confirm, describeConflicts()))
+                    .setPositiveButton("Join Anyway", (dialog, which) -> performToggleRegistration())
+                    .setNegativeButton("Cancel", null)
+                    .show();
+            return;
+        }
+        performToggleRegistration();
+    }
+
+    private void performToggleRegistration() {
         showLoading(true);
+        // 在主线程取出当前状态，后台线程只做写操作，不读写页面字段，也不修改订阅推送来的 event；
+        // 写入提交后订阅会推送最新的人数、报名状态和候补位置
+        final long id = event.getId();
+        final long user = userId;
+        final boolean registered = isRegistered;
+        final boolean waitlisted = waitlistPosition > 0;
+        final boolean isFull = event.getCurrentParticipants() >= event.getMaxParticipants();
         new Thread(() -> {
-            boolean success;
             try {
-                if (isRegistered) {
-                    success = dbHelper.cancelRegistration(event.getId(), userId);
-                    if (success) {
-                        isRegistered = false;
-                        event.setCurrentParticipants(event.getCurrentParticipants() - 1);
-                    }
+                boolean success;
+                RegistrationResult result = null;
+                String message;
+                if (registered) {
+                    success = dbHelper.cancelRegistration(id, user);
+                    message = success ? "Registration canceled" : "Failed to cancel registration";
+                } else if (waitlisted) {
+                    success = dbHelper.leaveWaitlist(id, user);
+                    message = success ? "Left the waitlist" : "Failed to leave the waitlist";
                 } else {
-                    success = dbHelper.registerEvent(event.getId(), userId);
-                    if (success) {
-                        isRegistered = true;
-                        event.setCurrentParticipants(event.getCurrentParticipants() + 1);
-                    }
+                    result = isFull ? dbHelper.joinWaitlist(id, user) : dbHelper.claimSeat(id, user);
+                    success = result == RegistrationResult.CLAIMED;
+                    message = getRegistrationMessage(result);
                 }
-                
-                final boolean finalSuccess = success;
+                final boolean succeeded = success;
+                final RegistrationResult registration = result;
                 runOnUiThread(() -> {
-                    if (finalSuccess) {
-                        updateUI(); // 更新整个UI，包括参与人数和按钮状态
-                        Toast.makeText(this, isRegistered ? "Registration successful" : "Registration canceled", Toast.LENGTH_SHORT).show();
-                    } else {
-                        Toast.makeText(this, isRegistered ? "Failed to cancel registration" : "Registration failed, the event may be full", Toast.LENGTH_SHORT).show();
-                    }
-                    showLoading(false);
+                    onToggleFinished(registered, waitlisted, succeeded, registration);
+                    Toast.makeText(this, message, Toast.LENGTH_SHORT).show();
                 });
             } catch (Exception e) {
                 runOnUiThread(() -> {
@@ -214,6 +304,37 @@ public class EventDetailActivity extends AppCompatActivity {
         }).start();
     }
 
+    // 在主线程上先更新按钮状态，避免推送到达之前重复操作；人数等其余内容等订阅推送
+    private void onToggleFinished(boolean wasRegistered, boolean wasWaitlisted, boolean success,
+                                  RegistrationResult result) {
+        showLoading(false);
+        if (wasRegistered && success) {
+            isRegistered = false;
+        } else if (wasWaitlisted && success) {
+            waitlistPosition = 0;
+        } else if (result == RegistrationResult.CLAIMED || result == RegistrationResult.ALREADY_REGISTERED) {
+            isRegistered = true;
+        }
+        updateUI();
+    }
+
+    private String getRegistrationMessage(RegistrationResult result) {
+        switch (result) {
+            case CLAIMED:
+                return "Registration successful";
+            case FULL:
+                return "Registration failed, the event is full";
+            case WAITLISTED:
+                return "The event is full, you have been added to the waitlist";
+            case ALREADY_REGISTERED:
+                return "You have already registered for this event";
+            case EVENT_NOT_FOUND:
+                return "This event no longer exists";
+            default:
+                return "Registration failed, please try again later";
+        }
+    }
+
     private void addToCalendar() {
         if (event == null) {
             Toast.makeText(this, "Event information is unavailable", Toast.LENGTH_SHORT).show();
@@ -255,19 +376,18 @@ public class EventDetailActivity extends AppCompatActivity {
         }
     }
 
-    @Override
-    protected void onActivityResult(int requestCode, int resultCode, Intent data) {
-        super.onActivityResult(requestCode, resultCode, data);
-        if (requestCode == EDIT_EVENT_REQUEST && resultCode == RESULT_OK) {
-            // 重新加载活动数据
-            loadEventData(event.getId());
-        }
-    }
-
+    // 修改保存后回到这里时，订阅会推送修改后的内容
     private void editEvent() {
         Intent intent = new Intent(this, EventEditActivity.class);
         intent.putExtra("event_id", event.getId());
-        startActivityForResult(intent, EDIT_EVENT_REQUEST);
+        startActivity(intent);
+    }
+
+    private void viewRoster() {
+        Intent intent = new Intent(this, RosterActivity.class);
+        intent.putExtra("event_id", event.getId());
+        intent.putExtra("event_title", event.getTitle());
+        startActivity(intent);
     }
 
     private void deleteEvent() {
@@ -276,9 +396,12 @@ public class EventDetailActivity extends AppCompatActivity {
             .setMessage("Are you sure you want to delete this event? This action cannot be undone.")
             .setPositiveButton("Delete", (dialog, which) -> {
                 showLoading(true);
+                isDeleting = true;
+                final long id = event.getId();
                 new Thread(() -> {
-                    boolean success = dbHelper.deleteEvent(event.getId());
+                    boolean success = dbHelper.deleteEvent(id);
                     runOnUiThread(() -> {
+                        isDeleting = false;
                         if (success) {
                             Toast.makeText(this, "Event deleted", Toast.LENGTH_SHORT).show();
                             setResult(RESULT_OK);
@@ -308,4 +431,12 @@ public class EventDetailActivity extends AppCompatActivity {
         }
         return super.onOptionsItemSelected(item);
     }
-} 
\ No newline at end of file
+
+    // 详情页一次加载的数据，作为订阅查询的结果在同一活动的详情页之间共用
+    private static final class EventDetail {
+        Event event;
+        boolean isRegistered;
+        int waitlistPosition;
+        List<Event> conflicts;
+    }
+}
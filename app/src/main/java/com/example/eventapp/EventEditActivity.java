@@ -2,22 +2,28 @@ package com.example.eventapp;
 
 import android.app.DatePickerDialog;
 import android.app.TimePickerDialog;
+import android.location.Location;
 import android.os.Bundle;
 import android.text.TextUtils;
 import android.view.MenuItem;
 import android.view.View;
 import android.widget.Toast;
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
 import com.example.eventapp.database.DatabaseHelper;
 import com.example.eventapp.model.Event;
+import com.example.eventapp.utils.EventValidator;
+import com.example.eventapp.utils.LocationHelper;
 import com.google.android.material.textfield.TextInputEditText;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.Locale;
+import java.util.Map;
 
 public class EventEditActivity extends AppCompatActivity {
     private TextInputEditText titleInput;
@@ -26,6 +32,8 @@ public class EventEditActivity extends AppCompatActivity {
     private TextInputEditText startTimeInput;
     private TextInputEditText endTimeInput;
     private TextInputEditText maxParticipantsInput;
+    private TextInputEditText latitudeInput;
+    private TextInputEditText longitudeInput;
     private View loadingView;
     private DatabaseHelper dbHelper;
     private SimpleDateFormat dateFormat;
@@ -33,6 +41,10 @@ public class EventEditActivity extends AppCompatActivity {
     private Calendar startTime;
     private Calendar endTime;
 
+    private final ActivityResultLauncher<String[]> locationPermissionLauncher = registerForActivityResult(
+            new ActivityResultContracts.RequestMultiplePermissions(),
+            this::onLocationPermissionResult);
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -42,7 +54,7 @@ public class EventEditActivity extends AppCompatActivity {
         initViews();
         setupToolbar();
         
-        dbHelper = new DatabaseHelper(this);
+        dbHelper = DatabaseHelper.getInstance(this);
         dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm", Locale.getDefault());
         
         // 获取要编辑的活动ID
@@ -61,6 +73,7 @@ public class EventEditActivity extends AppCompatActivity {
         
         // 设置更新按钮
         findViewById(R.id.updateButton).setOnClickListener(v -> updateEvent());
+        findViewById(R.id.useCurrentLocationButton).setOnClickListener(v -> fillCurrentLocation());
     }
 
     private void initViews() {
@@ -70,9 +83,35 @@ public class EventEditActivity extends AppCompatActivity {
         startTimeInput = findViewById(R.id.startTimeInput);
         endTimeInput = findViewById(R.id.endTimeInput);
         maxParticipantsInput = findViewById(R.id.maxParticipantsInput);
+        latitudeInput = findViewById(R.id.latitudeInput);
+        longitudeInput = findViewById(R.id.longitudeInput);
         loadingView = findViewById(R.id.loadingView);
     }
 
+    // 用设备当前位置填写活动坐标，没有定位权限时先申请
+    private void fillCurrentLocation() {
+        if (!LocationHelper.hasPermission(this)) {
+            locationPermissionLauncher.launch(LocationHelper.PERMISSIONS);
+            return;
+        }
+        Location location = LocationHelper.getLastKnownLocation(this);
+        if (location == null) {
+            Toast.makeText(this, "Unable to determine your current location", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        latitudeInput.setText(String.valueOf(location.getLatitude()));
+        longitudeInput.setText(String.valueOf(location.getLongitude()));
+    }
+
+    private void onLocationPermissionResult(Map<String, Boolean> result) {
+        if (LocationHelper.hasPermission(this)) {
+            fillCurrentLocation();
+        } else {
+            Toast.makeText(this, "Location permission is required to use your current location",
+                    Toast.LENGTH_SHORT).show();
+        }
+    }
+
     private void setupToolbar() {
         Toolbar toolbar = findViewById(R.id.toolbar);
         setSupportActionBar(toolbar);
@@ -94,6 +133,10 @@ public class EventEditActivity extends AppCompatActivity {
                     startTimeInput.setText(dateFormat.format(new Date(currentEvent.getStartTime())));
                     endTimeInput.setText(dateFormat.format(new Date(currentEvent.getEndTime())));
                     maxParticipantsInput.setText(String.valueOf(currentEvent.getMaxParticipants()));
+                    if (currentEvent.hasCoordinates()) {
+                        latitudeInput.setText(String.valueOf(currentEvent.getLatitude()));
+                        longitudeInput.setText(String.valueOf(currentEvent.getLongitude()));
+                    }
                     
                     startTime = Calendar.getInstance();
                     endTime = Calendar.getInstance();
@@ -155,6 +198,8 @@ public class EventEditActivity extends AppCompatActivity {
                 currentEvent.setStartTime(startDate.getTime());
                 currentEvent.setEndTime(endDate.getTime());
                 currentEvent.setMaxParticipants(Integer.parseInt(maxParticipantsInput.getText().toString()));
+                currentEvent.setLatitude(EventValidator.parseCoordinate(latitudeInput.getText()));
+                currentEvent.setLongitude(EventValidator.parseCoordinate(longitudeInput.getText()));
 
                 boolean success = dbHelper.updateEvent(currentEvent);
                 runOnUiThread(() -> {
@@ -223,6 +268,15 @@ public class EventEditActivity extends AppCompatActivity {
             maxParticipantsInput.setError("Please enter a valid number");
             return false;
         }
+        EventValidator.Problem coordinatesProblem = EventValidator.validateCoordinates(
+                latitudeInput.getText(), longitudeInput.getText());
+        if (coordinatesProblem == EventValidator.Problem.LONGITUDE_INVALID) {
+            longitudeInput.setError(coordinatesProblem.getMessage());
+            return false;
+        } else if (coordinatesProblem != null) {
+            latitudeInput.setError(coordinatesProblem.getMessage());
+            return false;
+        }
 
         return true;
     }
@@ -48,7 +48,7 @@ public class LoginActivity extends AppCompatActivity {
         setupButtons();
         
         // 初始化数据库
-        dbHelper = new DatabaseHelper(this);
+        dbHelper = DatabaseHelper.getInstance(this);
         
         // 配置Google登录
         setupGoogleSignIn();
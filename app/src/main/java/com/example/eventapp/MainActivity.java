@@ -2,17 +2,28 @@ package com.example.eventapp;
 
 import android.content.Intent;
 import android.content.SharedPreferences;
+import android.location.Location;
+import android.net.Uri;
 import android.os.Bundle;
+import android.os.CancellationSignal;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.Editable;
+import android.text.TextUtils;
+import android.text.TextWatcher;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
 import android.view.inputmethod.EditorInfo;
+import android.widget.ArrayAdapter;
+import android.widget.ListPopupWindow;
 import android.widget.ProgressBar;
 import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.contract.ActivityResultContracts;
+import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
 import androidx.recyclerview.widget.LinearLayoutManager;
@@ -21,19 +32,31 @@ import androidx.swiperefreshlayout.widget.SwipeRefreshLayout;
 
 import com.example.eventapp.adapter.EventAdapter;
 import com.example.eventapp.database.DatabaseHelper;
+import com.example.eventapp.database.EventChanges;
+import com.example.eventapp.database.EventImporter;
+import com.example.eventapp.database.InvalidationTracker;
+import com.example.eventapp.database.ParticipantCountAuditor;
 import com.example.eventapp.fragment.ProfileFragment;
 import com.example.eventapp.model.Event;
+import com.example.eventapp.utils.LocationHelper;
 import com.google.android.material.bottomnavigation.BottomNavigationView;
 import com.google.android.material.button.MaterialButton;
 import com.google.android.material.dialog.MaterialAlertDialogBuilder;
 import com.google.android.material.radiobutton.MaterialRadioButton;
 import com.google.android.material.chip.ChipGroup;
+import com.google.android.material.switchmaterial.SwitchMaterial;
 import com.google.android.material.textfield.TextInputEditText;
 import android.widget.RadioGroup;
 import androidx.fragment.app.Fragment;
 
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class MainActivity extends AppCompatActivity implements EventAdapter.OnEventClickListener {
     private RecyclerView recyclerView;
@@ -49,16 +72,63 @@ public class MainActivity extends AppCompatActivity implements EventAdapter.OnEv
     private String currentKeyword = "";
     private String currentTimeFilter = "";
     private String currentStatusFilter = "";
+    // “附近的活动”筛选使用的位置，为 null 表示没有开启
+    private Location nearMeLocation;
+    private double nearMeRadiusKm = DEFAULT_NEAR_ME_RADIUS_KM;
     private View fragmentContainer;
     private View searchLayout;
     private View filterButton;
     private View chipGroupContainer;
 
-    private final ActivityResultLauncher<Intent> createEventLauncher = registerForActivityResult(
-            new ActivityResultContracts.StartActivityForResult(),
+    // 距离列表末尾还剩多少条时开始加载下一页
+    private static final int PREFETCH_DISTANCE = 10;
+    // 输入停顿多久后开始搜索，连续输入时只执行最后一次
+    private static final long SEARCH_DEBOUNCE_MILLIS = 300;
+    // 联想下拉框最多显示的条数
+    private static final int MAX_SUGGESTIONS = 6;
+    private static final double DEFAULT_NEAR_ME_RADIUS_KM = 5;
+    // 全量核对报名人数的间隔，其余时候只核对最近有报名变化的活动
+    private static final long FULL_AUDIT_INTERVAL_MILLIS = 24 * 60 * 60 * 1000L;
+    private boolean showingMyEvents = false;
+    private boolean isLoadingPage = false;
+    private boolean hasMorePages = false;
+    private int loadGeneration = 0;
+    // 列表查询都在这个线程上依次执行，开始新的查询前取消还没完成的旧查询
+    private final ExecutorService queryExecutor = Executors.newSingleThreadExecutor();
+    private CancellationSignal pendingQuery;
+    private final Handler searchHandler = new Handler(Looper.getMainLooper());
+    private final Runnable searchRunnable = this::searchFromInput;
+    private ListPopupWindow suggestionPopup;
+    private ArrayAdapter<String> suggestionAdapter;
+    // 联想词在这个线程上计算：很短的前缀要扫描大量词条，不能放在主线程
+    private final ExecutorService suggestionExecutor = Executors.newSingleThreadExecutor();
+    // 最近一次请求联想的输入，只显示与它对应的结果；收起联想框后为 null
+    private volatile String pendingSuggestionText;
+    private long lastStartTime = DatabaseHelper.FIRST_PAGE;
+    private long lastEventId = DatabaseHelper.FIRST_PAGE;
+    // 当前列表加载时的数据版本，回到页面时数据没变就不用重新加载
+    private long loadedDataVersion = -1;
+    // 当前列表已经包含的变更日志序号，数据变化后只刷新之后变化的活动
+    private long loadedChangeSequence = -1;
+    // 界面可见期间订阅列表依赖的表，有提交时增量刷新
+    private InvalidationTracker.Subscription tablesSubscription;
+
+    private final ActivityResultLauncher<String[]> locationPermissionLauncher = registerForActivityResult(
+            new ActivityResultContracts.RequestMultiplePermissions(),
             result -> {
-                if (result.getResultCode() == RESULT_OK) {
-                    loadEvents();
+                if (LocationHelper.hasPermission(this)) {
+                    enableNearMe();
+                } else {
+                    Toast.makeText(this, "Location permission is required to find nearby events",
+                            Toast.LENGTH_SHORT).show();
+                }
+            });
+
+    private final ActivityResultLauncher<String[]> importEventsLauncher = registerForActivityResult(
+            new ActivityResultContracts.OpenDocument(),
+            uri -> {
+                if (uri != null) {
+                    importEvents(uri);
                 }
             });
 
@@ -92,7 +162,7 @@ public class MainActivity extends AppCompatActivity implements EventAdapter.OnEv
         bottomNavigation = findViewById(R.id.bottomNavigation);
         searchInput = findViewById(R.id.searchInput);
         timeFilterChipGroup = findViewById(R.id.timeFilterChipGroup);
-        dbHelper = new DatabaseHelper(this);
+        dbHelper = DatabaseHelper.getInstance(this);
         prefs = getSharedPreferences("EventApp", MODE_PRIVATE);
         fragmentContainer = findViewById(R.id.fragmentContainer);
         searchLayout = findViewById(R.id.searchLayout);
@@ -167,6 +237,7 @@ public class MainActivity extends AppCompatActivity implements EventAdapter.OnEv
         getMenuInflater().inflate(R.menu.menu_main, menu);
         MenuItem createItem = menu.findItem(R.id.action_create);
         createItem.setVisible(prefs.getBoolean("isStaff", false));
+        menu.findItem(R.id.action_import).setVisible(prefs.getBoolean("isStaff", false));
         return true;
     }
 
@@ -174,7 +245,11 @@ public class MainActivity extends AppCompatActivity implements EventAdapter.OnEv
     public boolean onOptionsItemSelected(MenuItem item) {
         if (item.getItemId() == R.id.action_create) {
             Intent intent = new Intent(this, CreateEventActivity.class);
-            createEventLauncher.launch(intent);
+            startActivity(intent);
+            return true;
+        } else if (item.getItemId() == R.id.action_import) {
+            importEventsLauncher.launch(new String[]{"text/csv", "text/comma-separated-values",
+                    "application/json", "text/plain"});
             return true;
         }
         return super.onOptionsItemSelected(item);
@@ -182,8 +257,45 @@ public class MainActivity extends AppCompatActivity implements EventAdapter.OnEv
 
     private void setupRecyclerView() {
         adapter = new EventAdapter(this, new ArrayList<>(), this);
-        recyclerView.setLayoutManager(new LinearLayoutManager(this));
+        LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        recyclerView.setLayoutManager(layoutManager);
         recyclerView.setAdapter(adapter);
+        // 列表更新在后台比较完成后才生效，空列表提示跟着适配器的实际内容切换
+        adapter.registerAdapterDataObserver(new RecyclerView.AdapterDataObserver() {
+            @Override
+            public void onChanged() {
+                updateEmptyView();
+            }
+
+            @Override
+            public void onItemRangeInserted(int positionStart, int itemCount) {
+                updateEmptyView();
+            }
+
+            @Override
+            public void onItemRangeRemoved(int positionStart, int itemCount) {
+                updateEmptyView();
+            }
+        });
+        recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView view, int dx, int dy) {
+                if (dy > 0 && layoutManager.findLastVisibleItemPosition()
+                        >= adapter.getItemCount() - PREFETCH_DISTANCE) {
+                    loadNextPage();
+                }
+            }
+        });
+    }
+
+    // 加载第一页期间保持加载中的状态
+    private void updateEmptyView() {
+        if (loadingView.getVisibility() == View.VISIBLE) {
+            return;
+        }
+        boolean empty = adapter.getItemCount() == 0;
+        emptyView.setVisibility(empty ? View.VISIBLE : View.GONE);
+        recyclerView.setVisibility(empty ? View.GONE : View.VISIBLE);
     }
 
     private void setupSwipeRefresh() {
@@ -191,9 +303,44 @@ public class MainActivity extends AppCompatActivity implements EventAdapter.OnEv
     }
 
     private void setupSearchAndFilter() {
-        // 设置搜索功能
+        // 标题和地点联想：点选后直接搜索
+        suggestionAdapter = new ArrayAdapter<>(this, android.R.layout.simple_list_item_1, new ArrayList<>());
+        suggestionPopup = new ListPopupWindow(this);
+        suggestionPopup.setAnchorView(searchInput);
+        suggestionPopup.setAdapter(suggestionAdapter);
+        // 弹出时不抢走输入框的焦点，可以继续输入
+        suggestionPopup.setInputMethodMode(ListPopupWindow.INPUT_METHOD_NEEDED);
+        suggestionPopup.setOnItemClickListener((parent, view, position, id) -> {
+            searchInput.setText(suggestionAdapter.getItem(position));
+            searchInput.setSelection(searchInput.length());
+            dismissSuggestions();
+            searchHandler.removeCallbacks(searchRunnable);
+            searchFromInput();
+        });
+        // 联想词索引第一次加载需要读数据库，提前在后台完成
+        new Thread(dbHelper::warmUpSearchIndex).start();
+
+        // 设置搜索功能：边输入边搜索，按下搜索键时立即执行
+        searchInput.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                showSuggestions(s.toString());
+                searchHandler.removeCallbacks(searchRunnable);
+                searchHandler.postDelayed(searchRunnable, SEARCH_DEBOUNCE_MILLIS);
+            }
+        });
         searchInput.setOnEditorActionListener((v, actionId, event) -> {
             if (actionId == EditorInfo.IME_ACTION_SEARCH) {
+                dismissSuggestions();
+                searchHandler.removeCallbacks(searchRunnable);
                 currentKeyword = searchInput.getText().toString().trim();
                 loadEvents();
                 return true;
@@ -226,6 +373,8 @@ public class MainActivity extends AppCompatActivity implements EventAdapter.OnEv
                 .create();
 
         RadioGroup statusGroup = dialogView.findViewById(R.id.statusGroup);
+        SwitchMaterial nearMeSwitch = dialogView.findViewById(R.id.nearMeSwitch);
+        RadioGroup radiusGroup = dialogView.findViewById(R.id.radiusGroup);
         MaterialButton resetButton = dialogView.findViewById(R.id.resetButton);
         MaterialButton applyButton = dialogView.findViewById(R.id.applyButton);
 
@@ -248,9 +397,20 @@ public class MainActivity extends AppCompatActivity implements EventAdapter.OnEv
                 break;
         }
 
+        nearMeSwitch.setChecked(nearMeLocation != null);
+        if (nearMeRadiusKm == 1) {
+            radiusGroup.check(R.id.radius1km);
+        } else if (nearMeRadiusKm == 20) {
+            radiusGroup.check(R.id.radius20km);
+        } else {
+            radiusGroup.check(R.id.radius5km);
+        }
+
         // 重置按钮
         resetButton.setOnClickListener(v -> {
             statusGroup.check(R.id.statusAll);
+            nearMeSwitch.setChecked(false);
+            radiusGroup.check(R.id.radius5km);
         });
 
         // 应用按钮
@@ -267,24 +427,133 @@ public class MainActivity extends AppCompatActivity implements EventAdapter.OnEv
             } else if (checkedId == R.id.statusFull) {
                 currentStatusFilter = "full";
             }
-            loadEvents();
+            int radiusId = radiusGroup.getCheckedRadioButtonId();
+            nearMeRadiusKm = radiusId == R.id.radius1km ? 1
+                    : radiusId == R.id.radius20km ? 20 : DEFAULT_NEAR_ME_RADIUS_KM;
             dialog.dismiss();
+            if (nearMeSwitch.isChecked()) {
+                enableNearMe();
+            } else {
+                nearMeLocation = null;
+                loadEvents();
+            }
         });
 
         dialog.show();
     }
 
+    // 按当前位置筛选附近的活动，没有定位权限时先申请，拿到权限后再次调用
+    private void enableNearMe() {
+        if (!LocationHelper.hasPermission(this)) {
+            locationPermissionLauncher.launch(LocationHelper.PERMISSIONS);
+            return;
+        }
+        nearMeLocation = LocationHelper.getLastKnownLocation(this);
+        if (nearMeLocation == null) {
+            Toast.makeText(this, "Unable to determine your current location", Toast.LENGTH_SHORT).show();
+        }
+        loadEvents();
+    }
+
     private void loadEvents() {
-        // 显示加载中
-        loadingView.setVisibility(View.VISIBLE);
-        recyclerView.setVisibility(View.GONE);
-        emptyView.setVisibility(View.GONE);
+        showingMyEvents = false;
+        loadFirstPage();
+    }
+
+    private void loadMyEvents() {
+        showingMyEvents = true;
+        loadFirstPage();
+    }
+
+    // 联想词在后台从内存索引读取；连续输入时只计算和显示最后一次输入的结果
+    private void showSuggestions(String text) {
+        pendingSuggestionText = text;
+        suggestionExecutor.execute(() -> {
+            if (!text.equals(pendingSuggestionText)) {
+                return;
+            }
+            List<String> suggestions = dbHelper.getSearchSuggestions(text, MAX_SUGGESTIONS);
+            runOnUiThread(() -> {
+                if (isDestroyed() || !text.equals(pendingSuggestionText)) {
+                    return;
+                }
+                // 输入已经和唯一的联想词完全一致时不再提示
+                if (suggestions.isEmpty() || !searchInput.hasFocus()
+                        || (suggestions.size() == 1 && suggestions.get(0).equalsIgnoreCase(text.trim()))) {
+                    suggestionPopup.dismiss();
+                    return;
+                }
+                suggestionAdapter.clear();
+                suggestionAdapter.addAll(suggestions);
+                suggestionPopup.show();
+            });
+        });
+    }
+
+    // 收起联想框，还在计算的联想结果也不再显示
+    private void dismissSuggestions() {
+        pendingSuggestionText = null;
+        suggestionPopup.dismiss();
+    }
+
+    // 输入停顿后执行搜索，关键词没变时不重新查询
+    private void searchFromInput() {
+        String keyword = searchInput.getText().toString().trim();
+        if (keyword.equals(currentKeyword)) {
+            return;
+        }
+        currentKeyword = keyword;
+        showingMyEvents = false;
+        // 输入过程中保留当前列表，结果返回后直接替换，避免每次按键都闪出加载界面
+        loadFirstPage(false);
+    }
+
+    // 重新加载列表的第一页
+    private void loadFirstPage() {
+        loadFirstPage(true);
+    }
+
+    private void loadFirstPage(boolean showLoading) {
+        if (showLoading) {
+            // 显示加载中
+            loadingView.setVisibility(View.VISIBLE);
+            recyclerView.setVisibility(View.GONE);
+            emptyView.setVisibility(View.GONE);
+        }
+
+        // 之前还没返回的请求全部作废，正在执行的查询在 SQLite 层中断
+        final int generation = ++loadGeneration;
+        if (pendingQuery != null) {
+            pendingQuery.cancel();
+        }
+        final CancellationSignal cancellationSignal = new CancellationSignal();
+        pendingQuery = cancellationSignal;
+        loadedDataVersion = dbHelper.getDataVersion();
+        isLoadingPage = true;
+        final boolean myEvents = showingMyEvents;
+        final String keyword = currentKeyword;
+        final String timeFilter = currentTimeFilter;
+        final String statusFilter = currentStatusFilter;
+        final Location nearMe = nearMeLocation;
+        final double radiusKm = nearMeRadiusKm;
 
         // 在后台线程加载数据
-        new Thread(() -> {
-            List<Event> events = dbHelper.searchEvents(currentKeyword, currentTimeFilter, currentStatusFilter);
+        queryExecutor.execute(() -> {
+            // 排队期间已经被新的查询取代
+            if (cancellationSignal.isCanceled()) {
+                return;
+            }
+            // 在查询之前读取，查询期间的变化会在下次增量刷新时再处理一遍
+            long changeSequence = dbHelper.getChangeSequence();
+            List<Event> events = queryPage(myEvents, keyword, timeFilter, statusFilter, nearMe, radiusKm,
+                    DatabaseHelper.FIRST_PAGE, DatabaseHelper.FIRST_PAGE, cancellationSignal);
             // 在主线程更新UI
             runOnUiThread(() -> {
+                if (generation != loadGeneration) {
+                    return;
+                }
+                loadedChangeSequence = changeSequence;
+                onPageLoaded(events, myEvents || (nearMe == null && TextUtils.isEmpty(keyword)));
                 adapter.updateEvents(events);
                 loadingView.setVisibility(View.GONE);
                 if (events.isEmpty()) {
@@ -296,31 +565,148 @@ public class MainActivity extends AppCompatActivity implements EventAdapter.OnEv
                 }
                 swipeRefresh.setRefreshing(false);
             });
-        }).start();
+        });
     }
 
-    private void loadMyEvents() {
-        // 显示加载中
-        loadingView.setVisibility(View.VISIBLE);
-        recyclerView.setVisibility(View.GONE);
-        emptyView.setVisibility(View.GONE);
+    // 滚动接近列表末尾时加载下一页
+    private void loadNextPage() {
+        if (isLoadingPage || !hasMorePages) {
+            return;
+        }
+        isLoadingPage = true;
+        final int generation = loadGeneration;
+        final boolean myEvents = showingMyEvents;
+        final String keyword = currentKeyword;
+        final String timeFilter = currentTimeFilter;
+        final String statusFilter = currentStatusFilter;
+        final Location nearMe = nearMeLocation;
+        final double radiusKm = nearMeRadiusKm;
+        final long afterStartTime = lastStartTime;
+        final long afterId = lastEventId;
+        // 下一页属于当前这次加载，重新加载时一起取消
+        final CancellationSignal cancellationSignal = pendingQuery;
 
-        // 在后台线程加载数据
-        new Thread(() -> {
+        queryExecutor.execute(() -> {
+            if (cancellationSignal.isCanceled()) {
+                return;
+            }
+            List<Event> events = queryPage(myEvents, keyword, timeFilter, statusFilter, nearMe, radiusKm,
+                    afterStartTime, afterId, cancellationSignal);
+            runOnUiThread(() -> {
+                if (generation != loadGeneration) {
+                    return;
+                }
+                onPageLoaded(events, true);
+                adapter.appendEvents(events);
+            });
+        });
+    }
+
+    // 数据变化后只把变化过的活动换成最新内容，已加载的其余行保持不动
+    // 搜索结果按相关度或距离排序、时间和状态筛选的结果随时间变化，这些情况仍然重新加载第一页
+    private void refreshChanges() {
+        if (nearMeLocation != null || !TextUtils.isEmpty(currentKeyword)
+                || !TextUtils.isEmpty(currentTimeFilter) || !TextUtils.isEmpty(currentStatusFilter)) {
+            loadFirstPage();
+            return;
+        }
+        final int generation = loadGeneration;
+        final long sinceSequence = loadedChangeSequence;
+        final long userId = showingMyEvents ? prefs.getLong("userId", -1) : -1;
+        loadedDataVersion = dbHelper.getDataVersion();
+
+        queryExecutor.execute(() -> {
+            EventChanges changes = dbHelper.getEventChangesSince(sinceSequence, userId);
+            runOnUiThread(() -> {
+                if (generation != loadGeneration) {
+                    return;
+                }
+                if (changes == null) {
+                    // 变化太多或无法按行更新，保留当前列表直到新结果返回
+                    loadFirstPage(false);
+                    return;
+                }
+                loadedChangeSequence = changes.getSequence();
+                // 还有后续页时，排在已加载部分之后的活动留给后面的页
+                List<Event> inRange = new ArrayList<>();
+                for (Event event : changes.getEvents()) {
+                    if (!hasMorePages || event.getStartTime() < lastStartTime
+                            || (event.getStartTime() == lastStartTime && event.getId() <= lastEventId)) {
+                        inRange.add(event);
+                    }
+                }
+                adapter.applyChanges(changes.getChangedIds(), inRange, DatabaseHelper.EVENT_ORDER);
+            });
+        });
+    }
+
+    private List<Event> queryPage(boolean myEvents, String keyword, String timeFilter, String statusFilter,
+                                  Location nearMe, double radiusKm, long afterStartTime, long afterId,
+                                  CancellationSignal cancellationSignal) {
+        if (myEvents) {
             long userId = prefs.getLong("userId", -1);
-            List<Event> events = dbHelper.getUserRegisteredEvents(userId);
-            // 在主线程更新UI
+            return dbHelper.getUserRegisteredEventsPage(userId, afterStartTime, afterId, DatabaseHelper.PAGE_SIZE);
+        }
+        if (nearMe != null) {
+            // 附近的活动按距离排序，一次返回半径内的全部活动，关键词只用来进一步筛选
+            return dbHelper.searchEventsNearby(nearMe.getLatitude(), nearMe.getLongitude(), radiusKm,
+                    keyword, timeFilter, statusFilter, cancellationSignal);
+        }
+        if (!TextUtils.isEmpty(keyword)) {
+            // 关键词搜索按相关度排序，一次返回全部匹配，活动内容在滚动到时才加载
+            return dbHelper.searchEvents(keyword, timeFilter, statusFilter, cancellationSignal);
+        }
+        return dbHelper.searchEventsPage(timeFilter, statusFilter, afterStartTime, afterId,
+                DatabaseHelper.PAGE_SIZE, cancellationSignal);
+    }
+
+    // 记录最后一条的位置，作为下一页的起点
+    private void onPageLoaded(List<Event> events, boolean paged) {
+        isLoadingPage = false;
+        hasMorePages = paged && events.size() >= DatabaseHelper.PAGE_SIZE;
+        if (paged && !events.isEmpty()) {
+            Event last = events.get(events.size() - 1);
+            lastStartTime = last.getStartTime();
+            lastEventId = last.getId();
+        }
+    }
+
+    // 从用户选择的 CSV 或 JSON 文件批量导入活动，进度显示在工具栏的副标题上
+    private void importEvents(Uri uri) {
+        String type = getContentResolver().getType(uri);
+        EventImporter.Format format = type != null && type.contains("json")
+                || uri.toString().toLowerCase(Locale.ROOT).endsWith(".json")
+                ? EventImporter.Format.JSON : EventImporter.Format.CSV;
+        String organizer = prefs.getString("username", "");
+        Toast.makeText(this, "Importing events...", Toast.LENGTH_SHORT).show();
+
+        new Thread(() -> {
+            EventImporter.ImportResult result;
+            try (Reader reader = new InputStreamReader(getContentResolver().openInputStream(uri),
+                    StandardCharsets.UTF_8)) {
+                result = new EventImporter(dbHelper).importEvents(reader, format, organizer,
+                        (processed, imported) -> runOnUiThread(() -> {
+                            if (getSupportActionBar() != null) {
+                                getSupportActionBar().setSubtitle("Imported " + imported + " / " + processed);
+                            }
+                        }));
+            } catch (Exception e) {
+                runOnUiThread(() -> Toast.makeText(this, "Cannot read the selected file",
+                        Toast.LENGTH_SHORT).show());
+                return;
+            }
+            final EventImporter.ImportResult importResult = result;
             runOnUiThread(() -> {
-                adapter.updateEvents(events);
-                loadingView.setVisibility(View.GONE);
-                if (events.isEmpty()) {
-                    emptyView.setVisibility(View.VISIBLE);
-                    recyclerView.setVisibility(View.GONE);
-                } else {
-                    emptyView.setVisibility(View.GONE);
-                    recyclerView.setVisibility(View.VISIBLE);
+                if (getSupportActionBar() != null) {
+                    getSupportActionBar().setSubtitle(null);
                 }
-                swipeRefresh.setRefreshing(false);
+                String message = "Imported " + importResult.getImportedCount() + " events";
+                if (importResult.getErrorCount() > 0) {
+                    EventImporter.RowError first = importResult.getErrors().get(0);
+                    message += ", skipped " + importResult.getErrorCount() + " rows (row "
+                            + first.getRow() + ": " + first.getMessage() + ")";
+                }
+                Toast.makeText(this, message, Toast.LENGTH_LONG).show();
             });
         }).start();
     }
@@ -332,9 +718,60 @@ public class MainActivity extends AppCompatActivity implements EventAdapter.OnEv
         startActivity(intent);
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        adapter.release();
+        searchHandler.removeCallbacks(searchRunnable);
+        suggestionPopup.dismiss();
+        if (pendingQuery != null) {
+            pendingQuery.cancel();
+        }
+        queryExecutor.shutdown();
+        suggestionExecutor.shutdown();
+    }
+
+    @Override
+    protected void onStart() {
+        super.onStart();
+        // 休眠期间错过的开始、结束时刻，没有时间或状态筛选时不会重新加载，需要单独更新
+        adapter.recheckStatuses();
+        // 可见期间由表的变化通知驱动刷新，其他界面的修改提交后列表随即更新
+        tablesSubscription = dbHelper.getInvalidationTracker().observeTables(DatabaseHelper.EVENT_LIST_TABLES,
+                tables -> runOnUiThread(() -> {
+                    if (tablesSubscription != null) {
+                        refreshChanges();
+                    }
+                }));
+        // 不可见期间没有订阅：筛选结果随时间变化的重新加载，否则只在数据有变化时刷新变化的那几行
+        if (!TextUtils.isEmpty(currentTimeFilter) || !TextUtils.isEmpty(currentStatusFilter)) {
+            loadFirstPage();
+        } else if (dbHelper.getDataVersion() != loadedDataVersion) {
+            refreshChanges();
+        }
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        tablesSubscription.cancel();
+        tablesSubscription = null;
+    }
+
     @Override
     protected void onResume() {
         super.onResume();
-        loadEvents(); // 每次返回主界面时刷新活动列表
+        auditParticipantCounts();
+    }
+
+    // 后台核对活动的报名人数，修复计数后由表的变化通知刷新列表
+    // 上一次核对还没结束时跳过，全量核对的时间只在真正开始时记录
+    private void auditParticipantCounts() {
+        long now = System.currentTimeMillis();
+        boolean fullAudit = now - prefs.getLong("last_participant_audit", 0) >= FULL_AUDIT_INTERVAL_MILLIS;
+        ParticipantCountAuditor auditor = dbHelper.getParticipantCountAuditor();
+        if (auditor.auditInBackground(fullAudit) && fullAudit) {
+            prefs.edit().putLong("last_participant_audit", now).apply();
+        }
     }
 } 
\ No newline at end of file
@@ -33,7 +33,7 @@ public class RegisterActivity extends AppCompatActivity {
         // 初始化视图和数据库
         initViews();
         setupToolbar();
-        dbHelper = new DatabaseHelper(this);
+        dbHelper = DatabaseHelper.getInstance(this);
 
         // 设置注册按钮点击事件
         registerButton.setOnClickListener(v -> attemptRegister());
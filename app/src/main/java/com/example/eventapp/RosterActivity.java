@@ -0,0 +1,193 @@
+package com.example.eventapp;
+
+import android.net.Uri;
+import android.os.Bundle;
+import android.util.Log;
+import android.view.Menu;
+import android.view.MenuItem;
+import android.view.View;
+import android.widget.ProgressBar;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
+import androidx.annotation.NonNull;
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.appcompat.widget.Toolbar;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.example.eventapp.adapter.ParticipantAdapter;
+import com.example.eventapp.database.DatabaseHelper;
+import com.example.eventapp.database.RosterExporter;
+import com.example.eventapp.model.Participant;
+
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+// 活动名单：只对工作人员开放，按报名时间分页显示，可以导出为 CSV
+public class RosterActivity extends AppCompatActivity {
+    // 距离列表末尾还剩多少项时开始加载下一页
+    private static final int PREFETCH_DISTANCE = 10;
+
+    private RecyclerView recyclerView;
+    private ProgressBar loadingView;
+    private TextView emptyView;
+    private ParticipantAdapter adapter;
+    private DatabaseHelper dbHelper;
+    private long eventId;
+    private boolean isLoadingPage;
+    private boolean hasMorePages = true;
+    private boolean isExporting;
+
+    private final ActivityResultLauncher<String> exportLauncher = registerForActivityResult(
+            new ActivityResultContracts.CreateDocument("text/csv"),
+            uri -> {
+                if (uri != null) {
+                    exportRoster(uri);
+                }
+            });
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_roster);
+
+        eventId = getIntent().getLongExtra("event_id", -1);
+        if (eventId == -1) {
+            Toast.makeText(this, "Invalid Event ID", Toast.LENGTH_SHORT).show();
+            finish();
+            return;
+        }
+
+        recyclerView = findViewById(R.id.recyclerView);
+        loadingView = findViewById(R.id.loadingView);
+        emptyView = findViewById(R.id.emptyView);
+        dbHelper = DatabaseHelper.getInstance(this);
+        setupToolbar();
+        setupRecyclerView();
+
+        loadNextPage();
+    }
+
+    private void setupToolbar() {
+        Toolbar toolbar = findViewById(R.id.toolbar);
+        setSupportActionBar(toolbar);
+        if (getSupportActionBar() != null) {
+            getSupportActionBar().setDisplayHomeAsUpEnabled(true);
+            getSupportActionBar().setDisplayShowHomeEnabled(true);
+            String title = getIntent().getStringExtra("event_title");
+            if (title != null) {
+                getSupportActionBar().setSubtitle(title);
+            }
+        }
+    }
+
+    private void setupRecyclerView() {
+        LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        recyclerView.setLayoutManager(layoutManager);
+        adapter = new ParticipantAdapter(this);
+        recyclerView.setAdapter(adapter);
+        // 滚动到接近末尾时加载下一页，长名单也只读取看到的部分
+        recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView view, int dx, int dy) {
+                if (dy > 0 && layoutManager.findLastVisibleItemPosition()
+                        >= adapter.getItemCount() - PREFETCH_DISTANCE) {
+                    loadNextPage();
+                }
+            }
+        });
+    }
+
+    private void loadNextPage() {
+        if (isLoadingPage || !hasMorePages) {
+            return;
+        }
+        isLoadingPage = true;
+        Participant last = adapter.getLastParticipant();
+        final long afterRegisterTime = last != null ? last.getRegisterTime() : Long.MIN_VALUE;
+        final long afterRegistrationId = last != null ? last.getRegistrationId() : 0;
+        if (last == null) {
+            loadingView.setVisibility(View.VISIBLE);
+        }
+
+        new Thread(() -> {
+            List<Participant> page = dbHelper.getParticipantsPage(eventId, afterRegisterTime,
+                    afterRegistrationId, DatabaseHelper.PAGE_SIZE);
+            runOnUiThread(() -> {
+                if (isDestroyed()) {
+                    return;
+                }
+                isLoadingPage = false;
+                loadingView.setVisibility(View.GONE);
+                if (page == null) {
+                    Toast.makeText(this, "Failed to load participants", Toast.LENGTH_SHORT).show();
+                    return;
+                }
+                hasMorePages = page.size() == DatabaseHelper.PAGE_SIZE;
+                adapter.appendParticipants(page);
+                emptyView.setVisibility(adapter.getItemCount() == 0 ? View.VISIBLE : View.GONE);
+            });
+        }).start();
+    }
+
+    // 名单由 RosterExporter 分页写出，不会一次读入内存
+    private void exportRoster(Uri uri) {
+        isExporting = true;
+        Toast.makeText(this, "Exporting participants...", Toast.LENGTH_SHORT).show();
+        new Thread(() -> {
+            int exported = -1;
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                    getContentResolver().openOutputStream(uri), StandardCharsets.UTF_8))) {
+                exported = new RosterExporter(dbHelper).exportCsv(eventId, writer,
+                        rows -> runOnUiThread(() -> {
+                            if (getSupportActionBar() != null) {
+                                getSupportActionBar().setSubtitle("Exported " + rows);
+                            }
+                        }));
+            } catch (Exception e) {
+                Log.e("RosterActivity", "导出名单失败: " + e.getMessage());
+            }
+            final int exportedRows = exported;
+            runOnUiThread(() -> {
+                isExporting = false;
+                if (isDestroyed()) {
+                    return;
+                }
+                if (getSupportActionBar() != null) {
+                    getSupportActionBar().setSubtitle(getIntent().getStringExtra("event_title"));
+                }
+                Toast.makeText(this, exportedRows >= 0
+                        ? "Exported " + exportedRows + " participants"
+                        : "Export failed, please try again", Toast.LENGTH_SHORT).show();
+            });
+        }).start();
+    }
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.menu_roster, menu);
+        return true;
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(@NonNull MenuItem item) {
+        if (item.getItemId() == android.R.id.home) {
+            finish();
+            return true;
+        } else if (item.getItemId() == R.id.action_export_roster) {
+            if (isExporting) {
+                Toast.makeText(this, "Export already in progress", Toast.LENGTH_SHORT).show();
+            } else {
+                exportLauncher.launch("participants_" + eventId + ".csv");
+            }
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+}
@@ -1,6 +1,8 @@
 package com.example.eventapp.adapter;
 
 import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -10,33 +12,92 @@ import android.widget.TextView;
 
 import androidx.annotation.NonNull;
 import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.eventapp.R;
+import com.example.eventapp.database.LazyEventList;
 import com.example.eventapp.model.Event;
+import com.example.eventapp.model.EventStatus;
+import com.example.eventapp.utils.EventStatusTracker;
+import com.example.eventapp.utils.SearchHighlighter;
 import com.google.android.material.button.MaterialButton;
 
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class EventAdapter extends RecyclerView.Adapter<EventAdapter.EventViewHolder> {
+    // 局部刷新：只更新状态标签
+    private static final Object PAYLOAD_STATUS = new Object();
+    // 局部刷新：只有报名人数或名额变了，更新人数和状态标签
+    private static final Object PAYLOAD_PARTICIPANTS = new Object();
+    // 内容变了，在原来的列表项上重新绑定，不做淡入淡出的替换动画
+    private static final Object PAYLOAD_CONTENT = new Object();
+
     private final Context context;
-    private final List<Event> events;
+    private List<Event> events;
     private final OnEventClickListener listener;
     private final SimpleDateFormat dateFormat;
+    private final int highlightColor;
     private int lastPosition = -1;
+    private final EventStatusTracker statusTracker;
+    // 当前已绑定的列表项，活动状态变化时只刷新其中对应的项
+    private final Set<EventViewHolder> boundHolders =
+            Collections.newSetFromMap(new IdentityHashMap<>());
+    // 新旧列表在后台按活动 id 比较，只通知真正变化的项，几千行的列表刷新也不卡主线程
+    private final ExecutorService diffExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // 每次 updateEvents 递增，比较完成时已经有更新的列表就丢弃这次的结果
+    private int diffGeneration;
+    private boolean diffPending;
+    // 正在比较的新列表，当前列表在比较期间删除了行时用它重新比较
+    private List<Event> pendingEvents;
+    // 比较期间到达的追加和增量刷新针对的是新列表，等新列表生效后按顺序执行
+    private final List<Runnable> deferredUpdates = new ArrayList<>();
 
     public interface OnEventClickListener {
         void onEventClick(Event event);
     }
 
+    // 按需加载的列表在窗口加载完成或发现活动已被删除时通知
+    private final LazyEventList.Listener lazyListener = new LazyEventList.Listener() {
+        @Override
+        public void onWindowLoaded(int start, int count) {
+            notifyItemRangeChanged(start, count, PAYLOAD_CONTENT);
+        }
+
+        @Override
+        public void onRemoved(int position) {
+            notifyItemRemoved(position);
+            // 进行中的比较基于删除之前的快照，结果已经对不上
+            if (diffPending) {
+                startDiff(pendingEvents);
+            }
+        }
+    };
+
     public EventAdapter(Context context, List<Event> events, OnEventClickListener listener) {
         this.context = context;
         this.events = events;
         this.listener = listener;
         this.dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm", Locale.getDefault());
+        this.highlightColor = ContextCompat.getColor(context, R.color.accent);
+        this.statusTracker = new EventStatusTracker(this::onStatusChanged);
+        // 活动 id 唯一，周期活动的展开项使用负数 id，不会与 NO_ID 冲突
+        setHasStableIds(true);
     }
 
     @NonNull
@@ -46,28 +107,61 @@ public class EventAdapter extends RecyclerView.Adapter<EventAdapter.EventViewHol
         return new EventViewHolder(view);
     }
 
+    @Override
+    public void onBindViewHolder(@NonNull EventViewHolder holder, int position, @NonNull List<Object> payloads) {
+        // 多次局部刷新会合并成一次，其中有任何一次需要完整绑定就完整绑定
+        if (!payloads.isEmpty() && !payloads.contains(PAYLOAD_CONTENT)) {
+            Event event = events.get(position);
+            if (event != null && payloads.contains(PAYLOAD_PARTICIPANTS)) {
+                holder.event = event;
+                bindParticipants(holder, event);
+                updateEventStatus(holder, event);
+                return;
+            }
+            if (event != null && holder.event == event) {
+                updateEventStatus(holder, event);
+                return;
+            }
+        }
+        super.onBindViewHolder(holder, position, payloads);
+    }
+
     @Override
     public void onBindViewHolder(@NonNull EventViewHolder holder, int position) {
         Event event = events.get(position);
+        holder.event = event;
+        if (event == null) {
+            // 按需加载的搜索结果还在读取，加载完成后会重新绑定
+            bindPlaceholder(holder);
+            return;
+        }
+        boundHolders.add(holder);
+        holder.statusLabel.setVisibility(View.VISIBLE);
+        holder.statusIcon.setVisibility(View.VISIBLE);
 
         // 设置基本信息
         holder.titleText.setText(event.getTitle());
-        holder.descriptionText.setText(event.getDescription());
+        if (event.getSnippet() != null) {
+            // 搜索结果显示命中摘要并高亮关键词
+            holder.descriptionText.setText(SearchHighlighter.highlight(event.getSnippet(), highlightColor));
+        } else if (event.getDescriptionExcerpt() != null) {
+            holder.descriptionText.setText(event.getDescriptionExcerpt());
+        } else {
+            holder.descriptionText.setText(event.getDescription());
+        }
         holder.locationText.setText(event.getLocation());
         holder.timeText.setText(String.format("%s - %s",
                 dateFormat.format(new Date(event.getStartTime())),
                 dateFormat.format(new Date(event.getEndTime()))));
-        holder.participantsText.setText(String.format("%d/%d",
-                event.getCurrentParticipants(),
-                event.getMaxParticipants()));
+        bindParticipants(holder, event);
 
         // 设置状态标签
         updateEventStatus(holder, event);
 
-        // 设置点击事件
+        // 设置点击事件，局部刷新会换掉 holder.event，点击时取当时绑定的活动
         holder.itemView.setOnClickListener(v -> {
-            if (listener != null) {
-                listener.onEventClick(event);
+            if (listener != null && holder.event != null) {
+                listener.onEventClick(holder.event);
             }
         });
 
@@ -75,11 +169,29 @@ public class EventAdapter extends RecyclerView.Adapter<EventAdapter.EventViewHol
         setAnimation(holder.itemView, position);
     }
 
+    private void bindPlaceholder(EventViewHolder holder) {
+        boundHolders.remove(holder);
+        holder.titleText.setText(R.string.event_loading);
+        holder.descriptionText.setText(null);
+        holder.locationText.setText(null);
+        holder.timeText.setText(null);
+        holder.participantsText.setText(null);
+        holder.statusLabel.setVisibility(View.INVISIBLE);
+        holder.statusIcon.setVisibility(View.INVISIBLE);
+        holder.itemView.setOnClickListener(null);
+    }
+
+    private void bindParticipants(EventViewHolder holder, Event event) {
+        holder.participantsText.setText(String.format("%d/%d",
+                event.getCurrentParticipants(),
+                event.getMaxParticipants()));
+    }
+
     private void updateEventStatus(EventViewHolder holder, Event event) {
-        long currentTime = System.currentTimeMillis();
+        EventStatus status = statusTracker.statusOf(event);
         boolean isFull = event.getCurrentParticipants() >= event.getMaxParticipants();
 
-        if (currentTime < event.getStartTime()) {
+        if (status == EventStatus.NOT_STARTED) {
             // Not started
             if (isFull) {
                 holder.statusLabel.setText(context.getString(R.string.event_full));
@@ -90,7 +202,7 @@ public class EventAdapter extends RecyclerView.Adapter<EventAdapter.EventViewHol
                 holder.statusLabel.setBackgroundColor(ContextCompat.getColor(context, R.color.primary));
                 holder.statusIcon.setImageResource(android.R.drawable.ic_menu_today);
             }
-        } else if (currentTime <= event.getEndTime()) {
+        } else if (status == EventStatus.ONGOING) {
             // Ongoing
             holder.statusLabel.setText(context.getString(R.string.event_ongoing));
             holder.statusLabel.setBackgroundColor(ContextCompat.getColor(context, R.color.success));
@@ -110,6 +222,43 @@ public class EventAdapter extends RecyclerView.Adapter<EventAdapter.EventViewHol
         }
     }
 
+    // 活动开始或结束时由 statusTracker 调用，只刷新显示该活动的列表项
+    private void onStatusChanged(Event event) {
+        for (EventViewHolder holder : boundHolders) {
+            int position = holder.getAdapterPosition();
+            if (holder.event == event && position != RecyclerView.NO_POSITION) {
+                notifyItemChanged(position, PAYLOAD_STATUS);
+            }
+        }
+    }
+
+    // 页面重新可见时调用，立即更新休眠期间开始或结束的活动的状态
+    public void recheckStatuses() {
+        statusTracker.recheck();
+    }
+
+    @Override
+    public void onViewRecycled(@NonNull EventViewHolder holder) {
+        super.onViewRecycled(holder);
+        boundHolders.remove(holder);
+        holder.event = null;
+    }
+
+    // 页面销毁时调用，取消等待中的状态更新和列表比较
+    public void release() {
+        diffGeneration++;
+        diffPending = false;
+        pendingEvents = null;
+        deferredUpdates.clear();
+        if (events instanceof LazyEventList) {
+            ((LazyEventList) events).setListener(null);
+        }
+        mainHandler.removeCallbacksAndMessages(null);
+        diffExecutor.shutdownNow();
+        statusTracker.clear();
+        boundHolders.clear();
+    }
+
     @Override
     public void onViewDetachedFromWindow(@NonNull EventViewHolder holder) {
         super.onViewDetachedFromWindow(holder);
@@ -121,11 +270,225 @@ public class EventAdapter extends RecyclerView.Adapter<EventAdapter.EventViewHol
         return events != null ? events.size() : 0;
     }
 
+    @Override
+    public long getItemId(int position) {
+        return idAt(events, position);
+    }
+
+    // 直接持有传入的列表而不复制，按需加载的搜索结果不会因此被全部读出
+    // 新列表在后台与当前列表比较后才生效，之前显示的项保持原位，只有变化的项重新绑定；
+    // 比较完成前 newEvents 不能再被修改，追加下一页请使用 appendEvents
     public void updateEvents(List<Event> newEvents) {
-        this.events.clear();
-        this.events.addAll(newEvents);
-        notifyDataSetChanged();
-        lastPosition = -1; // 重置动画位置
+        // 页面销毁后返回的查询结果
+        if (diffExecutor.isShutdown()) {
+            return;
+        }
+        deferredUpdates.clear();
+        startDiff(newEvents);
+    }
+
+    private void startDiff(List<Event> newEvents) {
+        final int generation = ++diffGeneration;
+        if (events == null || events.isEmpty() || newEvents.isEmpty()) {
+            // 一边为空时没有可以保留的项
+            diffPending = false;
+            pendingEvents = null;
+            replaceEvents(newEvents, null);
+            return;
+        }
+        // 比较期间对列表的修改都推迟到新列表生效之后，普通列表在后台可以直接读取；
+        // 按需加载的列表会在主线程上删除已不存在的活动，交给后台的是 id 的快照
+        diffPending = true;
+        pendingEvents = newEvents;
+        final List<Event> oldEvents = events;
+        final long[] oldIds = idsOf(oldEvents);
+        final long[] newIds = idsOf(newEvents);
+        diffExecutor.execute(() -> {
+            DiffUtil.DiffResult result = calculateDiff(oldIds, newIds, oldEvents, newEvents);
+            mainHandler.post(() -> {
+                if (generation != diffGeneration) {
+                    return;
+                }
+                diffPending = false;
+                pendingEvents = null;
+                replaceEvents(newEvents, result);
+                // 比较期间排队的追加和增量刷新
+                List<Runnable> updates = new ArrayList<>(deferredUpdates);
+                deferredUpdates.clear();
+                for (Runnable update : updates) {
+                    update.run();
+                }
+            });
+        });
+    }
+
+    // result 为 null 表示新旧列表没有共同的项，整体替换
+    private void replaceEvents(List<Event> newEvents, DiffUtil.DiffResult result) {
+        int oldSize = getItemCount();
+        if (events instanceof LazyEventList) {
+            ((LazyEventList) events).setListener(null);
+        }
+        this.events = newEvents;
+        if (newEvents instanceof LazyEventList) {
+            ((LazyEventList) newEvents).setListener(lazyListener);
+        }
+        statusTracker.clear();
+        if (result != null) {
+            result.dispatchUpdatesTo(this);
+            // 内容相同的项没有重新绑定，仍显示旧列表里的 Event，继续跟踪它们的状态
+            for (EventViewHolder holder : boundHolders) {
+                if (holder.event != null) {
+                    statusTracker.statusOf(holder.event);
+                }
+            }
+            // 保留下来的项不再重复入场动画
+            lastPosition = Math.min(lastPosition, newEvents.size() - 1);
+        } else {
+            notifyItemRangeRemoved(0, oldSize);
+            notifyItemRangeInserted(0, newEvents.size());
+            lastPosition = -1; // 重置动画位置
+        }
+    }
+
+    // 在后台线程上执行；按需加载的列表只比较 id，不读取内容，匹配上的项按内容变化重新绑定
+    private static DiffUtil.DiffResult calculateDiff(long[] oldIds, long[] newIds,
+                                                     List<Event> oldEvents, List<Event> newEvents) {
+        // 没有共同的活动时（例如换了筛选条件）直接整体替换，省去比较的开销
+        Set<Long> oldIdSet = new HashSet<>();
+        for (long id : oldIds) {
+            oldIdSet.add(id);
+        }
+        boolean overlap = false;
+        for (int i = 0; i < newIds.length && !overlap; i++) {
+            overlap = oldIdSet.contains(newIds[i]);
+        }
+        if (!overlap) {
+            return null;
+        }
+        final boolean lazy = oldEvents instanceof LazyEventList || newEvents instanceof LazyEventList;
+        return DiffUtil.calculateDiff(new DiffUtil.Callback() {
+            @Override
+            public int getOldListSize() {
+                return oldIds.length;
+            }
+
+            @Override
+            public int getNewListSize() {
+                return newIds.length;
+            }
+
+            @Override
+            public boolean areItemsTheSame(int oldPosition, int newPosition) {
+                return oldIds[oldPosition] == newIds[newPosition];
+            }
+
+            @Override
+            public boolean areContentsTheSame(int oldPosition, int newPosition) {
+                if (lazy) {
+                    return false;
+                }
+                Event oldEvent = oldEvents.get(oldPosition);
+                Event newEvent = newEvents.get(newPosition);
+                return sameDisplay(oldEvent, newEvent)
+                        && oldEvent.getCurrentParticipants() == newEvent.getCurrentParticipants()
+                        && oldEvent.getMaxParticipants() == newEvent.getMaxParticipants();
+            }
+
+            @Override
+            public Object getChangePayload(int oldPosition, int newPosition) {
+                if (!lazy && sameDisplay(oldEvents.get(oldPosition), newEvents.get(newPosition))) {
+                    return PAYLOAD_PARTICIPANTS;
+                }
+                return PAYLOAD_CONTENT;
+            }
+        }, false);
+    }
+
+    // 除报名人数和名额以外，列表项上显示的内容是否相同
+    private static boolean sameDisplay(Event a, Event b) {
+        return Objects.equals(a.getTitle(), b.getTitle())
+                && Objects.equals(a.getSnippet(), b.getSnippet())
+                && Objects.equals(a.getDescriptionExcerpt(), b.getDescriptionExcerpt())
+                && Objects.equals(a.getDescription(), b.getDescription())
+                && Objects.equals(a.getLocation(), b.getLocation())
+                && a.getStartTime() == b.getStartTime()
+                && a.getEndTime() == b.getEndTime();
+    }
+
+    private static long[] idsOf(List<Event> list) {
+        if (list instanceof LazyEventList) {
+            return ((LazyEventList) list).snapshotIds();
+        }
+        long[] ids = new long[list.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = list.get(i).getId();
+        }
+        return ids;
+    }
+
+    // 按需加载的列表直接取 id，不触发加载
+    private static long idAt(List<Event> list, int position) {
+        return list instanceof LazyEventList
+                ? ((LazyEventList) list).getId(position)
+                : list.get(position).getId();
+    }
+
+    // 追加下一页数据
+    public void appendEvents(List<Event> moreEvents) {
+        if (moreEvents.isEmpty()) {
+            return;
+        }
+        if (diffPending) {
+            deferredUpdates.add(() -> appendEvents(moreEvents));
+            return;
+        }
+        int start = this.events.size();
+        this.events.addAll(moreEvents);
+        notifyItemRangeInserted(start, moreEvents.size());
+    }
+
+    // 增量刷新：changedIds 中的活动换成 current 里的最新内容，按 order 放到应在的位置，
+    // current 里没有的直接移除；位置不变的只刷新那一项，其余的项不重新绑定
+    public void applyChanges(Set<Long> changedIds, List<Event> current, Comparator<Event> order) {
+        if (diffPending) {
+            deferredUpdates.add(() -> applyChanges(changedIds, current, order));
+            return;
+        }
+        Map<Long, Event> replacements = new HashMap<>();
+        for (Event event : current) {
+            replacements.put(event.getId(), event);
+        }
+        // 从后往前处理，后面的项已经是最新的，前面的项之后还会检查
+        for (int i = events.size() - 1; i >= 0; i--) {
+            long id = events.get(i).getId();
+            if (!changedIds.contains(id)) {
+                continue;
+            }
+            Event replacement = replacements.remove(id);
+            if (replacement != null && fitsAt(i, replacement, order)) {
+                Event previous = events.set(i, replacement);
+                notifyItemChanged(i, sameDisplay(previous, replacement) ? PAYLOAD_PARTICIPANTS : PAYLOAD_CONTENT);
+            } else {
+                events.remove(i);
+                notifyItemRemoved(i);
+                if (replacement != null) {
+                    replacements.put(id, replacement);
+                }
+            }
+        }
+        for (Event event : replacements.values()) {
+            int position = Collections.binarySearch(events, event, order);
+            if (position < 0) {
+                position = -position - 1;
+            }
+            events.add(position, event);
+            notifyItemInserted(position);
+        }
+    }
+
+    private boolean fitsAt(int position, Event event, Comparator<Event> order) {
+        return (position == 0 || order.compare(events.get(position - 1), event) <= 0)
+                && (position == events.size() - 1 || order.compare(event, events.get(position + 1)) <= 0);
     }
 
     static class EventViewHolder extends RecyclerView.ViewHolder {
@@ -137,6 +500,8 @@ public class EventAdapter extends RecyclerView.Adapter<EventAdapter.EventViewHol
         TextView statusLabel;
         ImageView statusIcon;
         MaterialButton actionButton;
+        // 当前绑定的活动
+        Event event;
 
         EventViewHolder(View itemView) {
             super(itemView);
@@ -0,0 +1,79 @@
+package com.example.eventapp.adapter;
+
+import android.content.Context;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.example.eventapp.R;
+import com.example.eventapp.model.Participant;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+// 活动名单，按页追加
+public class ParticipantAdapter extends RecyclerView.Adapter<ParticipantAdapter.ParticipantViewHolder> {
+    private final Context context;
+    private final List<Participant> participants = new ArrayList<>();
+    private final SimpleDateFormat dateFormat;
+
+    public ParticipantAdapter(Context context) {
+        this.context = context;
+        this.dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm", Locale.getDefault());
+    }
+
+    @NonNull
+    @Override
+    public ParticipantViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(context).inflate(R.layout.item_participant, parent, false);
+        return new ParticipantViewHolder(view);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ParticipantViewHolder holder, int position) {
+        Participant participant = participants.get(position);
+        holder.nameText.setText(participant.getUsername());
+        holder.roleText.setText(participant.getEmail());
+        holder.joinTimeText.setText(dateFormat.format(new Date(participant.getRegisterTime())));
+    }
+
+    @Override
+    public int getItemCount() {
+        return participants.size();
+    }
+
+    // 追加下一页
+    public void appendParticipants(List<Participant> moreParticipants) {
+        if (moreParticipants.isEmpty()) {
+            return;
+        }
+        int start = participants.size();
+        participants.addAll(moreParticipants);
+        notifyItemRangeInserted(start, moreParticipants.size());
+    }
+
+    // 最后一条，用于接着加载下一页；还没有数据时返回 null
+    public Participant getLastParticipant() {
+        return participants.isEmpty() ? null : participants.get(participants.size() - 1);
+    }
+
+    static class ParticipantViewHolder extends RecyclerView.ViewHolder {
+        TextView nameText;
+        TextView roleText;
+        TextView joinTimeText;
+
+        ParticipantViewHolder(View itemView) {
+            super(itemView);
+            nameText = itemView.findViewById(R.id.nameText);
+            roleText = itemView.findViewById(R.id.roleText);
+            joinTimeText = itemView.findViewById(R.id.joinTimeText);
+        }
+    }
+}
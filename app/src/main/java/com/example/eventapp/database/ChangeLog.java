@@ -0,0 +1,163 @@
+package com.example.eventapp.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+// 活动和报名的变更日志：events 和周期活动表上的触发器在同一个事务里追加一行（报名通过报名人数的变化记录），
+// seq 单调递增。列表记下加载时的 seq，回来时只读取之后变化过的活动 id，把这几行换成最新的内容
+// 日志定期压缩：同一个活动只保留最新的一行，总行数超过上限时丢弃最旧的，
+// 起点早于被丢弃部分的读取方拿不到完整的变化，只能重新加载
+final class ChangeLog {
+    static final String TABLE_EVENT_CHANGES = "event_changes";
+    static final String COLUMN_SEQ = "seq";
+    // 无法按行更新的变化（周期活动系列的增删改），读取方需要重新加载整个列表
+    static final long RELOAD_ALL = 0;
+
+    // 每写多少次压缩一次
+    private static final int COMPACT_INTERVAL = 64;
+    // 压缩后最多保留的行数，一次变化的活动比这更多时重新加载也更快
+    static final int MAX_ENTRIES = 1000;
+
+    private static final String SQL_CURRENT_SEQ = "SELECT seq FROM sqlite_sequence WHERE name = '"
+            + TABLE_EVENT_CHANGES + "'";
+    private static final String SQL_CHANGES_SINCE = "SELECT " + COLUMN_SEQ + ", "
+            + DatabaseHelper.COLUMN_EVENT_ID + " FROM " + TABLE_EVENT_CHANGES
+            + " WHERE " + COLUMN_SEQ + " > ? ORDER BY " + COLUMN_SEQ;
+    // 删除被同一活动更新的一行覆盖掉的旧行，(event_id) 索引自带 seq，每行只需一次查找
+    private static final String SQL_DELETE_SUPERSEDED = "DELETE FROM " + TABLE_EVENT_CHANGES
+            + " WHERE " + COLUMN_SEQ + " < (SELECT MAX(c." + COLUMN_SEQ + ") FROM " + TABLE_EVENT_CHANGES + " c"
+            + " WHERE c." + DatabaseHelper.COLUMN_EVENT_ID + " = " + TABLE_EVENT_CHANGES + "."
+            + DatabaseHelper.COLUMN_EVENT_ID + ")";
+    private static final String SQL_TRUNCATE_POINT = "SELECT " + COLUMN_SEQ + " FROM " + TABLE_EVENT_CHANGES
+            + " ORDER BY " + COLUMN_SEQ + " DESC LIMIT 1 OFFSET " + MAX_ENTRIES;
+
+    private final DatabaseHelper dbHelper;
+    private int writesSinceCompaction;
+    // 不晚于它的变化可能已经被丢弃；进程启动后第一次使用时取当时的 seq，之前的变化一律当作不完整
+    private long floor = -1;
+
+    ChangeLog(DatabaseHelper dbHelper) {
+        this.dbHelper = dbHelper;
+    }
+
+    // 当前最新的 seq，列表开始加载前读取，之后的变化都会在下次读取时返回
+    // 读取失败时返回 -1，用它读取变化时总是要求重新加载
+    synchronized long currentSequence() {
+        long seq = querySequence();
+        if (floor < 0) {
+            floor = seq;
+        }
+        return seq;
+    }
+
+    // seq 之后变化过的活动 id，按变化的先后排列，每个只出现一次；结果放进 changedIds，返回最新的 seq
+    // 日志已经不完整或有需要整体重新加载的变化时返回 -1，出错时也返回 -1
+    long changesSince(long sequence, Set<Long> changedIds) {
+        synchronized (this) {
+            if (floor < 0) {
+                floor = querySequence();
+            }
+            if (sequence < 0 || floor < 0 || sequence < floor) {
+                return -1;
+            }
+        }
+        Cursor cursor = null;
+        try {
+            SQLiteDatabase db = dbHelper.getReadableDatabase();
+            cursor = db.rawQuery(SQL_CHANGES_SINCE, new String[]{String.valueOf(sequence)});
+            long latest = sequence;
+            Set<Long> ids = new LinkedHashSet<>();
+            while (cursor.moveToNext()) {
+                latest = cursor.getLong(0);
+                long eventId = cursor.getLong(1);
+                if (eventId == RELOAD_ALL) {
+                    return -1;
+                }
+                ids.add(eventId);
+            }
+            // 读取期间被压缩掉的部分无法确认，按不完整处理
+            synchronized (this) {
+                if (sequence < floor) {
+                    return -1;
+                }
+            }
+            changedIds.addAll(ids);
+            return latest;
+        } catch (Exception e) {
+            Log.e("DatabaseHelper", "读取变更日志时出错: " + e.getMessage());
+            return -1;
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+    }
+
+    // 每次写操作后调用，累计到一定次数时压缩日志
+    void onDataChanged() {
+        synchronized (this) {
+            if (++writesSinceCompaction < COMPACT_INTERVAL) {
+                return;
+            }
+        }
+        compact();
+    }
+
+    // 批量写入之后立即压缩；调用方还在事务里时留到之后的写操作，压缩出错不能连累调用方的事务
+    void compact() {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        if (db.inTransaction()) {
+            return;
+        }
+        synchronized (this) {
+            writesSinceCompaction = 0;
+        }
+        Cursor cursor = null;
+        db.beginTransaction();
+        try {
+            db.execSQL(SQL_DELETE_SUPERSEDED);
+            long cutoff = -1;
+            cursor = db.rawQuery(SQL_TRUNCATE_POINT, null);
+            if (cursor.moveToFirst()) {
+                cutoff = cursor.getLong(0);
+            }
+            cursor.close();
+            cursor = null;
+            if (cutoff >= 0) {
+                // 先提高起点再删除，删除提交后才开始的读取一定能发现自己不完整
+                synchronized (this) {
+                    floor = Math.max(floor, cutoff);
+                }
+                db.delete(TABLE_EVENT_CHANGES, COLUMN_SEQ + " <= ?", new String[]{String.valueOf(cutoff)});
+            }
+            db.setTransactionSuccessful();
+        } catch (Exception e) {
+            Log.e("DatabaseHelper", "压缩变更日志时出错: " + e.getMessage());
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+            db.endTransaction();
+        }
+    }
+
+    // 日志为空时 sqlite_sequence 里还没有这一行，返回 0；出错时返回 -1
+    private long querySequence() {
+        Cursor cursor = null;
+        try {
+            cursor = dbHelper.getReadableDatabase().rawQuery(SQL_CURRENT_SEQ, null);
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        } catch (Exception e) {
+            Log.e("DatabaseHelper", "读取变更日志序号时出错: " + e.getMessage());
+            return -1;
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+    }
+}
@@ -5,55 +5,257 @@ import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.os.CancellationSignal;
+import android.os.OperationCanceledException;
 import android.text.TextUtils;
 import android.util.Log;
 
 import com.example.eventapp.model.Event;
+import com.example.eventapp.model.EventSeries;
+import com.example.eventapp.model.Participant;
 import com.example.eventapp.model.User;
+import com.example.eventapp.utils.SearchHighlighter;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 
 public class DatabaseHelper extends SQLiteOpenHelper {
     private static final String DATABASE_NAME = "EventApp.db";
-    private static final int DATABASE_VERSION = 2;
+    private static final int DATABASE_VERSION = 11;
+    // onCreate 建立的基础结构版本，之后的结构变化都由 Migrations 逐步完成
+    private static final int BASE_SCHEMA_VERSION = 2;
 
     // 表名
-    private static final String TABLE_EVENTS = "events";
-    private static final String TABLE_REGISTRATIONS = "registrations";
-    private static final String TABLE_USERS = "users";
+    static final String TABLE_EVENTS = "events";
+    static final String TABLE_REGISTRATIONS = "registrations";
+    static final String TABLE_USERS = "users";
+    static final String TABLE_WAITLIST = "waitlist";
 
     // Events 表的列名
-    private static final String COLUMN_ID = "id";
-    private static final String COLUMN_TITLE = "title";
-    private static final String COLUMN_DESCRIPTION = "description";
-    private static final String COLUMN_LOCATION = "location";
-    private static final String COLUMN_START_TIME = "start_time";
-    private static final String COLUMN_END_TIME = "end_time";
-    private static final String COLUMN_ORGANIZER = "organizer";
-    private static final String COLUMN_MAX_PARTICIPANTS = "max_participants";
-    private static final String COLUMN_CURRENT_PARTICIPANTS = "current_participants";
+    static final String COLUMN_ID = "id";
+    static final String COLUMN_TITLE = "title";
+    static final String COLUMN_DESCRIPTION = "description";
+    static final String COLUMN_LOCATION = "location";
+    static final String COLUMN_START_TIME = "start_time";
+    static final String COLUMN_END_TIME = "end_time";
+    static final String COLUMN_ORGANIZER = "organizer";
+    static final String COLUMN_MAX_PARTICIPANTS = "max_participants";
+    static final String COLUMN_CURRENT_PARTICIPANTS = "current_participants";
+    static final String COLUMN_DESCRIPTION_EXCERPT = "description_excerpt";
+    static final String COLUMN_LATITUDE = "latitude";
+    static final String COLUMN_LONGITUDE = "longitude";
+    // 周期活动中单独保存的那一次：所属系列和第几次，普通活动为 NULL
+    static final String COLUMN_SERIES_ID = "series_id";
+    static final String COLUMN_OCCURRENCE_INDEX = "occurrence_index";
+
+    // 列表卡片最多显示两行描述，保存的描述摘要长度够用即可
+    static final int DESCRIPTION_EXCERPT_LENGTH = 160;
 
     // Users 表的列名
-    private static final String COLUMN_USERNAME = "username";
-    private static final String COLUMN_PASSWORD = "password";
-    private static final String COLUMN_EMAIL = "email";
-    private static final String COLUMN_IS_STAFF = "is_staff";
+    static final String COLUMN_USERNAME = "username";
+    static final String COLUMN_PASSWORD = "password";
+    static final String COLUMN_EMAIL = "email";
+    static final String COLUMN_IS_STAFF = "is_staff";
 
     // Registrations 表的列名
-    private static final String COLUMN_EVENT_ID = "event_id";
-    private static final String COLUMN_USER_ID = "user_id";
-    private static final String COLUMN_REGISTER_TIME = "register_time";
+    static final String COLUMN_EVENT_ID = "event_id";
+    static final String COLUMN_USER_ID = "user_id";
+    static final String COLUMN_REGISTER_TIME = "register_time";
+
+    // 候补名单表的列
+    static final String COLUMN_JOIN_TIME = "join_time";
+
+    // 分页查询第一页时使用的锚点，比任何 start_time 和 id 都小
+    public static final long FIRST_PAGE = Long.MIN_VALUE;
+    public static final int PAGE_SIZE = 30;
+    // 全文搜索结果之后最多追加的模糊匹配数
+    private static final int MAX_FUZZY_MATCHES = 50;
+    // 一次返回全部结果的搜索中，每个周期活动系列最多生成的次数
+    private static final int MAX_OCCURRENCES_PER_SERIES = 20;
+    // 增量刷新最多处理的活动数，变化更多时重新加载列表更快
+    private static final int MAX_CHANGES_PER_REFRESH = 100;
+    // 活动列表依赖的表，订阅变化时使用
+    public static final String[] EVENT_LIST_TABLES = {TABLE_EVENTS, TABLE_REGISTRATIONS,
+            RecurringEvents.TABLE_EVENT_SERIES, RecurringEvents.TABLE_SERIES_EXCEPTIONS};
+    // 活动详情依赖的表：活动本身、报名状态和人数、候补位置，以及周期活动
+    public static final String[] EVENT_DETAIL_TABLES = {TABLE_EVENTS, TABLE_REGISTRATIONS, TABLE_WAITLIST,
+            RecurringEvents.TABLE_EVENT_SERIES, RecurringEvents.TABLE_SERIES_EXCEPTIONS};
+    // 列表的排列顺序，与分页的 (start_time, id) 键一致
+    public static final Comparator<Event> EVENT_ORDER = (a, b) -> a.getStartTime() != b.getStartTime()
+            ? Long.compare(a.getStartTime(), b.getStartTime()) : Long.compare(a.getId(), b.getId());
+
+    // 全文搜索结果的附加列
+    private static final String COLUMN_SNIPPET = "snippet";
+    private static final String COLUMN_MATCH_INFO = "match_info";
+
+    // 批量报名时存放候选用户的临时表，只存在于当前连接
+    private static final String TABLE_ENROLL_CANDIDATES = "enroll_candidates";
+    private static final String COLUMN_POSITION = "position";
+
+    private static volatile DatabaseHelper instance;
+    private EventStatements statements;
+    private final ResultCache resultCache = new ResultCache();
+    private final EventTimeIndex timeIndex = new EventTimeIndex(this);
+    private final EventTextIndex textIndex = new EventTextIndex(this);
+    private final ParticipantCountAuditor participantCountAuditor = new ParticipantCountAuditor(this);
+    private final UserScheduleIndex scheduleIndex = new UserScheduleIndex(this);
+    private final ChangeLog changeLog = new ChangeLog(this);
+    private final InvalidationTracker invalidationTracker = new InvalidationTracker();
+
+    // 获取进程内唯一的数据库实例，连接在整个进程生命周期内保持打开，调用方不要关闭它
+    public static DatabaseHelper getInstance(Context context) {
+        if (instance == null) {
+            synchronized (DatabaseHelper.class) {
+                if (instance == null) {
+                    instance = new DatabaseHelper(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
 
-    public DatabaseHelper(Context context) {
+    private DatabaseHelper(Context context) {
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        // WAL 模式下读操作不会被写操作阻塞，多个后台线程可以并发读取
+        setWriteAheadLoggingEnabled(true);
+        // 系统内存紧张时释放缓存的查询结果
+        context.registerComponentCallbacks(resultCache);
+    }
+
+    // 数据版本，每次写操作后递增；界面可以用它判断返回时是否需要重新加载
+    public long getDataVersion() {
+        return resultCache.getVersion();
+    }
+
+    // 写操作提交后调用，之前缓存的查询结果全部作废，订阅了 tables 的查询重新执行
+    void notifyDataChanged(String... tables) {
+        resultCache.invalidate();
+        changeLog.onDataChanged();
+        invalidationTracker.notifyTablesChanged(tables);
+    }
+
+    // 报名人数发生变化的活动记下来，增量核对时检查；报名、人数和候补名单一起变化
+    private void notifyParticipantsChanged(long eventId) {
+        participantCountAuditor.markTouched(eventId);
+        notifyDataChanged(TABLE_EVENTS, TABLE_REGISTRATIONS, TABLE_WAITLIST);
+    }
+
+    // 候补转正等可能改变任意用户报名的写操作提交后调用
+    void notifyRegistrationsChanged() {
+        scheduleIndex.invalidateAll();
+        notifyDataChanged(TABLE_EVENTS, TABLE_REGISTRATIONS, TABLE_WAITLIST);
+    }
+
+    // 订阅查询结果或表的变化，界面用它代替自己判断何时重新加载
+    public InvalidationTracker getInvalidationTracker() {
+        return invalidationTracker;
+    }
+
+    // 核对并修复活动的报名人数计数，耗时操作，需要在后台线程调用
+    public ParticipantCountAuditor getParticipantCountAuditor() {
+        return participantCountAuditor;
+    }
+
+    // 批量导入之后调用，时间索引在下次查询时整体重新加载
+    void notifyEventsImported() {
+        timeIndex.invalidate();
+        textIndex.invalidate();
+        scheduleIndex.invalidateAll();
+        notifyDataChanged(TABLE_EVENTS);
+        // 导入的每一行都记进了变更日志，立即压缩
+        changeLog.compact();
+    }
+
+    // 变更日志的最新序号，列表开始加载前读取；回到列表时用 getEventChangesSince 只刷新之后变化的活动
+    public long getChangeSequence() {
+        return changeLog.currentSequence();
+    }
+
+    // sequence 之后变化过的活动及其最新内容，userId 不为 -1 时只返回该用户报名的活动（“我的活动”列表）
+    // 变化太多、日志已被压缩掉需要的部分，或周期活动系列有变化时返回 null，调用方应重新加载列表
+    public EventChanges getEventChangesSince(long sequence, long userId) {
+        Set<Long> changedIds = new LinkedHashSet<>();
+        long latest = changeLog.changesSince(sequence, changedIds);
+        if (latest < 0 || changedIds.size() > MAX_CHANGES_PER_REFRESH) {
+            return null;
+        }
+        if (changedIds.isEmpty()) {
+            return new EventChanges(latest, changedIds, new ArrayList<>());
+        }
+        long[] ids = new long[changedIds.size()];
+        int count = 0;
+        for (long id : changedIds) {
+            ids[count++] = id;
+        }
+        List<Event> events = getEventsByIds(ids);
+        if (events == null) {
+            return null;
+        }
+        if (userId != -1) {
+            try {
+                StringBuilder queryBuilder = new StringBuilder();
+                queryBuilder.append("SELECT ").append(COLUMN_EVENT_ID).append(" FROM ").append(TABLE_REGISTRATIONS)
+                        .append(" WHERE ").append(COLUMN_USER_ID).append(" = ? AND ")
+                        .append(COLUMN_EVENT_ID).append(" IN (");
+                long[] args = new long[ids.length + 1];
+                args[0] = userId;
+                for (int i = 0; i < ids.length; i++) {
+                    queryBuilder.append(i == 0 ? "?" : ", ?");
+                    args[i + 1] = ids[i];
+                }
+                queryBuilder.append(")");
+                Set<Long> registered = new HashSet<>(queryIds(getReadableDatabase(), queryBuilder.toString(), args));
+                List<Event> registeredEvents = new ArrayList<>();
+                for (Event event : events) {
+                    if (registered.contains(event.getId())) {
+                        registeredEvents.add(event);
+                    }
+                }
+                events = registeredEvents;
+            } catch (Exception e) {
+                Log.e("DatabaseHelper", "读取变化活动的报名状态时出错: " + e.getMessage());
+                return null;
+            }
+        }
+        return new EventChanges(latest, changedIds, events);
+    }
+
+    // 预编译语句在第一次使用时创建，之后整个进程复用
+    private synchronized EventStatements getStatements() {
+        if (statements == null) {
+            statements = new EventStatements(getWritableDatabase());
+        }
+        return statements;
+    }
+
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        super.onConfigure(db);
+        // 开启外键约束，删除活动时级联删除报名记录
+        db.setForeignKeyConstraintsEnabled(true);
     }
 
     @Override
     public void onCreate(SQLiteDatabase db) {
         Log.d("DatabaseHelper", "开始创建数据库表");
-        
+        createBaseSchema(db);
+        Migrations.migrate(db, BASE_SCHEMA_VERSION, DATABASE_VERSION);
+        Log.d("DatabaseHelper", "数据库表创建完成");
+    }
+
+    // 创建版本 2 的基础表结构
+    private void createBaseSchema(SQLiteDatabase db) {        
         // 创建活动表
         String createEventsTable = "CREATE TABLE " + TABLE_EVENTS + "("
                 + COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
@@ -89,17 +291,19 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                 + "FOREIGN KEY(" + COLUMN_USER_ID + ") REFERENCES " + TABLE_USERS + "(" + COLUMN_ID + "))";
         Log.d("DatabaseHelper", "创建报名表SQL: " + createRegistrationsTable);
         db.execSQL(createRegistrationsTable);
-        
-        Log.d("DatabaseHelper", "数据库表创建完成");
     }
 
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
         Log.d("DatabaseHelper", "数据库升级: " + oldVersion + " -> " + newVersion);
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_REGISTRATIONS);
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_EVENTS);
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_USERS);
-        onCreate(db);
+        // 逐步执行升级，保留已有数据；早于基础版本的数据库没有升级路径，只能重建
+        if (oldVersion < BASE_SCHEMA_VERSION || !Migrations.migrate(db, oldVersion, newVersion)) {
+            Log.w("DatabaseHelper", "无法逐步升级，重建数据库");
+            db.execSQL("DROP TABLE IF EXISTS " + TABLE_REGISTRATIONS);
+            db.execSQL("DROP TABLE IF EXISTS " + TABLE_EVENTS);
+            db.execSQL("DROP TABLE IF EXISTS " + TABLE_USERS);
+            onCreate(db);
+        }
         Log.d("DatabaseHelper", "数据库升级完成");
     }
 
@@ -112,33 +316,28 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         values.put(COLUMN_EMAIL, user.getEmail());
         values.put(COLUMN_IS_STAFF, user.isStaff() ? 1 : 0);
 
-        long id = db.insert(TABLE_USERS, null, values);
-        db.close();
-        return id;
+        return db.insert(TABLE_USERS, null, values);
     }
 
     public User getUser(String username) {
         SQLiteDatabase db = this.getReadableDatabase();
         User user = null;
+        Cursor cursor = null;
 
         try {
-            Cursor cursor = db.query(TABLE_USERS, null,
+            cursor = db.query(TABLE_USERS, null,
                     COLUMN_USERNAME + "=?", new String[]{username},
                     null, null, null);
 
             if (cursor != null && cursor.moveToFirst()) {
-                user = new User();
-                user.setId(cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_ID)));
-                user.setUsername(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_USERNAME)));
-                user.setPassword(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_PASSWORD)));
-                user.setEmail(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_EMAIL)));
-                user.setStaff(cursor.getInt(cursor.getColumnIndexOrThrow(COLUMN_IS_STAFF)) == 1);
-                cursor.close();
+                user = new UserRowMapper(cursor).map(cursor);
             }
         } catch (Exception e) {
             Log.e("DatabaseHelper", "获取用户信息时出错: " + e.getMessage());
         } finally {
-            db.close();
+            if (cursor != null) {
+                cursor.close();
+            }
         }
 
         return user;
@@ -147,25 +346,22 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     public User getUserByEmail(String email) {
         SQLiteDatabase db = this.getReadableDatabase();
         User user = null;
+        Cursor cursor = null;
 
         try {
-            Cursor cursor = db.query(TABLE_USERS, null,
+            cursor = db.query(TABLE_USERS, null,
                     COLUMN_EMAIL + "=?", new String[]{email},
                     null, null, null);
 
             if (cursor != null && cursor.moveToFirst()) {
-                user = new User();
-                user.setId(cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_ID)));
-                user.setUsername(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_USERNAME)));
-                user.setPassword(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_PASSWORD)));
-                user.setEmail(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_EMAIL)));
-                user.setStaff(cursor.getInt(cursor.getColumnIndexOrThrow(COLUMN_IS_STAFF)) == 1);
-                cursor.close();
+                user = new UserRowMapper(cursor).map(cursor);
             }
         } catch (Exception e) {
             Log.e("DatabaseHelper", "通过邮箱获取用户信息时出错: " + e.getMessage());
         } finally {
-            db.close();
+            if (cursor != null) {
+                cursor.close();
+            }
         }
 
         return user;
@@ -183,8 +379,46 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         values.put(COLUMN_ORGANIZER, event.getOrganizer());
         values.put(COLUMN_MAX_PARTICIPANTS, event.getMaxParticipants());
         values.put(COLUMN_CURRENT_PARTICIPANTS, event.getCurrentParticipants());
+        values.put(COLUMN_LATITUDE, event.getLatitude());
+        values.put(COLUMN_LONGITUDE, event.getLongitude());
+
+        long id = db.insert(TABLE_EVENTS, null, values);
+        if (id != -1) {
+            timeIndex.put(id, event.getStartTime(), event.getEndTime());
+            textIndex.put(id, event.getTitle(), event.getLocation());
+            notifyDataChanged(TABLE_EVENTS);
+        }
+        return id;
+    }
+
+    // 插入周期活动系列，只保存一行重复规则，每次的活动在查询时按时间窗口生成；失败时返回 -1
+    public long insertEventSeries(EventSeries series) {
+        try {
+            long id = RecurringEvents.insertSeries(this.getWritableDatabase(), series);
+            if (id != -1) {
+                notifyDataChanged(RecurringEvents.TABLE_EVENT_SERIES);
+            }
+            return id;
+        } catch (Exception e) {
+            Log.e("DatabaseHelper", "插入周期活动失败: " + e.getMessage());
+            return -1;
+        }
+    }
 
-        return db.insert(TABLE_EVENTS, null, values);
+    // 生成的活动保存成 events 表中的一行后，同步内存中的时间和文本索引；需要在事务提交后调用
+    private void onOccurrenceStored(Event occurrence) {
+        if (occurrence != null) {
+            timeIndex.put(occurrence.getId(), occurrence.getStartTime(), occurrence.getEndTime());
+            textIndex.put(occurrence.getId(), occurrence.getTitle(), occurrence.getLocation());
+        }
+    }
+
+    // 生成的活动换成已保存的那一行的 id，还没保存过时返回 -1（这一次不可能有报名或候补）；普通活动原样返回
+    private long resolveEventId(long eventId) {
+        if (!Recurrence.isOccurrenceId(eventId)) {
+            return eventId;
+        }
+        return RecurringEvents.storedId(this.getReadableDatabase(), eventId);
     }
 
     // 获取所有活动
@@ -201,19 +435,12 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         Cursor cursor = db.query(TABLE_EVENTS, columns, null, null, null, null, COLUMN_START_TIME + " ASC");
 
         if (cursor != null && cursor.moveToFirst()) {
+            EventRowMapper mapper = new EventRowMapper(cursor);
             do {
-                Event event = new Event();
-                event.setId(cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_ID)));
-                event.setTitle(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_TITLE)));
-                event.setDescription(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_DESCRIPTION)));
-                event.setLocation(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_LOCATION)));
-                event.setStartTime(cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_START_TIME)));
-                event.setEndTime(cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_END_TIME)));
-                event.setOrganizer(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_ORGANIZER)));
-                event.setMaxParticipants(cursor.getInt(cursor.getColumnIndexOrThrow(COLUMN_MAX_PARTICIPANTS)));
-                event.setCurrentParticipants(cursor.getInt(cursor.getColumnIndexOrThrow(COLUMN_CURRENT_PARTICIPANTS)));
-                events.add(event);
+                events.add(mapper.map(cursor));
             } while (cursor.moveToNext());
+        }
+        if (cursor != null) {
             cursor.close();
         }
 
@@ -235,42 +462,31 @@ public class DatabaseHelper extends SQLiteOpenHelper {
             }
 
             // 检查参数
-            if (id <= 0) {
+            if (id == 0) {
                 Log.e("DatabaseHelper", "无效的活动ID: " + id);
                 return null;
             }
 
-            String[] columns = {
-                COLUMN_ID,
-                COLUMN_TITLE,
-                COLUMN_DESCRIPTION,
-                COLUMN_LOCATION,
-                COLUMN_START_TIME,
-                COLUMN_END_TIME,
-                COLUMN_ORGANIZER,
-                COLUMN_MAX_PARTICIPANTS,
-                COLUMN_CURRENT_PARTICIPANTS
-            };
-            
+            // 负数 id 是周期活动生成的某一次
+            if (Recurrence.isOccurrenceId(id)) {
+                long storedId = RecurringEvents.storedId(db, id);
+                if (storedId == -1) {
+                    event = RecurringEvents.occurrence(db, id);
+                    Log.d("DatabaseHelper", "getEvent完成, 生成的活动: " + (event != null ? "成功" : "null"));
+                    return event;
+                }
+                id = storedId;
+            }
+
             Log.d("DatabaseHelper", "执行查询: SELECT * FROM " + TABLE_EVENTS + " WHERE " + COLUMN_ID + "=" + id);
-            cursor = db.query(TABLE_EVENTS, columns, COLUMN_ID + "=?",
-                    new String[]{String.valueOf(id)}, null, null, null);
+            cursor = EventStatements.query(db, EventStatements.SQL_EVENT_BY_ID, TABLE_EVENTS, id);
 
             Log.d("DatabaseHelper", "查询结果: cursor为" + (cursor == null ? "null" : "非null") + 
                                   ", 记录数=" + (cursor != null ? cursor.getCount() : 0));
 
             if (cursor != null && cursor.moveToFirst()) {
-                event = new Event();
                 try {
-                    event.setId(cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_ID)));
-                    event.setTitle(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_TITLE)));
-                    event.setDescription(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_DESCRIPTION)));
-                    event.setLocation(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_LOCATION)));
-                    event.setStartTime(cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_START_TIME)));
-                    event.setEndTime(cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_END_TIME)));
-                    event.setOrganizer(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_ORGANIZER)));
-                    event.setMaxParticipants(cursor.getInt(cursor.getColumnIndexOrThrow(COLUMN_MAX_PARTICIPANTS)));
-                    event.setCurrentParticipants(cursor.getInt(cursor.getColumnIndexOrThrow(COLUMN_CURRENT_PARTICIPANTS)));
+                    event = new EventRowMapper(cursor).map(cursor);
                     Log.d("DatabaseHelper", "成功加载活动: " + event.getTitle());
                 } catch (Exception e) {
                     Log.e("DatabaseHelper", "读取活动数据时出错: " + e.getMessage(), e);
@@ -285,9 +501,6 @@ public class DatabaseHelper extends SQLiteOpenHelper {
             if (cursor != null && !cursor.isClosed()) {
                 cursor.close();
             }
-            if (db != null && db.isOpen()) {
-                db.close();
-            }
         }
         
         Log.d("DatabaseHelper", "getEvent完成, 返回结果: " + (event != null ? "成功" : "null"));
@@ -296,112 +509,372 @@ public class DatabaseHelper extends SQLiteOpenHelper {
 
     // 报名活动
     public boolean registerEvent(long eventId, long userId) {
+        return claimSeat(eventId, userId) == RegistrationResult.CLAIMED;
+    }
+
+    // 抢占名额：名额检查和人数加一由一条条件更新完成，报名记录在同一个短事务里写入
+    public RegistrationResult claimSeat(long eventId, long userId) {
         Log.d("DatabaseHelper", "开始报名处理: eventId=" + eventId + ", userId=" + userId);
         SQLiteDatabase db = null;
-        ContentValues values = new ContentValues();
-        values.put(COLUMN_EVENT_ID, eventId);
-        values.put(COLUMN_USER_ID, userId);
-        values.put(COLUMN_REGISTER_TIME, System.currentTimeMillis());
+        RegistrationResult result = RegistrationResult.FAILED;
+        
+        Event occurrence = null;
         
         try {
             db = this.getWritableDatabase();
-            db.beginTransaction();
+            EventStatements statements = getStatements();
+            db.beginTransactionNonExclusive();
             
-            // 检查是否已经报名
-            String[] columns = {COLUMN_EVENT_ID};
-            String selection = COLUMN_EVENT_ID + " = ? AND " + COLUMN_USER_ID + " = ?";
-            String[] selectionArgs = {String.valueOf(eventId), String.valueOf(userId)};
-            Cursor cursor = db.query(TABLE_REGISTRATIONS, columns, selection, selectionArgs, null, null, null);
+            // 周期活动的某一次第一次被报名时才写入 events 表
+            if (Recurrence.isOccurrenceId(eventId)) {
+                occurrence = RecurringEvents.materialize(db, eventId);
+                eventId = occurrence != null ? occurrence.getId() : -1;
+            }
             
-            if (cursor != null && cursor.getCount() > 0) {
-                Log.d("DatabaseHelper", "用户已经报名过该活动");
-                cursor.close();
-                return false;
+            if (statements.isRegistered(eventId, userId)) {
+                result = RegistrationResult.ALREADY_REGISTERED;
+            } else if (statements.claimSeatFor(eventId, userId, System.currentTimeMillis())) {
+                // 占到名额后不再需要候补
+                statements.deleteWaitlist(eventId, userId);
+                db.setTransactionSuccessful();
+                result = RegistrationResult.CLAIMED;
+            } else {
+                // 条件更新没有命中：要么活动不存在，要么已满
+                result = statements.eventExists(eventId)
+                        ? RegistrationResult.FULL
+                        : RegistrationResult.EVENT_NOT_FOUND;
             }
-            if (cursor != null) {
-                cursor.close();
+        } catch (Exception e) {
+            Log.e("DatabaseHelper", "报名过程中出错: " + e.getMessage());
+        } finally {
+            if (db != null && db.inTransaction()) {
+                db.endTransaction();
             }
+        }
+        
+        if (result == RegistrationResult.CLAIMED) {
+            onOccurrenceStored(occurrence);
+            scheduleIndex.invalidate(userId);
+            notifyParticipantsChanged(eventId);
+        }
+        Log.d("DatabaseHelper", "报名结果: " + result);
+        return result;
+    }
 
-            // 检查活动是否存在且未满
-            String[] eventColumns = {
-                COLUMN_CURRENT_PARTICIPANTS,
-                COLUMN_MAX_PARTICIPANTS
-            };
-            cursor = db.query(TABLE_EVENTS, eventColumns, COLUMN_ID + "=?",
-                    new String[]{String.valueOf(eventId)}, null, null, null);
+    // 批量报名：把一组用户一次报名到同一个活动，活动不存在或出错时返回 null
+    // 候选用户先写入临时表，已报名的和不存在的用户各用一条查询找出，
+    // 剩余名额用一条计数更新占用，报名记录用一条 INSERT ... SELECT 写入，报上名的用户移出候补名单，
+    // 全部在同一个事务里完成
+    public GroupEnrollmentResult enrollUsers(long eventId, Collection<Long> userIds) {
+        Log.d("DatabaseHelper", "开始批量报名: eventId=" + eventId + ", 人数=" + userIds.size());
+        SQLiteDatabase db = null;
+        GroupEnrollmentResult result = null;
+        Event occurrence = null;
 
-            if (cursor != null && cursor.moveToFirst()) {
-                int currentParticipants = cursor.getInt(cursor.getColumnIndexOrThrow(COLUMN_CURRENT_PARTICIPANTS));
-                int maxParticipants = cursor.getInt(cursor.getColumnIndexOrThrow(COLUMN_MAX_PARTICIPANTS));
-                cursor.close();
+        try {
+            db = this.getWritableDatabase();
+            // 事务开始时就拿到了写锁，之后读到的剩余名额在提交前不会被其他报名改变
+            db.beginTransactionNonExclusive();
 
-                Log.d("DatabaseHelper", "当前参与人数/最大人数: " + currentParticipants + "/" + maxParticipants);
+            if (Recurrence.isOccurrenceId(eventId)) {
+                occurrence = RecurringEvents.materialize(db, eventId);
+                eventId = occurrence != null ? occurrence.getId() : -1;
+            }
 
-                if (currentParticipants >= maxParticipants) {
-                    Log.d("DatabaseHelper", "活动已满");
-                    return false;
+            long available;
+            Cursor cursor = EventStatements.query(db, "SELECT " + COLUMN_MAX_PARTICIPANTS + " - "
+                    + COLUMN_CURRENT_PARTICIPANTS + " FROM " + TABLE_EVENTS
+                    + " WHERE " + COLUMN_ID + " = ?", TABLE_EVENTS, eventId);
+            try {
+                if (!cursor.moveToFirst()) {
+                    Log.e("DatabaseHelper", "批量报名的活动不存在: " + eventId);
+                    return null;
                 }
+                available = Math.max(cursor.getLong(0), 0);
+            } finally {
+                cursor.close();
+            }
 
-                // 插入报名记录
-                long registrationResult = db.insert(TABLE_REGISTRATIONS, null, values);
-                if (registrationResult == -1) {
-                    Log.e("DatabaseHelper", "插入报名记录失败");
-                    return false;
+            db.execSQL("CREATE TEMP TABLE IF NOT EXISTS " + TABLE_ENROLL_CANDIDATES + "("
+                    + COLUMN_USER_ID + " INTEGER PRIMARY KEY, " + COLUMN_POSITION + " INTEGER NOT NULL)");
+            db.execSQL("DELETE FROM " + TABLE_ENROLL_CANDIDATES);
+            SQLiteStatement insertCandidate = db.compileStatement("INSERT OR IGNORE INTO "
+                    + TABLE_ENROLL_CANDIDATES + "(" + COLUMN_USER_ID + ", " + COLUMN_POSITION + ") VALUES (?, ?)");
+            try {
+                int position = 0;
+                for (Long userId : userIds) {
+                    if (userId == null) {
+                        continue;
+                    }
+                    insertCandidate.bindLong(1, userId);
+                    insertCandidate.bindLong(2, position++);
+                    insertCandidate.executeInsert();
                 }
+            } finally {
+                insertCandidate.close();
+            }
 
-                // 更新活动参与人数
-                ContentValues eventValues = new ContentValues();
-                eventValues.put(COLUMN_CURRENT_PARTICIPANTS, currentParticipants + 1);
-                int updateResult = db.update(TABLE_EVENTS, eventValues, COLUMN_ID + "=?",
-                        new String[]{String.valueOf(eventId)});
-                
-                if (updateResult > 0) {
-                    db.setTransactionSuccessful();
-                    Log.d("DatabaseHelper", "报名成功");
-                    return true;
-                } else {
-                    Log.e("DatabaseHelper", "更新活动参与人数失败");
+            List<Long> alreadyRegistered = queryIds(db, "SELECT c." + COLUMN_USER_ID
+                    + " FROM " + TABLE_ENROLL_CANDIDATES + " c JOIN " + TABLE_REGISTRATIONS + " r"
+                    + " ON r." + COLUMN_USER_ID + " = c." + COLUMN_USER_ID + " AND r." + COLUMN_EVENT_ID + " = ?"
+                    + " ORDER BY c." + COLUMN_POSITION, eventId);
+            List<Long> unknownUsers = queryIds(db, "SELECT " + COLUMN_USER_ID
+                    + " FROM " + TABLE_ENROLL_CANDIDATES + " WHERE " + COLUMN_USER_ID
+                    + " NOT IN (SELECT " + COLUMN_ID + " FROM " + TABLE_USERS + ")"
+                    + " ORDER BY " + COLUMN_POSITION);
+            db.execSQL("DELETE FROM " + TABLE_ENROLL_CANDIDATES + " WHERE " + COLUMN_USER_ID
+                    + " IN (SELECT " + COLUMN_USER_ID + " FROM " + TABLE_REGISTRATIONS
+                    + " WHERE " + COLUMN_EVENT_ID + " = ?) OR " + COLUMN_USER_ID
+                    + " NOT IN (SELECT " + COLUMN_ID + " FROM " + TABLE_USERS + ")", new Object[]{eventId});
+            List<Long> candidates = queryIds(db, "SELECT " + COLUMN_USER_ID
+                    + " FROM " + TABLE_ENROLL_CANDIDATES + " ORDER BY " + COLUMN_POSITION);
+
+            // 名额按传入顺序分配，排在后面的用户在名额不足时落选
+            int seats = (int) Math.min(candidates.size(), available);
+            if (seats > 0) {
+                SQLiteStatement claimSeats = db.compileStatement("UPDATE " + TABLE_EVENTS
+                        + " SET " + COLUMN_CURRENT_PARTICIPANTS + " = " + COLUMN_CURRENT_PARTICIPANTS + " + ?"
+                        + " WHERE " + COLUMN_ID + " = ?"
+                        + " AND " + COLUMN_CURRENT_PARTICIPANTS + " + ? <= " + COLUMN_MAX_PARTICIPANTS);
+                try {
+                    claimSeats.bindLong(1, seats);
+                    claimSeats.bindLong(2, eventId);
+                    claimSeats.bindLong(3, seats);
+                    if (claimSeats.executeUpdateDelete() != 1) {
+                        throw new IllegalStateException("名额已变化");
+                    }
+                } finally {
+                    claimSeats.close();
                 }
+                db.execSQL("INSERT INTO " + TABLE_REGISTRATIONS + "("
+                        + COLUMN_EVENT_ID + ", " + COLUMN_USER_ID + ", " + COLUMN_REGISTER_TIME + ")"
+                        + " SELECT ?, " + COLUMN_USER_ID + ", ? FROM " + TABLE_ENROLL_CANDIDATES
+                        + " ORDER BY " + COLUMN_POSITION + " LIMIT ?",
+                        new Object[]{eventId, System.currentTimeMillis(), seats});
+                // 与单个报名一样，报上名的用户不再排队
+                db.execSQL("DELETE FROM " + TABLE_WAITLIST + " WHERE " + COLUMN_EVENT_ID + " = ?"
+                        + " AND " + COLUMN_USER_ID + " IN (SELECT " + COLUMN_USER_ID
+                        + " FROM " + TABLE_ENROLL_CANDIDATES + " ORDER BY " + COLUMN_POSITION + " LIMIT ?)",
+                        new Object[]{eventId, seats});
+            }
+            db.execSQL("DELETE FROM " + TABLE_ENROLL_CANDIDATES);
+            db.setTransactionSuccessful();
+
+            result = new GroupEnrollmentResult(new ArrayList<>(candidates.subList(0, seats)),
+                    alreadyRegistered, new ArrayList<>(candidates.subList(seats, candidates.size())),
+                    unknownUsers);
+            Log.d("DatabaseHelper", "批量报名完成: 成功 " + seats + " 人, 名额不足 "
+                    + (candidates.size() - seats) + " 人");
+        } catch (Exception e) {
+            Log.e("DatabaseHelper", "批量报名时出错: " + e.getMessage());
+        } finally {
+            if (db != null && db.inTransaction()) {
+                db.endTransaction();
+            }
+        }
+
+        if (result != null) {
+            onOccurrenceStored(occurrence);
+            for (Long enrolledUserId : result.getEnrolled()) {
+                scheduleIndex.invalidate(enrolledUserId);
+            }
+            if (!result.getEnrolled().isEmpty()) {
+                notifyParticipantsChanged(eventId);
+            }
+        }
+        return result;
+    }
+
+    // 读取只有一列 id 的查询结果
+    private List<Long> queryIds(SQLiteDatabase db, String sql, long... args) {
+        List<Long> ids = new ArrayList<>();
+        Cursor cursor = EventStatements.query(db, sql, null, args);
+        try {
+            while (cursor.moveToNext()) {
+                ids.add(cursor.getLong(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return ids;
+    }
+
+    // 加入候补名单：活动还有名额时直接报名，已满时按加入顺序排队
+    public RegistrationResult joinWaitlist(long eventId, long userId) {
+        Log.d("DatabaseHelper", "加入候补名单: eventId=" + eventId + ", userId=" + userId);
+        SQLiteDatabase db = null;
+        RegistrationResult result = RegistrationResult.FAILED;
+
+        Event occurrence = null;
+
+        try {
+            db = this.getWritableDatabase();
+            EventStatements statements = getStatements();
+            db.beginTransactionNonExclusive();
+
+            if (Recurrence.isOccurrenceId(eventId)) {
+                occurrence = RecurringEvents.materialize(db, eventId);
+                eventId = occurrence != null ? occurrence.getId() : -1;
+            }
+
+            long now = System.currentTimeMillis();
+            if (statements.isRegistered(eventId, userId)) {
+                result = RegistrationResult.ALREADY_REGISTERED;
+            } else if (statements.claimSeatFor(eventId, userId, now)) {
+                statements.deleteWaitlist(eventId, userId);
+                db.setTransactionSuccessful();
+                result = RegistrationResult.CLAIMED;
+            } else if (!statements.eventExists(eventId)) {
+                result = RegistrationResult.EVENT_NOT_FOUND;
             } else {
-                Log.e("DatabaseHelper", "未找到活动信息");
+                statements.insertWaitlist(eventId, userId, now);
+                db.setTransactionSuccessful();
+                result = RegistrationResult.WAITLISTED;
             }
         } catch (Exception e) {
-            Log.e("DatabaseHelper", "报名过程中出错: " + e.getMessage());
+            Log.e("DatabaseHelper", "加入候补名单时出错: " + e.getMessage());
         } finally {
-            if (db != null) {
-                if (db.inTransaction()) {
-                    db.endTransaction();
-                }
-                db.close();
+            if (db != null && db.inTransaction()) {
+                db.endTransaction();
             }
         }
-        
-        return false;
+
+        if (result == RegistrationResult.CLAIMED || result == RegistrationResult.WAITLISTED) {
+            onOccurrenceStored(occurrence);
+        }
+        if (result == RegistrationResult.CLAIMED) {
+            scheduleIndex.invalidate(userId);
+            notifyParticipantsChanged(eventId);
+        } else if (result == RegistrationResult.WAITLISTED) {
+            // 排队不改变列表里的内容，只通知候补名单的订阅者；这一次刚被保存时 events 表也变了
+            if (occurrence != null) {
+                notifyDataChanged(TABLE_EVENTS, TABLE_WAITLIST);
+            } else {
+                invalidationTracker.notifyTablesChanged(TABLE_WAITLIST);
+            }
+        }
+        Log.d("DatabaseHelper", "加入候补名单结果: " + result);
+        return result;
+    }
+
+    // 退出候补名单
+    public boolean leaveWaitlist(long eventId, long userId) {
+        try {
+            this.getWritableDatabase();
+            boolean left = getStatements().deleteWaitlist(resolveEventId(eventId), userId) > 0;
+            if (left) {
+                invalidationTracker.notifyTablesChanged(TABLE_WAITLIST);
+            }
+            return left;
+        } catch (Exception e) {
+            Log.e("DatabaseHelper", "退出候补名单时出错: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // 用户在候补名单中的位置，从 1 开始，不在名单里时返回 0
+    public int getWaitlistPosition(long eventId, long userId) {
+        try {
+            return getStatements().waitlistPosition(resolveEventId(eventId), userId);
+        } catch (Exception e) {
+            Log.e("DatabaseHelper", "查询候补位置时出错: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    // 供计数修复后调用，需要在调用方的事务里执行
+    void promoteWaitlist(long eventId) {
+        promoteWaitlist(getStatements(), eventId);
+    }
+
+    // 有空余名额且有人排队时，按加入顺序把名额交给候补者，需要在调用方的事务里执行
+    // 每提升一人只需一次索引查找和三条单行写入，与排队人数无关
+    // 队首已经报过名时（例如旧版本批量报名留下的候补记录）只把他移出名单，不占名额
+    private void promoteWaitlist(EventStatements statements, long eventId) {
+        long nextUserId;
+        while ((nextUserId = statements.waitlistHead(eventId)) != -1) {
+            if (statements.isRegistered(eventId, nextUserId)) {
+                statements.deleteWaitlist(eventId, nextUserId);
+                Log.w("DatabaseHelper", "移除已报名用户的候补记录: eventId=" + eventId + ", userId=" + nextUserId);
+                continue;
+            }
+            if (!statements.claimSeatFor(eventId, nextUserId, System.currentTimeMillis())) {
+                break;
+            }
+            statements.deleteWaitlist(eventId, nextUserId);
+            Log.d("DatabaseHelper", "候补转正: eventId=" + eventId + ", userId=" + nextUserId);
+        }
+    }
+
+    // 用户已报名的活动中与 event 时间重叠的活动，按开始时间排序，不包括 event 本身；出错时返回空列表
+    // 是否冲突由内存中的区间索引判断，只有存在冲突时才读取冲突活动的内容
+    public List<Event> getConflictingEvents(long userId, Event event) {
+        try {
+            long[] ids = scheduleIndex.conflicts(userId, event.getStartTime(), event.getEndTime(),
+                    resolveEventId(event.getId()));
+            if (ids == null || ids.length == 0) {
+                return new ArrayList<>();
+            }
+            List<Event> conflicts = getEventsByIds(ids);
+            return conflicts != null ? conflicts : new ArrayList<>();
+        } catch (Exception e) {
+            Log.e("DatabaseHelper", "检查时间冲突时出错: " + e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    // 活动名单的一页：按报名时间排序，从上一页最后一条的 (register_time, 报名记录 id) 之后继续
+    // 由 (event_id, register_time) 索引直接定位，每页的开销与名单长度无关；出错时返回 null
+    public List<Participant> getParticipantsPage(long eventId, long afterRegisterTime, long afterRegistrationId,
+                                                 int limit) {
+        List<Participant> participants = new ArrayList<>();
+        Cursor cursor = null;
+        try {
+            eventId = resolveEventId(eventId);
+            if (eventId == -1) {
+                return participants;
+            }
+            SQLiteDatabase db = this.getReadableDatabase();
+            cursor = EventStatements.query(db, "SELECT r." + COLUMN_ID + ", r." + COLUMN_USER_ID
+                    + ", r." + COLUMN_REGISTER_TIME + ", u." + COLUMN_USERNAME + ", u." + COLUMN_EMAIL
+                    + " FROM " + TABLE_REGISTRATIONS + " r"
+                    + " JOIN " + TABLE_USERS + " u ON u." + COLUMN_ID + " = r." + COLUMN_USER_ID
+                    + " WHERE r." + COLUMN_EVENT_ID + " = ?"
+                    // 先用 >= 给出索引的起点，深处的页也不需要从名单开头扫描
+                    + " AND r." + COLUMN_REGISTER_TIME + " >= ?"
+                    + " AND (r." + COLUMN_REGISTER_TIME + " > ? OR r." + COLUMN_ID + " > ?)"
+                    + " ORDER BY r." + COLUMN_REGISTER_TIME + ", r." + COLUMN_ID + " LIMIT ?",
+                    TABLE_REGISTRATIONS, eventId, afterRegisterTime, afterRegisterTime, afterRegistrationId, limit);
+            while (cursor.moveToNext()) {
+                Participant participant = new Participant();
+                participant.setRegistrationId(cursor.getLong(0));
+                participant.setUserId(cursor.getLong(1));
+                participant.setRegisterTime(cursor.getLong(2));
+                participant.setUsername(cursor.getString(3));
+                participant.setEmail(cursor.getString(4));
+                participants.add(participant);
+            }
+        } catch (Exception e) {
+            Log.e("DatabaseHelper", "加载活动名单时出错: " + e.getMessage());
+            return null;
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+        return participants;
     }
 
     // 检查用户是否已报名
     public boolean isUserRegistered(long userId, long eventId) {
         Log.d("DatabaseHelper", "检查用户报名状态: userId=" + userId + ", eventId=" + eventId);
-        SQLiteDatabase db = this.getReadableDatabase();
         boolean isRegistered = false;
-        Cursor cursor = null;
         
         try {
-            String[] columns = {COLUMN_ID};
-            String selection = COLUMN_EVENT_ID + " = ? AND " + COLUMN_USER_ID + " = ?";
-            String[] selectionArgs = {String.valueOf(eventId), String.valueOf(userId)};
-            
-            cursor = db.query(TABLE_REGISTRATIONS, columns, selection, selectionArgs, null, null, null);
-            isRegistered = cursor != null && cursor.getCount() > 0;
-            Log.d("DatabaseHelper", "查询结果: cursor非空=" + (cursor != null) + ", 记录数=" + (cursor != null ? cursor.getCount() : 0));
+            isRegistered = getStatements().isRegistered(resolveEventId(eventId), userId);
             Log.d("DatabaseHelper", "用户报名状态: " + isRegistered);
         } catch (Exception e) {
             Log.e("DatabaseHelper", "检查用户报名状态时出错: " + e.getMessage());
-        } finally {
-            if (cursor != null) {
-                cursor.close();
-            }
-            db.close();
         }
         
         return isRegistered;
@@ -413,40 +886,72 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         SQLiteDatabase db = this.getReadableDatabase();
         
         try {
-            String query = "SELECT e.* FROM " + TABLE_EVENTS + " e"
+            String query = "SELECT " + summaryColumns("e.") + " FROM " + TABLE_EVENTS + " e"
                     + " INNER JOIN " + TABLE_REGISTRATIONS + " r"
                     + " ON e." + COLUMN_ID + " = r." + COLUMN_EVENT_ID
                     + " WHERE r." + COLUMN_USER_ID + " = ?"
                     + " ORDER BY e." + COLUMN_START_TIME + " ASC";
 
-            Cursor cursor = db.rawQuery(query, new String[]{String.valueOf(userId)});
+            Cursor cursor = EventStatements.query(db, query, TABLE_EVENTS, userId);
 
             if (cursor != null && cursor.moveToFirst()) {
+                EventRowMapper mapper = new EventRowMapper(cursor);
                 do {
-                    Event event = new Event();
-                    event.setId(cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_ID)));
-                    event.setTitle(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_TITLE)));
-                    event.setDescription(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_DESCRIPTION)));
-                    event.setLocation(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_LOCATION)));
-                    event.setStartTime(cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_START_TIME)));
-                    event.setEndTime(cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_END_TIME)));
-                    event.setOrganizer(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_ORGANIZER)));
-                    event.setMaxParticipants(cursor.getInt(cursor.getColumnIndexOrThrow(COLUMN_MAX_PARTICIPANTS)));
-                    event.setCurrentParticipants(cursor.getInt(cursor.getColumnIndexOrThrow(COLUMN_CURRENT_PARTICIPANTS)));
-                    events.add(event);
+                    events.add(mapper.map(cursor));
                 } while (cursor.moveToNext());
                 cursor.close();
             }
             if (cursor != null && !cursor.isClosed()) {
                 cursor.close();
             }
-        } finally {
-            db.close();
+        } catch (Exception e) {
+            Log.e("DatabaseHelper", "获取用户报名活动时出错: " + e.getMessage());
         }
         
         return events;
     }
 
+    // 分页获取用户报名的活动，从上一页最后一条的 (start_time, id) 之后继续
+    public List<Event> getUserRegisteredEventsPage(long userId, long afterStartTime, long afterId, int limit) {
+        String cacheKey = resultCache.key(false, "registered", userId, afterStartTime, afterId, limit);
+        List<Event> cached = resultCache.get(cacheKey);
+        if (cached != null) {
+            return cached;
+        }
+
+        List<Event> events = new ArrayList<>();
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = null;
+
+        try {
+            String query = "SELECT " + summaryColumns("e.") + " FROM " + TABLE_REGISTRATIONS + " r"
+                    + " INNER JOIN " + TABLE_EVENTS + " e"
+                    + " ON e." + COLUMN_ID + " = r." + COLUMN_EVENT_ID
+                    + " WHERE r." + COLUMN_USER_ID + " = ?"
+                    + " AND (e." + COLUMN_START_TIME + " > ? OR (e." + COLUMN_START_TIME + " = ? AND e." + COLUMN_ID + " > ?))"
+                    + " ORDER BY e." + COLUMN_START_TIME + " ASC, e." + COLUMN_ID + " ASC"
+                    + " LIMIT ?";
+
+            cursor = EventStatements.query(db, query, TABLE_EVENTS,
+                    userId, afterStartTime, afterStartTime, afterId, limit);
+            if (cursor != null && cursor.moveToFirst()) {
+                EventRowMapper mapper = new EventRowMapper(cursor);
+                do {
+                    events.add(mapper.map(cursor));
+                } while (cursor.moveToNext());
+            }
+            resultCache.put(cacheKey, events);
+        } catch (Exception e) {
+            Log.e("DatabaseHelper", "分页获取用户报名活动时出错: " + e.getMessage());
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+
+        return events;
+    }
+
     // 检查活动表是否有数据
     public boolean hasEvents() {
         SQLiteDatabase db = this.getReadableDatabase();
@@ -466,9 +971,6 @@ public class DatabaseHelper extends SQLiteOpenHelper {
             if (cursor != null && !cursor.isClosed()) {
                 cursor.close();
             }
-            if (db != null && db.isOpen()) {
-                db.close();
-            }
         }
     }
 
@@ -476,60 +978,41 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     public boolean cancelRegistration(long eventId, long userId) {
         Log.d("DatabaseHelper", "开始取消报名: eventId=" + eventId + ", userId=" + userId);
         SQLiteDatabase db = null;
-        Cursor cursor = null;
         boolean success = false;
         
         try {
             db = this.getWritableDatabase();
-            db.beginTransaction();
+            EventStatements statements = getStatements();
+            eventId = resolveEventId(eventId);
+            db.beginTransactionNonExclusive();
             
-            // 获取活动信息
-            String[] columns = {COLUMN_CURRENT_PARTICIPANTS};
-            cursor = db.query(TABLE_EVENTS, columns, COLUMN_ID + "=?",
-                    new String[]{String.valueOf(eventId)}, null, null, null);
-                
-            if (cursor != null && cursor.moveToFirst()) {
-                int currentParticipants = cursor.getInt(cursor.getColumnIndexOrThrow(COLUMN_CURRENT_PARTICIPANTS));
-                
-                // 删除报名记录
-                int deleteResult = db.delete(TABLE_REGISTRATIONS,
-                        COLUMN_EVENT_ID + "=? AND " + COLUMN_USER_ID + "=?",
-                        new String[]{String.valueOf(eventId), String.valueOf(userId)});
-                    
-                if (deleteResult > 0) {
-                    // 更新活动当前参与人数
-                    ContentValues values = new ContentValues();
-                    values.put(COLUMN_CURRENT_PARTICIPANTS, Math.max(0, currentParticipants - 1));
-                    int updateResult = db.update(TABLE_EVENTS, values, COLUMN_ID + "=?",
-                            new String[]{String.valueOf(eventId)});
-                        
-                    if (updateResult > 0) {
-                        db.setTransactionSuccessful();
-                        success = true;
-                        Log.d("DatabaseHelper", "取消报名成功");
-                    } else {
-                        Log.e("DatabaseHelper", "更新活动参与人数失败");
-                    }
-                } else {
-                    Log.d("DatabaseHelper", "取消报名失败: 未找到报名记录");
+            // 删除报名记录，再用条件更新释放名额，空出的名额在同一事务里交给候补队首
+            if (statements.deleteRegistration(eventId, userId) > 0) {
+                if (!statements.releaseSeat(eventId)) {
+                    Log.w("DatabaseHelper", "参与人数已为0或活动不存在: eventId=" + eventId);
                 }
+                // 取消的用户如果还留着候补记录，不能让他在下面又转正回来
+                statements.deleteWaitlist(eventId, userId);
+                promoteWaitlist(statements, eventId);
+                db.setTransactionSuccessful();
+                success = true;
+                Log.d("DatabaseHelper", "取消报名成功");
             } else {
-                Log.e("DatabaseHelper", "未找到活动信息");
+                Log.d("DatabaseHelper", "取消报名失败: 未找到报名记录");
             }
         } catch (Exception e) {
             Log.e("DatabaseHelper", "取消报名时出错: " + e.getMessage());
         } finally {
-            if (cursor != null) {
-                cursor.close();
-            }
-            if (db != null) {
-                if (db.inTransaction()) {
-                    db.endTransaction();
-                }
-                db.close();
+            if (db != null && db.inTransaction()) {
+                db.endTransaction();
             }
         }
         
+        if (success) {
+            // 空出的名额可能转给了候补的人，他们的报名也变了
+            scheduleIndex.invalidateAll();
+            notifyParticipantsChanged(eventId);
+        }
         return success;
     }
 
@@ -542,172 +1025,889 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         values.put("start_time", event.getStartTime());
         values.put("end_time", event.getEndTime());
         values.put("max_participants", event.getMaxParticipants());
+        values.put(COLUMN_LATITUDE, event.getLatitude());
+        values.put(COLUMN_LONGITUDE, event.getLongitude());
 
+        boolean updated = false;
+        long eventId = event.getId();
+        db.beginTransactionNonExclusive();
         try {
-            return db.update("events", values, "id = ?", new String[]{String.valueOf(event.getId())}) > 0;
+            // 单独修改周期活动的某一次时，先把这一次保存下来，系列的其他次不受影响
+            if (Recurrence.isOccurrenceId(eventId)) {
+                Event occurrence = RecurringEvents.materialize(db, eventId);
+                eventId = occurrence != null ? occurrence.getId() : -1;
+            }
+            updated = db.update("events", values, "id = ?", new String[]{String.valueOf(eventId)}) > 0;
+            if (updated) {
+                // 人数上限调高后，新增的名额先给候补名单里的人
+                promoteWaitlist(getStatements(), eventId);
+                db.setTransactionSuccessful();
+            }
         } catch (Exception e) {
             Log.e("DatabaseHelper", "更新活动失败: " + e.getMessage());
-            return false;
+            updated = false;
         } finally {
-            db.close();
+            db.endTransaction();
+        }
+        if (updated) {
+            timeIndex.put(eventId, event.getStartTime(), event.getEndTime());
+            textIndex.put(eventId, event.getTitle(), event.getLocation());
+            scheduleIndex.invalidateAll();
+            notifyParticipantsChanged(eventId);
         }
+        return updated;
     }
 
     public boolean deleteEvent(long eventId) {
         SQLiteDatabase db = this.getWritableDatabase();
+        boolean deleted = false;
+        long storedId = eventId;
+        db.beginTransactionNonExclusive();
         try {
-            db.beginTransaction();
-            // 首先删除所有相关的报名记录
-            db.delete("registrations", "event_id = ?", new String[]{String.valueOf(eventId)});
-            // 然后删除活动
-            boolean success = db.delete("events", "id = ?", new String[]{String.valueOf(eventId)}) > 0;
-            db.setTransactionSuccessful();
-            return success;
+            if (Recurrence.isOccurrenceId(eventId)) {
+                // 生成的活动没有对应的行，记为例外后不再生成；已单独保存过的那一行同时删除
+                if (RecurringEvents.occurrence(db, eventId) != null) {
+                    RecurringEvents.addException(db, Recurrence.seriesIdOf(eventId), Recurrence.indexOf(eventId));
+                    deleted = true;
+                }
+                storedId = RecurringEvents.storedId(db, eventId);
+            } else {
+                // 删除的是周期活动中单独保存的那一次时，同样记为例外
+                RecurringEvents.addStoredException(db, eventId);
+            }
+            // 报名记录由外键 ON DELETE CASCADE 一并删除
+            if (storedId != -1 && db.delete("events", "id = ?", new String[]{String.valueOf(storedId)}) > 0) {
+                deleted = true;
+            }
+            if (deleted) {
+                db.setTransactionSuccessful();
+            }
         } catch (Exception e) {
             Log.e("DatabaseHelper", "删除活动失败: " + e.getMessage());
-            return false;
+            deleted = false;
         } finally {
-            try {
-                db.endTransaction();
-            } catch (Exception e) {
-                Log.e("DatabaseHelper", "结束事务失败: " + e.getMessage());
+            db.endTransaction();
+        }
+        if (deleted) {
+            if (storedId != -1) {
+                timeIndex.remove(storedId);
+                textIndex.remove(storedId);
             }
-            db.close();
+            scheduleIndex.invalidateAll();
+            // 报名和候补记录级联删除，周期活动的那一次记为例外
+            notifyDataChanged(TABLE_EVENTS, TABLE_REGISTRATIONS, TABLE_WAITLIST,
+                    RecurringEvents.TABLE_SERIES_EXCEPTIONS);
         }
+        return deleted;
     }
 
     public List<Event> searchEvents(String keyword, String timeFilter, String statusFilter) {
+        return searchEvents(keyword, timeFilter, statusFilter, null);
+    }
+
+    // cancellationSignal 被取消时正在执行的 SQLite 查询立即中断，返回的结果不完整，调用方应当丢弃
+    public List<Event> searchEvents(String keyword, String timeFilter, String statusFilter,
+                                    CancellationSignal cancellationSignal) {
+        // 有关键词时走全文索引
+        String matchQuery = FullTextSearch.toMatchQuery(keyword);
+        // 关键词按规范化后的查询作为键，大小写和多余空格不同的输入共用同一份结果
+        String cacheKey = resultCache.key(isTimeDependent(timeFilter, statusFilter), "search",
+                matchQuery != null ? matchQuery.toLowerCase(Locale.ROOT) : "", timeFilter, statusFilter);
+        List<Event> cached = resultCache.get(cacheKey);
+        if (cached != null) {
+            return cached;
+        }
+        if (FullTextSearch.needsSubstringMatch(keyword)) {
+            return searchEventsSubstring(keyword, timeFilter, statusFilter, cacheKey, cancellationSignal);
+        }
+        if (matchQuery != null) {
+            return searchEventsFullText(keyword, matchQuery, timeFilter, statusFilter, cacheKey, cancellationSignal);
+        }
+
         List<Event> events = new ArrayList<>();
         SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = null;
         
         try {
             StringBuilder queryBuilder = new StringBuilder();
             List<String> args = new ArrayList<>();
             
             // 基础查询
-            queryBuilder.append("SELECT * FROM ").append(TABLE_EVENTS).append(" WHERE 1=1");
-            
-            // 关键词搜索
-            if (!TextUtils.isEmpty(keyword)) {
-                queryBuilder.append(" AND (")
-                        .append(COLUMN_TITLE).append(" LIKE ? OR ")
-                        .append(COLUMN_DESCRIPTION).append(" LIKE ? OR ")
-                        .append(COLUMN_LOCATION).append(" LIKE ?)");
-                String likeArg = "%" + keyword + "%";
-                args.add(likeArg);
-                args.add(likeArg);
-                args.add(likeArg);
-            }
-            
-            // 时间筛选
-            long currentTime = System.currentTimeMillis();
-            Calendar cal = Calendar.getInstance();
-            cal.setTimeInMillis(currentTime);
-            
-            switch (timeFilter) {
-                case "today":
-                    // 设置为今天开始时间
-                    cal.set(Calendar.HOUR_OF_DAY, 0);
-                    cal.set(Calendar.MINUTE, 0);
-                    cal.set(Calendar.SECOND, 0);
-                    long todayStart = cal.getTimeInMillis();
-                    // 设置为今天结束时间
-                    cal.set(Calendar.HOUR_OF_DAY, 23);
-                    cal.set(Calendar.MINUTE, 59);
-                    cal.set(Calendar.SECOND, 59);
-                    long todayEnd = cal.getTimeInMillis();
-                    queryBuilder.append(" AND ").append(COLUMN_START_TIME).append(" BETWEEN ? AND ?");
-                    args.add(String.valueOf(todayStart));
-                    args.add(String.valueOf(todayEnd));
-                    break;
-                    
-                case "week":
-                    // 设置为本周开始时间
-                    cal.set(Calendar.DAY_OF_WEEK, cal.getFirstDayOfWeek());
-                    cal.set(Calendar.HOUR_OF_DAY, 0);
-                    cal.set(Calendar.MINUTE, 0);
-                    cal.set(Calendar.SECOND, 0);
-                    long weekStart = cal.getTimeInMillis();
-                    // 设置为本周结束时间
-                    cal.add(Calendar.DAY_OF_WEEK, 6);
-                    cal.set(Calendar.HOUR_OF_DAY, 23);
-                    cal.set(Calendar.MINUTE, 59);
-                    cal.set(Calendar.SECOND, 59);
-                    long weekEnd = cal.getTimeInMillis();
-                    queryBuilder.append(" AND ").append(COLUMN_START_TIME).append(" BETWEEN ? AND ?");
-                    args.add(String.valueOf(weekStart));
-                    args.add(String.valueOf(weekEnd));
-                    break;
-                    
-                case "month":
-                    // 设置为本月开始时间
-                    cal.set(Calendar.DAY_OF_MONTH, 1);
-                    cal.set(Calendar.HOUR_OF_DAY, 0);
-                    cal.set(Calendar.MINUTE, 0);
-                    cal.set(Calendar.SECOND, 0);
-                    long monthStart = cal.getTimeInMillis();
-                    // 设置为本月结束时间
-                    cal.set(Calendar.DAY_OF_MONTH, cal.getActualMaximum(Calendar.DAY_OF_MONTH));
-                    cal.set(Calendar.HOUR_OF_DAY, 23);
-                    cal.set(Calendar.MINUTE, 59);
-                    cal.set(Calendar.SECOND, 59);
-                    long monthEnd = cal.getTimeInMillis();
-                    queryBuilder.append(" AND ").append(COLUMN_START_TIME).append(" BETWEEN ? AND ?");
-                    args.add(String.valueOf(monthStart));
-                    args.add(String.valueOf(monthEnd));
-                    break;
-            }
+            queryBuilder.append("SELECT ").append(summaryColumns("")).append(" FROM ").append(TABLE_EVENTS).append(" WHERE 1=1");
             
-            // 状态筛选
-            switch (statusFilter) {
-                case "not_started":
-                    queryBuilder.append(" AND ").append(COLUMN_START_TIME).append(" > ?");
-                    args.add(String.valueOf(currentTime));
-                    break;
-                case "ongoing":
-                    queryBuilder.append(" AND ").append(COLUMN_START_TIME).append(" <= ? AND ")
-                            .append(COLUMN_END_TIME).append(" >= ?");
-                    args.add(String.valueOf(currentTime));
-                    args.add(String.valueOf(currentTime));
-                    break;
-                case "ended":
-                    queryBuilder.append(" AND ").append(COLUMN_END_TIME).append(" < ?");
-                    args.add(String.valueOf(currentTime));
-                    break;
-                case "full":
-                    queryBuilder.append(" AND ").append(COLUMN_CURRENT_PARTICIPANTS)
-                            .append(" >= ").append(COLUMN_MAX_PARTICIPANTS);
-                    break;
-            }
+            // 时间和状态筛选
+            appendFilters(queryBuilder, args, timeFilter, statusFilter, "");
             
             // 添加排序
             queryBuilder.append(" ORDER BY ").append(COLUMN_START_TIME).append(" ASC");
             
             // 执行查询
-            Cursor cursor = db.rawQuery(queryBuilder.toString(), args.toArray(new String[0]));
+            cursor = db.rawQuery(queryBuilder.toString(), args.toArray(new String[0]), cancellationSignal);
             
             if (cursor != null && cursor.moveToFirst()) {
+                EventRowMapper mapper = new EventRowMapper(cursor);
                 do {
-                    Event event = new Event();
-                    event.setId(cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_ID)));
-                    event.setTitle(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_TITLE)));
-                    event.setDescription(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_DESCRIPTION)));
-                    event.setLocation(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_LOCATION)));
-                    event.setStartTime(cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_START_TIME)));
-                    event.setEndTime(cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_END_TIME)));
-                    event.setOrganizer(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_ORGANIZER)));
-                    event.setMaxParticipants(cursor.getInt(cursor.getColumnIndexOrThrow(COLUMN_MAX_PARTICIPANTS)));
-                    event.setCurrentParticipants(cursor.getInt(cursor.getColumnIndexOrThrow(COLUMN_CURRENT_PARTICIPANTS)));
-                    events.add(event);
+                    events.add(mapper.map(cursor));
                 } while (cursor.moveToNext());
-                cursor.close();
             }
+            List<Event> merged = mergeOccurrences(events, timeFilter, statusFilter, FIRST_PAGE, 0,
+                    Long.MAX_VALUE, Integer.MAX_VALUE, MAX_OCCURRENCES_PER_SERIES, cancellationSignal);
+            if (merged != null) {
+                events = merged;
+                resultCache.put(cacheKey, events);
+            }
+        } catch (OperationCanceledException e) {
+            Log.d("DatabaseHelper", "搜索已取消: " + keyword);
         } catch (Exception e) {
             Log.e("DatabaseHelper", "搜索活动时出错: " + e.getMessage());
         } finally {
-            db.close();
+            if (cursor != null) {
+                cursor.close();
+            }
         }
         
         return events;
     }
-} 
\ No newline at end of file
+
+    // 分页浏览活动（不含关键词），从上一页最后一条的 (start_time, id) 之后继续，
+    // 由 (start_time, id) 索引直接定位，每页的开销与表的大小无关
+    public List<Event> searchEventsPage(String timeFilter, String statusFilter,
+                                        long afterStartTime, long afterId, int limit) {
+        return searchEventsPage(timeFilter, statusFilter, afterStartTime, afterId, limit, null);
+    }
+
+    // 周期活动按这一页覆盖的时间范围生成后合并进来，生成量只和这一页的大小有关
+    public List<Event> searchEventsPage(String timeFilter, String statusFilter,
+                                        long afterStartTime, long afterId, int limit,
+                                        CancellationSignal cancellationSignal) {
+        String cacheKey = resultCache.key(isTimeDependent(timeFilter, statusFilter), "page",
+                timeFilter, statusFilter, afterStartTime, afterId, limit);
+        List<Event> cached = resultCache.get(cacheKey);
+        if (cached != null) {
+            return cached;
+        }
+
+        List<Event> stored = storedEventsPage(timeFilter, statusFilter, afterStartTime, afterId, limit,
+                cancellationSignal);
+        if (stored == null) {
+            return new ArrayList<>();
+        }
+        // 这一页已满时，比最后一条开始得更晚的生成活动属于后面的页
+        long upTo = stored.size() < limit ? Long.MAX_VALUE : stored.get(stored.size() - 1).getStartTime();
+        List<Event> events = mergeOccurrences(stored, timeFilter, statusFilter, afterStartTime, afterId,
+                upTo, limit, limit, cancellationSignal);
+        if (events == null) {
+            return stored;
+        }
+        resultCache.put(cacheKey, events);
+        return events;
+    }
+
+    // 已保存的活动中的一页，取消或出错时返回 null
+    private List<Event> storedEventsPage(String timeFilter, String statusFilter,
+                                         long afterStartTime, long afterId, int limit,
+                                         CancellationSignal cancellationSignal) {
+        // 时间和状态筛选由内存中的时间索引回答，数据库只按主键读取这一页的活动
+        if (isTimeDependent(timeFilter, statusFilter) && !"full".equals(statusFilter)) {
+            long[] ids = queryTimeIndex(timeFilter, statusFilter, afterStartTime, afterId, limit);
+            List<Event> indexed = ids != null ? getEventsByIds(ids) : null;
+            if (indexed != null) {
+                return indexed;
+            }
+        }
+
+        List<Event> events = new ArrayList<>();
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = null;
+
+        try {
+            StringBuilder queryBuilder = new StringBuilder();
+            List<String> args = new ArrayList<>();
+
+            queryBuilder.append("SELECT ").append(summaryColumns("")).append(" FROM ").append(TABLE_EVENTS).append(" WHERE 1=1");
+            appendFilters(queryBuilder, args, timeFilter, statusFilter, "");
+            queryBuilder.append(" AND (").append(COLUMN_START_TIME).append(" > ? OR (")
+                    .append(COLUMN_START_TIME).append(" = ? AND ").append(COLUMN_ID).append(" > ?))");
+            args.add(String.valueOf(afterStartTime));
+            args.add(String.valueOf(afterStartTime));
+            args.add(String.valueOf(afterId));
+            queryBuilder.append(" ORDER BY ").append(COLUMN_START_TIME).append(" ASC, ")
+                    .append(COLUMN_ID).append(" ASC LIMIT ").append(limit);
+
+            cursor = db.rawQuery(queryBuilder.toString(), args.toArray(new String[0]), cancellationSignal);
+            if (cursor != null && cursor.moveToFirst()) {
+                EventRowMapper mapper = new EventRowMapper(cursor);
+                do {
+                    events.add(mapper.map(cursor));
+                } while (cursor.moveToNext());
+            }
+        } catch (OperationCanceledException e) {
+            Log.d("DatabaseHelper", "分页加载已取消");
+            return null;
+        } catch (Exception e) {
+            Log.e("DatabaseHelper", "分页加载活动时出错: " + e.getMessage());
+            return null;
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+
+        return events;
+    }
+
+    // 把周期活动在 (afterStartTime, afterId) 之后、开始时间不晚于 upTo 的活动按列表顺序合并进 stored，
+    // 截取前 limit 个；每个系列最多生成 perSeriesLimit 个。取消或出错时返回 null
+    private List<Event> mergeOccurrences(List<Event> stored, String timeFilter, String statusFilter,
+                                         long afterStartTime, long afterId, long upTo, int limit,
+                                         int perSeriesLimit, CancellationSignal cancellationSignal) {
+        long[] bounds = occurrenceBounds(timeFilter, statusFilter, System.currentTimeMillis());
+        if (bounds == null) {
+            return stored;
+        }
+        long from = Math.max(bounds[0], afterStartTime);
+        long to = Math.min(bounds[1], upTo);
+        try {
+            SQLiteDatabase db = this.getReadableDatabase();
+            List<EventSeries> series = RecurringEvents.seriesInWindow(db, from, to, null, cancellationSignal);
+            if (series.isEmpty()) {
+                return stored;
+            }
+            List<Event> merged = new ArrayList<>(stored);
+            merged.addAll(RecurringEvents.expand(db, series, from, to, bounds[2], bounds[3],
+                    afterStartTime, afterId, perSeriesLimit));
+            merged.sort(EVENT_ORDER);
+            return merged.size() > limit ? new ArrayList<>(merged.subList(0, limit)) : merged;
+        } catch (OperationCanceledException e) {
+            Log.d("DatabaseHelper", "生成周期活动已取消");
+            return null;
+        } catch (Exception e) {
+            Log.e("DatabaseHelper", "生成周期活动时出错: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // 在全文搜索结果后面追加标题、描述或地点包含关键词的周期活动，按开始时间排序
+    // 没有时间筛选时从现在开始生成，过去没有报名的那几次没有意义
+    private long[] appendOccurrences(long[] rankedIds, String keyword, String timeFilter, String statusFilter,
+                                     CancellationSignal cancellationSignal) {
+        long now = System.currentTimeMillis();
+        long[] bounds = occurrenceBounds(timeFilter, statusFilter, now);
+        if (bounds == null) {
+            return rankedIds;
+        }
+        if (!isTimeDependent(timeFilter, statusFilter)) {
+            bounds[0] = now;
+        }
+        List<Event> occurrences;
+        try {
+            SQLiteDatabase db = this.getReadableDatabase();
+            List<EventSeries> series = RecurringEvents.seriesInWindow(db, bounds[0], bounds[1],
+                    keyword.trim(), cancellationSignal);
+            occurrences = RecurringEvents.expand(db, series, bounds[0], bounds[1], bounds[2], bounds[3],
+                    FIRST_PAGE, 0, MAX_OCCURRENCES_PER_SERIES);
+        } catch (Exception e) {
+            Log.e("DatabaseHelper", "搜索周期活动时出错: " + e.getMessage());
+            return rankedIds;
+        }
+        occurrences.sort(EVENT_ORDER);
+        long[] result = Arrays.copyOf(rankedIds, rankedIds.length + occurrences.size());
+        for (int i = 0; i < occurrences.size(); i++) {
+            result[rankedIds.length + i] = occurrences.get(i).getId();
+        }
+        return result;
+    }
+
+    // 把时间和状态筛选换算成生成周期活动的条件 {开始时间下限, 开始时间上限, 结束时间下限, 结束时间上限（不含）}
+    // 生成的活动都还没有人报名，"full" 筛选时返回 null
+    private static long[] occurrenceBounds(String timeFilter, String statusFilter, long now) {
+        long[] bounds = {Long.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE, Long.MAX_VALUE};
+        long[] range = timeFilterRange(timeFilter, now);
+        if (range != null) {
+            bounds[0] = range[0];
+            bounds[1] = range[1];
+        }
+        switch (statusFilter) {
+            case "not_started":
+                bounds[0] = Math.max(bounds[0], now + 1);
+                break;
+            case "ongoing":
+                bounds[1] = Math.min(bounds[1], now);
+                bounds[2] = now;
+                break;
+            case "ended":
+                bounds[3] = now;
+                break;
+            case "full":
+                return null;
+        }
+        return bounds;
+    }
+
+    // 查找 (latitude, longitude) 周围 radiusKm 千米内有坐标的活动，按距离从近到远排序
+    // keyword 不为空时只保留全文搜索能匹配的活动；时间和状态筛选与列表浏览相同
+    // 先由 (latitude, longitude) 索引按外接矩形取出候选的 id 和坐标，再计算实际距离，活动内容在显示时按窗口加载
+    public List<Event> searchEventsNearby(double latitude, double longitude, double radiusKm, String keyword,
+                                          String timeFilter, String statusFilter,
+                                          CancellationSignal cancellationSignal) {
+        String matchQuery = FullTextSearch.toMatchQuery(keyword);
+        String cacheKey = resultCache.key(isTimeDependent(timeFilter, statusFilter), "nearby",
+                latitude, longitude, radiusKm, matchQuery != null ? matchQuery.toLowerCase(Locale.ROOT) : "",
+                timeFilter, statusFilter);
+        List<Event> cached = resultCache.get(cacheKey);
+        if (cached != null) {
+            return cached;
+        }
+
+        List<Long> ids = new ArrayList<>();
+        List<Double> distances = new ArrayList<>();
+        boolean failed = false;
+        SQLiteDatabase db = this.getReadableDatabase();
+        for (double[] box : NearbySearch.boundingBoxes(latitude, longitude, radiusKm)) {
+            Cursor cursor = null;
+            try {
+                StringBuilder queryBuilder = new StringBuilder();
+                List<String> args = new ArrayList<>();
+                // 纬度范围决定扫描的索引区间，经度条件在索引条目上判断；没有坐标的活动不在范围内
+                queryBuilder.append("SELECT e.").append(COLUMN_ID).append(", e.").append(COLUMN_LATITUDE)
+                        .append(", e.").append(COLUMN_LONGITUDE)
+                        .append(" FROM ").append(TABLE_EVENTS).append(" e")
+                        .append(" WHERE e.").append(COLUMN_LATITUDE).append(" BETWEEN ? AND ?")
+                        .append(" AND e.").append(COLUMN_LONGITUDE).append(" BETWEEN ? AND ?");
+                args.add(String.valueOf(box[0]));
+                args.add(String.valueOf(box[1]));
+                args.add(String.valueOf(box[2]));
+                args.add(String.valueOf(box[3]));
+                if (FullTextSearch.needsSubstringMatch(keyword)) {
+                    appendSubstringMatch(queryBuilder, args, FullTextSearch.toLikePatterns(keyword), "e.");
+                } else if (matchQuery != null) {
+                    String fts = FullTextSearch.TABLE_EVENTS_FTS;
+                    queryBuilder.append(" AND e.").append(COLUMN_ID).append(" IN (SELECT docid FROM ")
+                            .append(fts).append(" WHERE ").append(fts).append(" MATCH ?)");
+                    args.add(matchQuery);
+                }
+                appendFilters(queryBuilder, args, timeFilter, statusFilter, "e.");
+
+                cursor = db.rawQuery(queryBuilder.toString(), args.toArray(new String[0]), cancellationSignal);
+                while (cursor.moveToNext()) {
+                    double distance = NearbySearch.distanceKm(latitude, longitude,
+                            cursor.getDouble(1), cursor.getDouble(2));
+                    if (distance <= radiusKm) {
+                        ids.add(cursor.getLong(0));
+                        distances.add(distance);
+                    }
+                }
+            } catch (OperationCanceledException e) {
+                Log.d("DatabaseHelper", "附近活动查询已取消");
+                failed = true;
+            } catch (Exception e) {
+                Log.e("DatabaseHelper", "查询附近活动时出错: " + e.getMessage());
+                failed = true;
+            } finally {
+                if (cursor != null) {
+                    cursor.close();
+                }
+            }
+            if (failed) {
+                ids.clear();
+                break;
+            }
+        }
+
+        // 距离近的在前
+        final List<Double> rowDistances = distances;
+        Integer[] order = new Integer[ids.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(rowDistances.get(a), rowDistances.get(b)));
+        long[] sortedIds = new long[order.length];
+        for (int i = 0; i < order.length; i++) {
+            sortedIds[i] = ids.get(order[i]);
+        }
+        List<Event> events = new LazyEventList(sortedIds, this::getEventsByIds);
+        if (!failed) {
+            resultCache.put(cacheKey, events);
+        }
+        return events;
+    }
+
+    // 全文搜索：由 FTS 索引找出匹配的活动，再应用时间和状态筛选，结果按相关度排序，
+    // 之后接上标题或地点拼写相近、但全文索引没有匹配到的活动
+    // 这里只读取 id、开始时间和 matchinfo 用于排序，活动内容和摘要由 LazyEventList 在显示时按窗口加载
+    private List<Event> searchEventsFullText(String keyword, String matchQuery, String timeFilter,
+                                             String statusFilter, String cacheKey,
+                                             CancellationSignal cancellationSignal) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = null;
+        long[] ids = new long[0];
+        long[] startTimes = new long[0];
+        double[] scores = new double[0];
+        boolean failed = false;
+
+        try {
+            String fts = FullTextSearch.TABLE_EVENTS_FTS;
+            StringBuilder queryBuilder = new StringBuilder();
+            List<String> args = new ArrayList<>();
+
+            queryBuilder.append("SELECT e.").append(COLUMN_ID).append(", e.").append(COLUMN_START_TIME)
+                    .append(", matchinfo(").append(fts).append(", '")
+                    .append(FullTextSearch.MATCHINFO_FORMAT).append("') AS ").append(COLUMN_MATCH_INFO)
+                    .append(" FROM ").append(fts)
+                    .append(" JOIN ").append(TABLE_EVENTS).append(" e ON e.").append(COLUMN_ID)
+                    .append(" = ").append(fts).append(".docid")
+                    .append(" WHERE ").append(fts).append(" MATCH ?");
+            args.add(matchQuery);
+            appendFilters(queryBuilder, args, timeFilter, statusFilter, "e.");
+
+            cursor = db.rawQuery(queryBuilder.toString(), args.toArray(new String[0]), cancellationSignal);
+            if (cursor != null && cursor.moveToFirst()) {
+                ids = new long[cursor.getCount()];
+                startTimes = new long[ids.length];
+                scores = new double[ids.length];
+                int matchInfoIndex = cursor.getColumnIndexOrThrow(COLUMN_MATCH_INFO);
+                int row = 0;
+                do {
+                    ids[row] = cursor.getLong(0);
+                    startTimes[row] = cursor.getLong(1);
+                    scores[row] = FullTextSearch.rank(cursor.getBlob(matchInfoIndex));
+                    row++;
+                } while (cursor.moveToNext());
+            }
+        } catch (OperationCanceledException e) {
+            Log.d("DatabaseHelper", "全文搜索已取消: " + matchQuery);
+            ids = new long[0];
+            failed = true;
+        } catch (Exception e) {
+            Log.e("DatabaseHelper", "全文搜索活动时出错: " + e.getMessage());
+            ids = new long[0];
+            failed = true;
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+
+        // 相关度高的在前，相关度相同时按开始时间排序
+        final double[] rowScores = scores;
+        final long[] rowStartTimes = startTimes;
+        Integer[] order = new Integer[ids.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> {
+            int byScore = Double.compare(rowScores[b], rowScores[a]);
+            return byScore != 0 ? byScore : Long.compare(rowStartTimes[a], rowStartTimes[b]);
+        });
+        long[] rankedIds = new long[order.length];
+        for (int i = 0; i < order.length; i++) {
+            rankedIds[i] = ids[order[i]];
+        }
+        if (!failed) {
+            rankedIds = appendFuzzyMatches(rankedIds, keyword, timeFilter, statusFilter, cancellationSignal);
+            rankedIds = appendOccurrences(rankedIds, keyword, timeFilter, statusFilter, cancellationSignal);
+        }
+        List<Event> events = new LazyEventList(rankedIds, windowIds -> loadSearchWindow(matchQuery, windowIds));
+        if (!failed) {
+            resultCache.put(cacheKey, events);
+        }
+        return events;
+    }
+
+    // 含中日韩文字的关键词：标题、描述或地点包含每一个关键词的活动，按命中的列加权排序，
+    // 权重与全文搜索相同，同分时按开始时间排序；LIKE 无法使用索引，每次都扫描整张表
+    private List<Event> searchEventsSubstring(String keyword, String timeFilter, String statusFilter,
+                                              String cacheKey, CancellationSignal cancellationSignal) {
+        String[] patterns = FullTextSearch.toLikePatterns(keyword);
+        long[] ids = new long[0];
+        boolean failed = false;
+        Cursor cursor = null;
+        try {
+            StringBuilder queryBuilder = new StringBuilder();
+            List<String> args = new ArrayList<>();
+            queryBuilder.append("SELECT ").append(COLUMN_ID).append(", (");
+            String[] columns = {COLUMN_TITLE, COLUMN_DESCRIPTION, COLUMN_LOCATION};
+            int[] weights = {3, 1, 2};
+            for (int i = 0; i < patterns.length; i++) {
+                for (int c = 0; c < columns.length; c++) {
+                    queryBuilder.append(i == 0 && c == 0 ? "" : " + ").append(weights[c])
+                            .append(" * IFNULL(").append(columns[c]).append(" LIKE ? ESCAPE '\\', 0)");
+                    args.add(patterns[i]);
+                }
+            }
+            queryBuilder.append(") AS score FROM ").append(TABLE_EVENTS).append(" WHERE 1=1");
+            appendSubstringMatch(queryBuilder, args, patterns, "");
+            appendFilters(queryBuilder, args, timeFilter, statusFilter, "");
+            queryBuilder.append(" ORDER BY score DESC, ").append(COLUMN_START_TIME).append(", ").append(COLUMN_ID);
+
+            cursor = getReadableDatabase().rawQuery(queryBuilder.toString(),
+                    args.toArray(new String[0]), cancellationSignal);
+            ids = new long[cursor.getCount()];
+            for (int row = 0; cursor.moveToNext(); row++) {
+                ids[row] = cursor.getLong(0);
+            }
+        } catch (OperationCanceledException e) {
+            Log.d("DatabaseHelper", "子串搜索已取消: " + keyword);
+            ids = new long[0];
+            failed = true;
+        } catch (Exception e) {
+            Log.e("DatabaseHelper", "子串搜索活动时出错: " + e.getMessage());
+            ids = new long[0];
+            failed = true;
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+
+        if (!failed) {
+            ids = appendFuzzyMatches(ids, keyword, timeFilter, statusFilter, cancellationSignal);
+            ids = appendOccurrences(ids, keyword, timeFilter, statusFilter, cancellationSignal);
+        }
+        List<Event> events = new LazyEventList(ids, this::getEventsByIds);
+        if (!failed) {
+            resultCache.put(cacheKey, events);
+        }
+        return events;
+    }
+
+    // 每个模式都要出现在标题、描述或地点之一中，prefix 为连接查询时 events 表的别名前缀
+    private static void appendSubstringMatch(StringBuilder queryBuilder, List<String> args,
+                                             String[] patterns, String prefix) {
+        String[] columns = {COLUMN_TITLE, COLUMN_DESCRIPTION, COLUMN_LOCATION};
+        for (String pattern : patterns) {
+            queryBuilder.append(" AND (");
+            for (int i = 0; i < columns.length; i++) {
+                queryBuilder.append(i == 0 ? "" : " OR ").append(prefix).append(columns[i])
+                        .append(" LIKE ? ESCAPE '\\'");
+                args.add(pattern);
+            }
+            queryBuilder.append(")");
+        }
+    }
+
+    // 在全文搜索结果后面追加模糊匹配到的活动，同样应用时间和状态筛选
+    private long[] appendFuzzyMatches(long[] rankedIds, String keyword, String timeFilter, String statusFilter,
+                                      CancellationSignal cancellationSignal) {
+        long[] fuzzyIds = textIndex.fuzzySearch(keyword, MAX_FUZZY_MATCHES);
+        Set<Long> matched = new HashSet<>();
+        for (long id : rankedIds) {
+            matched.add(id);
+        }
+        List<String> args = new ArrayList<>();
+        StringBuilder queryBuilder = new StringBuilder("SELECT ").append(COLUMN_ID).append(" FROM ")
+                .append(TABLE_EVENTS).append(" WHERE ").append(COLUMN_ID).append(" IN (");
+        for (long id : fuzzyIds) {
+            if (matched.add(id)) {
+                queryBuilder.append(args.isEmpty() ? "?" : ", ?");
+                args.add(String.valueOf(id));
+            }
+        }
+        if (args.isEmpty()) {
+            return rankedIds;
+        }
+        queryBuilder.append(")");
+        appendFilters(queryBuilder, args, timeFilter, statusFilter, "");
+
+        Set<Long> allowed = new HashSet<>();
+        Cursor cursor = null;
+        try {
+            cursor = getReadableDatabase().rawQuery(queryBuilder.toString(),
+                    args.toArray(new String[0]), cancellationSignal);
+            while (cursor.moveToNext()) {
+                allowed.add(cursor.getLong(0));
+            }
+        } catch (Exception e) {
+            Log.e("DatabaseHelper", "筛选模糊匹配结果时出错: " + e.getMessage());
+            return rankedIds;
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+
+        long[] result = Arrays.copyOf(rankedIds, rankedIds.length + allowed.size());
+        int count = rankedIds.length;
+        for (long id : fuzzyIds) {
+            if (allowed.remove(id)) {
+                result[count++] = id;
+            }
+        }
+        return result;
+    }
+
+    // 标题和地点的联想词，按出现次数排序；只读内存，可以在主线程调用，索引还没加载好时返回空列表
+    public List<String> getSearchSuggestions(String prefix, int limit) {
+        return textIndex.suggest(prefix, limit);
+    }
+
+    // 在后台线程预先加载联想词和模糊搜索用的索引
+    public void warmUpSearchIndex() {
+        textIndex.warmUp();
+    }
+
+    // 读取搜索结果中的一个窗口，摘要需要 MATCH 条件才能生成，所以仍然通过 FTS 表连接
+    // 模糊匹配到的活动不在 MATCH 结果里，改为按主键读取，没有摘要；在后台线程调用，出错时返回 null
+    private List<Event> loadSearchWindow(String matchQuery, long[] ids) {
+        List<Event> events = new ArrayList<>(ids.length);
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = null;
+
+        try {
+            String fts = FullTextSearch.TABLE_EVENTS_FTS;
+            StringBuilder queryBuilder = new StringBuilder();
+            String[] args = new String[ids.length + 1];
+            args[0] = matchQuery;
+
+            queryBuilder.append("SELECT ").append(summaryColumns("e.")).append(", snippet(").append(fts).append(", '")
+                    .append(SearchHighlighter.MATCH_START).append("', '")
+                    .append(SearchHighlighter.MATCH_END).append("', '…', -1, 12) AS ").append(COLUMN_SNIPPET)
+                    .append(" FROM ").append(fts)
+                    .append(" JOIN ").append(TABLE_EVENTS).append(" e ON e.").append(COLUMN_ID)
+                    .append(" = ").append(fts).append(".docid")
+                    .append(" WHERE ").append(fts).append(" MATCH ?")
+                    .append(" AND ").append(fts).append(".docid IN (");
+            for (int i = 0; i < ids.length; i++) {
+                queryBuilder.append(i == 0 ? "?" : ", ?");
+                args[i + 1] = String.valueOf(ids[i]);
+            }
+            queryBuilder.append(")");
+
+            cursor = db.rawQuery(queryBuilder.toString(), args);
+            if (cursor != null && cursor.moveToFirst()) {
+                int snippetIndex = cursor.getColumnIndexOrThrow(COLUMN_SNIPPET);
+                EventRowMapper mapper = new EventRowMapper(cursor);
+                do {
+                    Event event = mapper.map(cursor);
+                    event.setSnippet(cursor.getString(snippetIndex));
+                    events.add(event);
+                } while (cursor.moveToNext());
+            }
+        } catch (Exception e) {
+            Log.e("DatabaseHelper", "加载搜索结果时出错: " + e.getMessage());
+            return null;
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+
+        if (events.size() < ids.length) {
+            Set<Long> loaded = new HashSet<>();
+            for (Event event : events) {
+                loaded.add(event.getId());
+            }
+            long[] missing = new long[ids.length - events.size()];
+            int count = 0;
+            for (long id : ids) {
+                if (!loaded.contains(id) && count < missing.length) {
+                    missing[count++] = id;
+                }
+            }
+            List<Event> fuzzyEvents = getEventsByIds(Arrays.copyOf(missing, count));
+            if (fuzzyEvents == null) {
+                return null;
+            }
+            events.addAll(fuzzyEvents);
+        }
+        return events;
+    }
+
+    // 把时间和状态筛选转换成时间索引的查询条件，索引不可用时返回 null
+    private long[] queryTimeIndex(String timeFilter, String statusFilter,
+                                  long afterStartTime, long afterId, int limit) {
+        long now = System.currentTimeMillis();
+        long startFrom = Long.MIN_VALUE;
+        long startTo = Long.MAX_VALUE;
+        long[] range = timeFilterRange(timeFilter, now);
+        if (range != null) {
+            startFrom = range[0];
+            startTo = range[1];
+        }
+        int endMode = EventTimeIndex.END_ANY;
+        switch (statusFilter) {
+            case "not_started":
+                startFrom = Math.max(startFrom, now + 1);
+                break;
+            case "ongoing":
+                startTo = Math.min(startTo, now);
+                endMode = EventTimeIndex.END_AT_LEAST;
+                break;
+            case "ended":
+                endMode = EventTimeIndex.END_BEFORE;
+                break;
+        }
+        return timeIndex.query(startFrom, startTo, endMode, now, afterStartTime, afterId, limit);
+    }
+
+    // 按主键读取一组活动，结果保持 ids 的顺序；出错时返回 null
+    // 负数 id 是周期活动生成的某一次，已单独保存时读取保存的那一行，id 仍用生成的 id 以便与列表对应
+    private List<Event> getEventsByIds(long[] ids) {
+        List<Event> events = new ArrayList<>(ids.length);
+        if (ids.length == 0) {
+            return events;
+        }
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = null;
+
+        try {
+            Map<Long, Event> byId = new HashMap<>();
+            Map<Long, Long> occurrenceIds = new HashMap<>();
+            long[] storedIds = new long[ids.length];
+            int storedCount = 0;
+            for (long id : ids) {
+                if (!Recurrence.isOccurrenceId(id)) {
+                    storedIds[storedCount++] = id;
+                    continue;
+                }
+                long storedId = RecurringEvents.storedId(db, id);
+                if (storedId != -1) {
+                    occurrenceIds.put(storedId, id);
+                    storedIds[storedCount++] = storedId;
+                } else {
+                    Event occurrence = RecurringEvents.occurrence(db, id);
+                    if (occurrence != null) {
+                        byId.put(id, occurrence);
+                    }
+                }
+            }
+            storedIds = Arrays.copyOf(storedIds, storedCount);
+
+            StringBuilder queryBuilder = new StringBuilder();
+            queryBuilder.append("SELECT ").append(summaryColumns("")).append(" FROM ").append(TABLE_EVENTS)
+                    .append(" WHERE ").append(COLUMN_ID).append(" IN (");
+            for (int i = 0; i < storedIds.length; i++) {
+                queryBuilder.append(i == 0 ? "?" : ", ?");
+            }
+            queryBuilder.append(")");
+
+            cursor = EventStatements.query(db, queryBuilder.toString(), TABLE_EVENTS, storedIds);
+            if (cursor != null && cursor.moveToFirst()) {
+                EventRowMapper mapper = new EventRowMapper(cursor);
+                do {
+                    Event event = mapper.map(cursor);
+                    Long occurrenceId = occurrenceIds.get(event.getId());
+                    if (occurrenceId != null) {
+                        event.setId(occurrenceId);
+                    }
+                    byId.put(event.getId(), event);
+                } while (cursor.moveToNext());
+            }
+            for (long id : ids) {
+                Event event = byId.get(id);
+                if (event != null) {
+                    events.add(event);
+                }
+            }
+        } catch (Exception e) {
+            Log.e("DatabaseHelper", "按 id 读取活动时出错: " + e.getMessage());
+            return null;
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+
+        return events;
+    }
+
+    // 筛选条件是否与当前时间有关，有关时缓存结果只在短时间内有效
+    private static boolean isTimeDependent(String timeFilter, String statusFilter) {
+        return !TextUtils.isEmpty(timeFilter) || !TextUtils.isEmpty(statusFilter);
+    }
+
+    // 列表页需要的列：卡片上显示的字段和描述摘要，不读取完整描述，prefix 为表别名前缀
+    private static String summaryColumns(String prefix) {
+        return prefix + COLUMN_ID + ", " + prefix + COLUMN_TITLE + ", " + prefix + COLUMN_LOCATION + ", "
+                + prefix + COLUMN_START_TIME + ", " + prefix + COLUMN_END_TIME + ", "
+                + prefix + COLUMN_MAX_PARTICIPANTS + ", " + prefix + COLUMN_CURRENT_PARTICIPANTS + ", "
+                + prefix + COLUMN_DESCRIPTION_EXCERPT;
+    }
+
+    // 时间筛选对应的开始时间范围 [from, to]，没有时间筛选时返回 null
+    private static long[] timeFilterRange(String timeFilter, long currentTime) {
+        Calendar cal = Calendar.getInstance();
+        cal.setTimeInMillis(currentTime);
+        
+        switch (timeFilter) {
+            case "today":
+                // 设置为今天开始时间
+                cal.set(Calendar.HOUR_OF_DAY, 0);
+                cal.set(Calendar.MINUTE, 0);
+                cal.set(Calendar.SECOND, 0);
+                long todayStart = cal.getTimeInMillis();
+                // 设置为今天结束时间
+                cal.set(Calendar.HOUR_OF_DAY, 23);
+                cal.set(Calendar.MINUTE, 59);
+                cal.set(Calendar.SECOND, 59);
+                long todayEnd = cal.getTimeInMillis();
+                return new long[]{todayStart, todayEnd};
+                
+            case "week":
+                // 设置为本周开始时间
+                cal.set(Calendar.DAY_OF_WEEK, cal.getFirstDayOfWeek());
+                cal.set(Calendar.HOUR_OF_DAY, 0);
+                cal.set(Calendar.MINUTE, 0);
+                cal.set(Calendar.SECOND, 0);
+                long weekStart = cal.getTimeInMillis();
+                // 设置为本周结束时间
+                cal.add(Calendar.DAY_OF_WEEK, 6);
+                cal.set(Calendar.HOUR_OF_DAY, 23);
+                cal.set(Calendar.MINUTE, 59);
+                cal.set(Calendar.SECOND, 59);
+                long weekEnd = cal.getTimeInMillis();
+                return new long[]{weekStart, weekEnd};
+                
+            case "month":
+                // 设置为本月开始时间
+                cal.set(Calendar.DAY_OF_MONTH, 1);
+                cal.set(Calendar.HOUR_OF_DAY, 0);
+                cal.set(Calendar.MINUTE, 0);
+                cal.set(Calendar.SECOND, 0);
+                long monthStart = cal.getTimeInMillis();
+                // 设置为本月结束时间
+                cal.set(Calendar.DAY_OF_MONTH, cal.getActualMaximum(Calendar.DAY_OF_MONTH));
+                cal.set(Calendar.HOUR_OF_DAY, 23);
+                cal.set(Calendar.MINUTE, 59);
+                cal.set(Calendar.SECOND, 59);
+                long monthEnd = cal.getTimeInMillis();
+                return new long[]{monthStart, monthEnd};
+        }
+        return null;
+    }
+
+    // 追加时间和状态筛选条件，prefix 为连接查询时 events 表的别名前缀
+    private void appendFilters(StringBuilder queryBuilder, List<String> args,
+                               String timeFilter, String statusFilter, String prefix) {
+        // 时间筛选
+        long currentTime = System.currentTimeMillis();
+        long[] range = timeFilterRange(timeFilter, currentTime);
+        if (range != null) {
+            queryBuilder.append(" AND ").append(prefix).append(COLUMN_START_TIME).append(" BETWEEN ? AND ?");
+            args.add(String.valueOf(range[0]));
+            args.add(String.valueOf(range[1]));
+        }
+        
+        // 状态筛选
+        switch (statusFilter) {
+            case "not_started":
+                queryBuilder.append(" AND ").append(prefix).append(COLUMN_START_TIME).append(" > ?");
+                args.add(String.valueOf(currentTime));
+                break;
+            case "ongoing":
+                queryBuilder.append(" AND ").append(prefix).append(COLUMN_START_TIME).append(" <= ? AND ")
+                        .append(prefix).append(COLUMN_END_TIME).append(" >= ?");
+                args.add(String.valueOf(currentTime));
+                args.add(String.valueOf(currentTime));
+                break;
+            case "ended":
+                queryBuilder.append(" AND ").append(prefix).append(COLUMN_END_TIME).append(" < ?");
+                args.add(String.valueOf(currentTime));
+                break;
+            case "full":
+                queryBuilder.append(" AND ").append(prefix).append(COLUMN_CURRENT_PARTICIPANTS)
+                        .append(" >= ").append(prefix).append(COLUMN_MAX_PARTICIPANTS);
+                break;
+        }
+    }
+} 
@@ -0,0 +1,36 @@
+package com.example.eventapp.database;
+
+import com.example.eventapp.model.Event;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+// 某个 seq 之后变化过的活动：列表先移除 changedIds 中的每一项，再按顺序插入 events 中的最新内容
+// 被删除的活动，或不再属于这个列表（如取消了报名）的活动，只出现在 changedIds 里
+public class EventChanges {
+    private final long sequence;
+    private final Set<Long> changedIds;
+    private final List<Event> events;
+
+    EventChanges(long sequence, Set<Long> changedIds, List<Event> events) {
+        this.sequence = sequence;
+        this.changedIds = Collections.unmodifiableSet(changedIds);
+        this.events = Collections.unmodifiableList(events);
+    }
+
+    // 这次读到的最新 seq，下次从这里继续
+    public long getSequence() {
+        return sequence;
+    }
+
+    // 变化过的活动 id
+    public Set<Long> getChangedIds() {
+        return changedIds;
+    }
+
+    // 变化过且仍然属于列表的活动的最新内容
+    public List<Event> getEvents() {
+        return events;
+    }
+}
@@ -0,0 +1,426 @@
+package com.example.eventapp.database;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.Log;
+
+import com.example.eventapp.utils.EventValidator;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_CURRENT_PARTICIPANTS;
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_DESCRIPTION;
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_END_TIME;
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_LOCATION;
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_MAX_PARTICIPANTS;
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_ORGANIZER;
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_START_TIME;
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_TITLE;
+import static com.example.eventapp.database.DatabaseHelper.TABLE_EVENTS;
+
+// 从 CSV 或 JSON 文件批量导入活动
+// 文件按行流式读取，每行用与创建活动页面相同的规则校验，
+// 合格的行通过同一条预编译语句插入，每 BATCH_SIZE 行提交一次事务
+public final class EventImporter {
+    public enum Format {
+        CSV,
+        JSON
+    }
+
+    // 每提交一批后回调一次，在导入所在的线程上调用
+    public interface ProgressListener {
+        void onProgress(int processedRows, int importedRows);
+    }
+
+    // 某一行没有导入的原因，行号从 1 开始，不计 CSV 的表头
+    public static final class RowError {
+        private final int row;
+        private final String message;
+
+        RowError(int row, String message) {
+            this.row = row;
+            this.message = message;
+        }
+
+        public int getRow() {
+            return row;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+    }
+
+    public static final class ImportResult {
+        private final int importedCount;
+        private final int errorCount;
+        private final List<RowError> errors;
+
+        ImportResult(int importedCount, int errorCount, List<RowError> errors) {
+            this.importedCount = importedCount;
+            this.errorCount = errorCount;
+            this.errors = Collections.unmodifiableList(errors);
+        }
+
+        public int getImportedCount() {
+            return importedCount;
+        }
+
+        // 出错的总行数，可能多于 getErrors() 中保留的条数
+        public int getErrorCount() {
+            return errorCount;
+        }
+
+        public List<RowError> getErrors() {
+            return errors;
+        }
+    }
+
+    private static final int BATCH_SIZE = 2000;
+    // 只保留前面的错误详情，避免格式完全不对的大文件占用大量内存
+    private static final int MAX_REPORTED_ERRORS = 100;
+
+    // 文件中的字段名，与数据库列名一致；organizer 可省略，省略时使用导入者
+    private static final String[] REQUIRED_FIELDS = {
+            COLUMN_TITLE, COLUMN_DESCRIPTION, COLUMN_LOCATION,
+            COLUMN_START_TIME, COLUMN_END_TIME, COLUMN_MAX_PARTICIPANTS
+    };
+
+    private final DatabaseHelper dbHelper;
+    private final SimpleDateFormat dateFormat;
+
+    public EventImporter(DatabaseHelper dbHelper) {
+        this.dbHelper = dbHelper;
+        // 与应用里显示时间的格式相同，也可以直接写毫秒时间戳
+        this.dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm", Locale.getDefault());
+        this.dateFormat.setLenient(false);
+    }
+
+    public ImportResult importEvents(Reader reader, Format format, String defaultOrganizer,
+                                     ProgressListener listener) {
+        List<RowError> errors = new ArrayList<>();
+        int errorCount = 0;
+        int processed = 0;
+        int imported = 0;
+        int pending = 0;
+
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        SQLiteStatement insert = db.compileStatement("INSERT INTO " + TABLE_EVENTS + "("
+                + COLUMN_TITLE + ", " + COLUMN_DESCRIPTION + ", " + COLUMN_LOCATION + ", "
+                + COLUMN_START_TIME + ", " + COLUMN_END_TIME + ", " + COLUMN_ORGANIZER + ", "
+                + COLUMN_MAX_PARTICIPANTS + ", " + COLUMN_CURRENT_PARTICIPANTS
+                + ") VALUES (?, ?, ?, ?, ?, ?, ?, 0)");
+        RowSource rows = null;
+        // 是否有打开的事务；提交或开始事务失败后没有事务，不能再调用 setTransactionSuccessful/endTransaction
+        boolean inTransaction = false;
+
+        try {
+            db.beginTransactionNonExclusive();
+            inTransaction = true;
+            rows = format == Format.JSON ? new JsonRowSource(reader) : new CsvRowSource(reader);
+            Map<String, String> row;
+            while ((row = rows.next()) != null) {
+                processed++;
+                String error = bindRow(insert, row, defaultOrganizer);
+                if (error == null) {
+                    try {
+                        insert.executeInsert();
+                        imported++;
+                        pending++;
+                    } catch (Exception e) {
+                        error = "Database error: " + e.getMessage();
+                    }
+                }
+                if (error != null) {
+                    errorCount++;
+                    if (errors.size() < MAX_REPORTED_ERRORS) {
+                        errors.add(new RowError(processed, error));
+                    }
+                }
+
+                // 一批满了就提交，然后开始下一批的事务；endTransaction 失败时事务也已经结束
+                if (pending >= BATCH_SIZE) {
+                    db.setTransactionSuccessful();
+                    inTransaction = false;
+                    db.endTransaction();
+                    pending = 0;
+                    db.beginTransactionNonExclusive();
+                    inTransaction = true;
+                    if (listener != null) {
+                        listener.onProgress(processed, imported);
+                    }
+                }
+            }
+            db.setTransactionSuccessful();
+            inTransaction = false;
+            db.endTransaction();
+            pending = 0;
+        } catch (Exception e) {
+            Log.e("DatabaseHelper", "导入活动时出错: " + e.getMessage());
+            errorCount++;
+            if (inTransaction) {
+                // 文件本身格式错误时无法继续读取，已读取的合格行仍然保留
+                if (errors.size() < MAX_REPORTED_ERRORS) {
+                    errors.add(new RowError(processed + 1, "Unreadable file: " + e.getMessage()));
+                }
+                db.setTransactionSuccessful();
+            } else {
+                // 提交或开始事务失败，这一批没有写入，之后的行也不再读取
+                if (errors.size() < MAX_REPORTED_ERRORS) {
+                    errors.add(new RowError(processed, "Database error: " + e.getMessage()));
+                }
+                imported -= pending;
+                pending = 0;
+            }
+        } finally {
+            if (inTransaction) {
+                try {
+                    db.endTransaction();
+                } catch (Exception e) {
+                    Log.e("DatabaseHelper", "提交导入的活动时出错: " + e.getMessage());
+                    imported -= pending;
+                }
+            }
+            insert.close();
+            if (rows != null) {
+                rows.close();
+            }
+        }
+
+        if (imported > 0) {
+            dbHelper.notifyEventsImported();
+        }
+        if (listener != null) {
+            listener.onProgress(processed, imported);
+        }
+        Log.d("DatabaseHelper", "导入活动完成: 共 " + processed + " 行, 成功 " + imported + " 行");
+        return new ImportResult(imported, errorCount, errors);
+    }
+
+    // 校验一行并绑定到插入语句，返回错误信息，校验通过时返回 null
+    private String bindRow(SQLiteStatement insert, Map<String, String> row, String defaultOrganizer) {
+        String rawStart = row.get(COLUMN_START_TIME);
+        String rawEnd = row.get(COLUMN_END_TIME);
+        Long startTime = parseTime(rawStart);
+        if (startTime == null && !isBlank(rawStart)) {
+            return "Invalid start time: " + rawStart;
+        }
+        Long endTime = parseTime(rawEnd);
+        if (endTime == null && !isBlank(rawEnd)) {
+            return "Invalid end time: " + rawEnd;
+        }
+
+        String title = trim(row.get(COLUMN_TITLE));
+        String description = trim(row.get(COLUMN_DESCRIPTION));
+        String location = trim(row.get(COLUMN_LOCATION));
+        String maxParticipants = trim(row.get(COLUMN_MAX_PARTICIPANTS));
+        EventValidator.Problem problem = EventValidator.validate(title, description, location,
+                startTime, endTime, maxParticipants);
+        if (problem != null) {
+            return problem.getMessage();
+        }
+
+        String organizer = trim(row.get(COLUMN_ORGANIZER));
+        insert.bindString(1, title);
+        insert.bindString(2, description);
+        insert.bindString(3, location);
+        insert.bindLong(4, startTime);
+        insert.bindLong(5, endTime);
+        if (!isBlank(organizer)) {
+            insert.bindString(6, organizer);
+        } else if (defaultOrganizer != null) {
+            insert.bindString(6, defaultOrganizer);
+        } else {
+            insert.bindNull(6);
+        }
+        insert.bindLong(7, Integer.parseInt(maxParticipants));
+        return null;
+    }
+
+    // 支持毫秒时间戳和 yyyy-MM-dd HH:mm 两种写法，无法解析时返回 null
+    private Long parseTime(String value) {
+        if (isBlank(value)) {
+            return null;
+        }
+        String text = value.trim();
+        try {
+            return Long.parseLong(text);
+        } catch (NumberFormatException e) {
+            // 不是时间戳，按日期格式解析
+        }
+        try {
+            return dateFormat.parse(text).getTime();
+        } catch (ParseException e) {
+            return null;
+        }
+    }
+
+    private static String trim(String value) {
+        return value == null ? null : value.trim();
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty();
+    }
+
+    // 逐行读取文件，每行是字段名到字段值的映射，读完返回 null
+    interface RowSource {
+        Map<String, String> next() throws IOException;
+
+        void close();
+    }
+
+    // 第一行是表头，字段用逗号分隔，含逗号、引号或换行的字段用双引号括起来，引号写成两个双引号
+    static final class CsvRowSource implements RowSource {
+        private final BufferedReader reader;
+        private final String[] header;
+
+        CsvRowSource(Reader reader) throws IOException {
+            this.reader = new BufferedReader(reader);
+            List<String> names = readRecord();
+            if (names == null) {
+                throw new IOException("Empty file");
+            }
+            header = new String[names.size()];
+            for (int i = 0; i < header.length; i++) {
+                // 去掉表头前面可能存在的 BOM
+                header[i] = names.get(i).replace("\uFEFF", "").trim().toLowerCase(Locale.ROOT);
+            }
+            for (String field : REQUIRED_FIELDS) {
+                if (!containsField(field)) {
+                    throw new IOException("Missing column: " + field);
+                }
+            }
+        }
+
+        private boolean containsField(String field) {
+            for (String name : header) {
+                if (name.equals(field)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public Map<String, String> next() throws IOException {
+            List<String> values;
+            // 跳过空行
+            do {
+                values = readRecord();
+            } while (values != null && values.size() == 1 && values.get(0).isEmpty());
+            if (values == null) {
+                return null;
+            }
+            Map<String, String> row = new HashMap<>();
+            for (int i = 0; i < header.length && i < values.size(); i++) {
+                row.put(header[i], values.get(i));
+            }
+            return row;
+        }
+
+        // 读取一条记录，文件结束时返回 null
+        private List<String> readRecord() throws IOException {
+            int c = reader.read();
+            if (c == -1) {
+                return null;
+            }
+            List<String> values = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            while (c != -1) {
+                if (quoted) {
+                    if (c == '"') {
+                        reader.mark(1);
+                        int nextChar = reader.read();
+                        if (nextChar == '"') {
+                            field.append('"');
+                        } else {
+                            quoted = false;
+                            reader.reset();
+                        }
+                    } else {
+                        field.append((char) c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    values.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '\n') {
+                    break;
+                } else if (c != '\r') {
+                    field.append((char) c);
+                }
+                c = reader.read();
+            }
+            values.add(field.toString());
+            return values;
+        }
+
+        @Override
+        public void close() {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                Log.e("DatabaseHelper", "关闭导入文件时出错: " + e.getMessage());
+            }
+        }
+    }
+
+    // 文件内容是活动对象组成的数组，对象的字段名与 CSV 表头相同
+    private static final class JsonRowSource implements RowSource {
+        private final JsonReader reader;
+
+        JsonRowSource(Reader reader) throws IOException {
+            this.reader = new JsonReader(reader);
+            this.reader.beginArray();
+        }
+
+        @Override
+        public Map<String, String> next() throws IOException {
+            if (!reader.hasNext()) {
+                reader.endArray();
+                return null;
+            }
+            Map<String, String> row = new HashMap<>();
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (reader.peek() == JsonToken.NULL) {
+                    reader.nextNull();
+                } else if (reader.peek() == JsonToken.BOOLEAN) {
+                    row.put(name, String.valueOf(reader.nextBoolean()));
+                } else if (reader.peek() == JsonToken.BEGIN_ARRAY || reader.peek() == JsonToken.BEGIN_OBJECT) {
+                    reader.skipValue();
+                } else {
+                    // 数字也按字符串读取，之后统一校验
+                    row.put(name, reader.nextString());
+                }
+            }
+            reader.endObject();
+            return row;
+        }
+
+        @Override
+        public void close() {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                Log.e("DatabaseHelper", "关闭导入文件时出错: " + e.getMessage());
+            }
+        }
+    }
+}
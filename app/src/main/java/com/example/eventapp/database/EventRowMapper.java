@@ -0,0 +1,100 @@
+package com.example.eventapp.database;
+
+import android.database.Cursor;
+
+import com.example.eventapp.model.Event;
+
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_CURRENT_PARTICIPANTS;
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_DESCRIPTION;
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_DESCRIPTION_EXCERPT;
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_END_TIME;
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_ID;
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_LATITUDE;
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_LOCATION;
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_LONGITUDE;
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_MAX_PARTICIPANTS;
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_OCCURRENCE_INDEX;
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_ORGANIZER;
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_SERIES_ID;
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_START_TIME;
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_TITLE;
+
+// 把 Cursor 的行转换成 Event，列位置在创建时按列名解析一次，之后每行只按下标读取
+// 投影中没有的列保持 Event 的默认值，所以也可以用于只查询部分列的结果
+final class EventRowMapper {
+    private final int idIndex;
+    private final int titleIndex;
+    private final int descriptionIndex;
+    private final int descriptionExcerptIndex;
+    private final int locationIndex;
+    private final int startTimeIndex;
+    private final int endTimeIndex;
+    private final int organizerIndex;
+    private final int maxParticipantsIndex;
+    private final int currentParticipantsIndex;
+    private final int latitudeIndex;
+    private final int longitudeIndex;
+    private final int seriesIdIndex;
+    private final int occurrenceIndexIndex;
+
+    EventRowMapper(Cursor cursor) {
+        idIndex = cursor.getColumnIndexOrThrow(COLUMN_ID);
+        titleIndex = cursor.getColumnIndex(COLUMN_TITLE);
+        descriptionIndex = cursor.getColumnIndex(COLUMN_DESCRIPTION);
+        descriptionExcerptIndex = cursor.getColumnIndex(COLUMN_DESCRIPTION_EXCERPT);
+        locationIndex = cursor.getColumnIndex(COLUMN_LOCATION);
+        startTimeIndex = cursor.getColumnIndex(COLUMN_START_TIME);
+        endTimeIndex = cursor.getColumnIndex(COLUMN_END_TIME);
+        organizerIndex = cursor.getColumnIndex(COLUMN_ORGANIZER);
+        maxParticipantsIndex = cursor.getColumnIndex(COLUMN_MAX_PARTICIPANTS);
+        currentParticipantsIndex = cursor.getColumnIndex(COLUMN_CURRENT_PARTICIPANTS);
+        latitudeIndex = cursor.getColumnIndex(COLUMN_LATITUDE);
+        longitudeIndex = cursor.getColumnIndex(COLUMN_LONGITUDE);
+        seriesIdIndex = cursor.getColumnIndex(COLUMN_SERIES_ID);
+        occurrenceIndexIndex = cursor.getColumnIndex(COLUMN_OCCURRENCE_INDEX);
+    }
+
+    // 读取 Cursor 当前所在的行
+    Event map(Cursor cursor) {
+        Event event = new Event();
+        event.setId(cursor.getLong(idIndex));
+        if (titleIndex >= 0) {
+            event.setTitle(cursor.getString(titleIndex));
+        }
+        if (descriptionIndex >= 0) {
+            event.setDescription(cursor.getString(descriptionIndex));
+        }
+        if (descriptionExcerptIndex >= 0) {
+            event.setDescriptionExcerpt(cursor.getString(descriptionExcerptIndex));
+        }
+        if (locationIndex >= 0) {
+            event.setLocation(cursor.getString(locationIndex));
+        }
+        if (startTimeIndex >= 0) {
+            event.setStartTime(cursor.getLong(startTimeIndex));
+        }
+        if (endTimeIndex >= 0) {
+            event.setEndTime(cursor.getLong(endTimeIndex));
+        }
+        if (organizerIndex >= 0) {
+            event.setOrganizer(cursor.getString(organizerIndex));
+        }
+        if (maxParticipantsIndex >= 0) {
+            event.setMaxParticipants(cursor.getInt(maxParticipantsIndex));
+        }
+        if (currentParticipantsIndex >= 0) {
+            event.setCurrentParticipants(cursor.getInt(currentParticipantsIndex));
+        }
+        if (latitudeIndex >= 0 && !cursor.isNull(latitudeIndex)) {
+            event.setLatitude(cursor.getDouble(latitudeIndex));
+        }
+        if (longitudeIndex >= 0 && !cursor.isNull(longitudeIndex)) {
+            event.setLongitude(cursor.getDouble(longitudeIndex));
+        }
+        if (seriesIdIndex >= 0 && !cursor.isNull(seriesIdIndex)) {
+            event.setSeriesId(cursor.getLong(seriesIdIndex));
+            event.setOccurrenceIndex(cursor.getInt(occurrenceIndexIndex));
+        }
+        return event;
+    }
+}
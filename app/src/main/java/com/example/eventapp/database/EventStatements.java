@@ -0,0 +1,196 @@
+package com.example.eventapp.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteCursor;
+import android.database.sqlite.SQLiteCursorDriver;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDoneException;
+import android.database.sqlite.SQLiteQuery;
+import android.database.sqlite.SQLiteStatement;
+
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_CURRENT_PARTICIPANTS;
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_EVENT_ID;
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_ID;
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_JOIN_TIME;
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_MAX_PARTICIPANTS;
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_REGISTER_TIME;
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_USER_ID;
+import static com.example.eventapp.database.DatabaseHelper.TABLE_EVENTS;
+import static com.example.eventapp.database.DatabaseHelper.TABLE_REGISTRATIONS;
+import static com.example.eventapp.database.DatabaseHelper.TABLE_WAITLIST;
+
+// 详情页和报名按钮路径上的热点语句，只编译一次，之后直接绑定 long 参数执行
+// SQLiteStatement 的参数绑定不是线程安全的，每条语句的使用都在自身上同步
+final class EventStatements {
+    // 参数固定的查询语句，SQL 文本不变才能命中连接上的预编译语句缓存
+    static final String SQL_EVENT_BY_ID = "SELECT * FROM " + TABLE_EVENTS
+            + " WHERE " + COLUMN_ID + " = ?";
+
+    private final SQLiteStatement countRegistration;
+    private final SQLiteStatement countEvent;
+    private final SQLiteStatement insertRegistration;
+    private final SQLiteStatement deleteRegistration;
+    private final SQLiteStatement claimSeat;
+    private final SQLiteStatement releaseSeat;
+    private final SQLiteStatement insertWaitlist;
+    private final SQLiteStatement deleteWaitlist;
+    private final SQLiteStatement waitlistHead;
+    private final SQLiteStatement waitlistPosition;
+
+    EventStatements(SQLiteDatabase db) {
+        countRegistration = db.compileStatement("SELECT COUNT(*) FROM " + TABLE_REGISTRATIONS
+                + " WHERE " + COLUMN_EVENT_ID + " = ? AND " + COLUMN_USER_ID + " = ?");
+        countEvent = db.compileStatement("SELECT COUNT(*) FROM " + TABLE_EVENTS
+                + " WHERE " + COLUMN_ID + " = ?");
+        // 已报名时忽略，不抛出约束异常，由返回值区分
+        insertRegistration = db.compileStatement("INSERT OR IGNORE INTO " + TABLE_REGISTRATIONS + "("
+                + COLUMN_EVENT_ID + ", " + COLUMN_USER_ID + ", " + COLUMN_REGISTER_TIME
+                + ") VALUES (?, ?, ?)");
+        deleteRegistration = db.compileStatement("DELETE FROM " + TABLE_REGISTRATIONS
+                + " WHERE " + COLUMN_EVENT_ID + " = ? AND " + COLUMN_USER_ID + " = ?");
+        // 名额检查和人数加一在同一条语句里完成，人数永远不会超过上限
+        claimSeat = db.compileStatement("UPDATE " + TABLE_EVENTS
+                + " SET " + COLUMN_CURRENT_PARTICIPANTS + " = " + COLUMN_CURRENT_PARTICIPANTS + " + 1"
+                + " WHERE " + COLUMN_ID + " = ?"
+                + " AND " + COLUMN_CURRENT_PARTICIPANTS + " < " + COLUMN_MAX_PARTICIPANTS);
+        releaseSeat = db.compileStatement("UPDATE " + TABLE_EVENTS
+                + " SET " + COLUMN_CURRENT_PARTICIPANTS + " = " + COLUMN_CURRENT_PARTICIPANTS + " - 1"
+                + " WHERE " + COLUMN_ID + " = ?"
+                + " AND " + COLUMN_CURRENT_PARTICIPANTS + " > 0");
+        insertWaitlist = db.compileStatement("INSERT OR IGNORE INTO " + TABLE_WAITLIST + "("
+                + COLUMN_EVENT_ID + ", " + COLUMN_USER_ID + ", " + COLUMN_JOIN_TIME
+                + ") VALUES (?, ?, ?)");
+        deleteWaitlist = db.compileStatement("DELETE FROM " + TABLE_WAITLIST
+                + " WHERE " + COLUMN_EVENT_ID + " = ? AND " + COLUMN_USER_ID + " = ?");
+        // 由 (event_id, rowid) 索引直接定位队首，与排队人数无关
+        waitlistHead = db.compileStatement("SELECT " + COLUMN_USER_ID + " FROM " + TABLE_WAITLIST
+                + " WHERE " + COLUMN_EVENT_ID + " = ? ORDER BY " + COLUMN_ID + " LIMIT 1");
+        // 不在候补名单里时子查询为 NULL，结果为 0
+        waitlistPosition = db.compileStatement("SELECT COUNT(*) FROM " + TABLE_WAITLIST
+                + " WHERE " + COLUMN_EVENT_ID + " = ? AND " + COLUMN_ID + " <= (SELECT " + COLUMN_ID
+                + " FROM " + TABLE_WAITLIST + " WHERE " + COLUMN_EVENT_ID + " = ? AND " + COLUMN_USER_ID + " = ?)");
+    }
+
+    boolean isRegistered(long eventId, long userId) {
+        synchronized (countRegistration) {
+            countRegistration.bindLong(1, eventId);
+            countRegistration.bindLong(2, userId);
+            return countRegistration.simpleQueryForLong() > 0;
+        }
+    }
+
+    boolean eventExists(long eventId) {
+        synchronized (countEvent) {
+            countEvent.bindLong(1, eventId);
+            return countEvent.simpleQueryForLong() > 0;
+        }
+    }
+
+    // 已报名时不重复写入，返回 -1
+    long insertRegistration(long eventId, long userId, long registerTime) {
+        synchronized (insertRegistration) {
+            insertRegistration.bindLong(1, eventId);
+            insertRegistration.bindLong(2, userId);
+            insertRegistration.bindLong(3, registerTime);
+            return insertRegistration.executeInsert();
+        }
+    }
+
+    int deleteRegistration(long eventId, long userId) {
+        synchronized (deleteRegistration) {
+            deleteRegistration.bindLong(1, eventId);
+            deleteRegistration.bindLong(2, userId);
+            return deleteRegistration.executeUpdateDelete();
+        }
+    }
+
+    // 活动已满或不存在时返回 false
+    boolean claimSeat(long eventId) {
+        synchronized (claimSeat) {
+            claimSeat.bindLong(1, eventId);
+            return claimSeat.executeUpdateDelete() > 0;
+        }
+    }
+
+    // 占一个名额并写入报名记录，需要在调用方的事务里执行，两步一起生效；
+    // 活动已满或不存在时什么都不写，用户已经报过名时退回刚占的名额，都返回 false
+    boolean claimSeatFor(long eventId, long userId, long registerTime) {
+        if (!claimSeat(eventId)) {
+            return false;
+        }
+        if (insertRegistration(eventId, userId, registerTime) == -1) {
+            releaseSeat(eventId);
+            return false;
+        }
+        return true;
+    }
+
+    boolean releaseSeat(long eventId) {
+        synchronized (releaseSeat) {
+            releaseSeat.bindLong(1, eventId);
+            return releaseSeat.executeUpdateDelete() > 0;
+        }
+    }
+
+    // 已在候补名单里时不重复加入，返回 -1
+    long insertWaitlist(long eventId, long userId, long joinTime) {
+        synchronized (insertWaitlist) {
+            insertWaitlist.bindLong(1, eventId);
+            insertWaitlist.bindLong(2, userId);
+            insertWaitlist.bindLong(3, joinTime);
+            return insertWaitlist.executeInsert();
+        }
+    }
+
+    int deleteWaitlist(long eventId, long userId) {
+        synchronized (deleteWaitlist) {
+            deleteWaitlist.bindLong(1, eventId);
+            deleteWaitlist.bindLong(2, userId);
+            return deleteWaitlist.executeUpdateDelete();
+        }
+    }
+
+    // 候补名单为空时返回 -1
+    long waitlistHead(long eventId) {
+        synchronized (waitlistHead) {
+            waitlistHead.bindLong(1, eventId);
+            try {
+                return waitlistHead.simpleQueryForLong();
+            } catch (SQLiteDoneException e) {
+                return -1;
+            }
+        }
+    }
+
+    // 从 1 开始的排队位置，不在候补名单里时返回 0
+    int waitlistPosition(long eventId, long userId) {
+        synchronized (waitlistPosition) {
+            waitlistPosition.bindLong(1, eventId);
+            waitlistPosition.bindLong(2, eventId);
+            waitlistPosition.bindLong(3, userId);
+            return (int) waitlistPosition.simpleQueryForLong();
+        }
+    }
+
+    // 查询多列数据时仍需要 Cursor，这里直接把 long 参数绑定到查询上，不经过 String[]
+    static Cursor query(SQLiteDatabase db, String sql, String editTable, long... args) {
+        return db.rawQueryWithFactory(new LongArgsCursorFactory(args), sql, null, editTable);
+    }
+
+    private static final class LongArgsCursorFactory implements SQLiteDatabase.CursorFactory {
+        private final long[] args;
+
+        LongArgsCursorFactory(long... args) {
+            this.args = args;
+        }
+
+        @Override
+        public Cursor newCursor(SQLiteDatabase db, SQLiteCursorDriver driver,
+                                String editTable, SQLiteQuery query) {
+            for (int i = 0; i < args.length; i++) {
+                query.bindLong(i + 1, args[i]);
+            }
+            return new SQLiteCursor(driver, editTable, query);
+        }
+    }
+}
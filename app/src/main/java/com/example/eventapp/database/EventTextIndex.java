@@ -0,0 +1,428 @@
+package com.example.eventapp.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_ID;
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_LOCATION;
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_TITLE;
+import static com.example.eventapp.database.DatabaseHelper.TABLE_EVENTS;
+
+// 活动标题和地点的内存索引，包含两部分：
+// 三元组倒排索引，用于容忍拼写错误的模糊搜索；
+// 按前缀查找的联想词表，来自去重后的标题和地点，按出现次数排序
+// 索引第一次使用时从数据库加载，之后随活动的增删改逐条更新，不需要整体重建
+final class EventTextIndex {
+    // 查询的三元组至少有这么多出现在活动里才算匹配，一个错字大约影响三个三元组
+    private static final double MIN_QUERY_COVERAGE = 0.5;
+    // 每个单词前补两个空格、后补一个空格，短词和词首也能产生三元组
+    private static final String WORD_PREFIX = "  ";
+    private static final String WORD_SUFFIX = " ";
+    // 联想词键中分隔前缀部分和完整文本
+    private static final char KEY_SEPARATOR = '\u0000';
+
+    private final DatabaseHelper dbHelper;
+    // 为 null 表示还没加载或已失效
+    private Index index;
+    // 每次修改都递增
+    private long generation;
+    // 最近一次 invalidate 时的 generation，在它之前开始的加载结果作废
+    private long invalidatedGeneration;
+    // 正在进行的加载数，有加载进行时记下期间的修改，加载完成后补到新建的索引上
+    private int loadsInProgress;
+    private final List<PendingChange> pendingChanges = new ArrayList<>();
+
+    private static final class Suggestion {
+        final String text;
+        int count;
+
+        Suggestion(String text) {
+            this.text = text;
+        }
+    }
+
+    // 加载期间发生的一次修改，removed 为 true 时是删除
+    private static final class PendingChange {
+        final long generation;
+        final long id;
+        final String title;
+        final String location;
+        final boolean removed;
+
+        PendingChange(long generation, long id, String title, String location, boolean removed) {
+            this.generation = generation;
+            this.id = id;
+            this.title = title;
+            this.location = location;
+            this.removed = removed;
+        }
+    }
+
+    // 索引本身，加载时在锁外建好再整体替换，之后只在持有 EventTextIndex 的锁时读写
+    // 每个三元组的 id 数组建好后不再修改，增删活动时换成新数组，模糊搜索取到数组后可以在锁外读取
+    private static final class Index {
+        final Map<Long, String[]> eventTexts = new HashMap<>();
+        final Map<String, long[]> postings = new HashMap<>();
+        final Map<Long, Integer> trigramCounts = new HashMap<>();
+        final Map<String, Suggestion> suggestions = new HashMap<>();
+        // 键为“词首开始的后缀 + 分隔符 + 规范化文本”，前缀查询是一次有序区间扫描
+        final TreeSet<String> suggestionKeys = new TreeSet<>();
+
+        // 一次建立全部活动的索引，每个三元组先收集 id，最后才生成数组
+        static Index build(List<Object[]> rows) {
+            Index index = new Index();
+            Map<String, List<Long>> building = new HashMap<>();
+            for (Object[] row : rows) {
+                long id = (Long) row[0];
+                for (String trigram : index.indexTexts(id, (String) row[1], (String) row[2])) {
+                    List<Long> ids = building.get(trigram);
+                    if (ids == null) {
+                        ids = new ArrayList<>();
+                        building.put(trigram, ids);
+                    }
+                    ids.add(id);
+                }
+            }
+            for (Map.Entry<String, List<Long>> entry : building.entrySet()) {
+                List<Long> ids = entry.getValue();
+                long[] array = new long[ids.size()];
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = ids.get(i);
+                }
+                index.postings.put(entry.getKey(), array);
+            }
+            return index;
+        }
+
+        void addTexts(long id, String title, String location) {
+            for (String trigram : indexTexts(id, title, location)) {
+                long[] ids = postings.get(trigram);
+                if (ids == null) {
+                    postings.put(trigram, new long[]{id});
+                } else {
+                    long[] added = Arrays.copyOf(ids, ids.length + 1);
+                    added[ids.length] = id;
+                    postings.put(trigram, added);
+                }
+            }
+        }
+
+        // 记下活动的文本、三元组个数和联想词，返回它的三元组
+        private Set<String> indexTexts(long id, String title, String location) {
+            String[] texts = {title, location};
+            eventTexts.put(id, texts);
+
+            Set<String> eventTrigrams = trigrams(normalize(title));
+            eventTrigrams.addAll(trigrams(normalize(location)));
+            trigramCounts.put(id, eventTrigrams.size());
+
+            for (String text : texts) {
+                addSuggestion(text);
+            }
+            return eventTrigrams;
+        }
+
+        void removeTexts(long id) {
+            String[] texts = eventTexts.remove(id);
+            if (texts == null) {
+                return;
+            }
+            trigramCounts.remove(id);
+            Set<String> eventTrigrams = trigrams(normalize(texts[0]));
+            eventTrigrams.addAll(trigrams(normalize(texts[1])));
+            for (String trigram : eventTrigrams) {
+                long[] ids = postings.get(trigram);
+                if (ids == null) {
+                    continue;
+                }
+                int position = 0;
+                while (position < ids.length && ids[position] != id) {
+                    position++;
+                }
+                if (position == ids.length) {
+                    continue;
+                }
+                if (ids.length == 1) {
+                    postings.remove(trigram);
+                    continue;
+                }
+                long[] removed = new long[ids.length - 1];
+                System.arraycopy(ids, 0, removed, 0, position);
+                System.arraycopy(ids, position + 1, removed, position, ids.length - position - 1);
+                postings.put(trigram, removed);
+            }
+
+            for (String text : texts) {
+                removeSuggestion(text);
+            }
+        }
+
+        private void addSuggestion(String text) {
+            String normalized = normalize(text);
+            if (normalized.isEmpty()) {
+                return;
+            }
+            Suggestion suggestion = suggestions.get(normalized);
+            if (suggestion == null) {
+                suggestion = new Suggestion(text.trim());
+                suggestions.put(normalized, suggestion);
+                for (int start : wordStarts(normalized)) {
+                    suggestionKeys.add(normalized.substring(start) + KEY_SEPARATOR + normalized);
+                }
+            }
+            suggestion.count++;
+        }
+
+        private void removeSuggestion(String text) {
+            String normalized = normalize(text);
+            Suggestion suggestion = suggestions.get(normalized);
+            if (suggestion == null || --suggestion.count > 0) {
+                return;
+            }
+            suggestions.remove(normalized);
+            for (int start : wordStarts(normalized)) {
+                suggestionKeys.remove(normalized.substring(start) + KEY_SEPARATOR + normalized);
+            }
+        }
+    }
+
+    EventTextIndex(DatabaseHelper dbHelper) {
+        this.dbHelper = dbHelper;
+    }
+
+    // 按相似度从高到低返回最多 limit 个模糊匹配的活动 id，索引加载失败时返回空数组
+    // 锁内只取出各三元组的 id 数组，逐个计数在锁外进行，不会让联想词和写入等待
+    long[] fuzzySearch(String query, int limit) {
+        Set<String> queryTrigrams = trigrams(normalize(query));
+        if (queryTrigrams.isEmpty() || !ensureLoaded()) {
+            return new long[0];
+        }
+        List<long[]> postingLists = new ArrayList<>(queryTrigrams.size());
+        synchronized (this) {
+            if (index == null) {
+                // 刚加载完又被 invalidate
+                return new long[0];
+            }
+            for (String trigram : queryTrigrams) {
+                long[] ids = index.postings.get(trigram);
+                if (ids != null) {
+                    postingLists.add(ids);
+                }
+            }
+        }
+
+        Map<Long, Integer> shared = new HashMap<>();
+        for (long[] ids : postingLists) {
+            for (long id : ids) {
+                Integer count = shared.get(id);
+                shared.put(id, count == null ? 1 : count + 1);
+            }
+        }
+        List<Long> candidates = new ArrayList<>();
+        for (Map.Entry<Long, Integer> entry : shared.entrySet()) {
+            if ((double) entry.getValue() / queryTrigrams.size() >= MIN_QUERY_COVERAGE) {
+                candidates.add(entry.getKey());
+            }
+        }
+
+        final Map<Long, Double> scores = new HashMap<>();
+        synchronized (this) {
+            if (index == null) {
+                return new long[0];
+            }
+            for (Long id : candidates) {
+                Integer eventTrigrams = index.trigramCounts.get(id);
+                if (eventTrigrams == null) {
+                    // 取出数组之后被删除了
+                    continue;
+                }
+                int common = shared.get(id);
+                double coverage = (double) common / queryTrigrams.size();
+                // 主要看查询被覆盖了多少，覆盖相同时文本越短越相似
+                int total = queryTrigrams.size() + eventTrigrams - common;
+                scores.put(id, coverage + (double) common / total / 10);
+            }
+        }
+
+        PriorityQueue<Long> best = new PriorityQueue<>(Math.max(1, limit),
+                (a, b) -> Double.compare(scores.get(a), scores.get(b)));
+        for (Long id : scores.keySet()) {
+            best.add(id);
+            if (best.size() > limit) {
+                best.poll();
+            }
+        }
+        long[] result = new long[best.size()];
+        for (int i = result.length - 1; i >= 0; i--) {
+            result[i] = best.poll();
+        }
+        return result;
+    }
+
+    // 返回以 prefix 开头（整段文本或其中某个词）的标题和地点，出现次数多的在前
+    // 只读内存，索引还没加载时返回空列表；很短的前缀要扫描大量词条，应在后台线程调用
+    synchronized List<String> suggest(String prefix, int limit) {
+        String normalized = normalize(prefix);
+        if (index == null || normalized.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+        PriorityQueue<Suggestion> best = new PriorityQueue<>(limit, (a, b) -> a.count != b.count
+                ? Integer.compare(a.count, b.count) : b.text.compareTo(a.text));
+        Set<Suggestion> seen = new HashSet<>();
+        for (String key : index.suggestionKeys.subSet(normalized, normalized + Character.MAX_VALUE)) {
+            Suggestion suggestion = index.suggestions.get(key.substring(key.indexOf(KEY_SEPARATOR) + 1));
+            if (suggestion == null || !seen.add(suggestion)) {
+                continue;
+            }
+            best.add(suggestion);
+            if (best.size() > limit) {
+                best.poll();
+            }
+        }
+        String[] result = new String[best.size()];
+        for (int i = result.length - 1; i >= 0; i--) {
+            result[i] = best.poll().text;
+        }
+        return Arrays.asList(result);
+    }
+
+    // 在后台线程提前加载，避免第一次输入时没有联想结果
+    void warmUp() {
+        ensureLoaded();
+    }
+
+    // 新增或修改了活动的标题、地点
+    synchronized void put(long id, String title, String location) {
+        generation++;
+        if (index != null) {
+            index.removeTexts(id);
+            index.addTexts(id, title, location);
+        } else if (loadsInProgress > 0) {
+            pendingChanges.add(new PendingChange(generation, id, title, location, false));
+        }
+    }
+
+    synchronized void remove(long id) {
+        generation++;
+        if (index != null) {
+            index.removeTexts(id);
+        } else if (loadsInProgress > 0) {
+            pendingChanges.add(new PendingChange(generation, id, null, null, true));
+        }
+    }
+
+    // 大批量写入后直接丢弃索引，下次使用时重新加载；正在进行的加载可能读到写入前的数据，结果也作废
+    synchronized void invalidate() {
+        generation++;
+        invalidatedGeneration = generation;
+        index = null;
+        pendingChanges.clear();
+    }
+
+    // 读取和建立索引都不持有锁，建好后补上加载期间的修改再替换进来
+    private boolean ensureLoaded() {
+        long startGeneration;
+        synchronized (this) {
+            if (index != null) {
+                return true;
+            }
+            startGeneration = generation;
+            loadsInProgress++;
+        }
+
+        List<Object[]> rows = null;
+        Cursor cursor = null;
+        try {
+            SQLiteDatabase db = dbHelper.getReadableDatabase();
+            cursor = db.rawQuery("SELECT " + COLUMN_ID + ", " + COLUMN_TITLE + ", " + COLUMN_LOCATION
+                    + " FROM " + TABLE_EVENTS, null);
+            rows = new ArrayList<>(cursor.getCount());
+            while (cursor.moveToNext()) {
+                rows.add(new Object[]{cursor.getLong(0), cursor.getString(1), cursor.getString(2)});
+            }
+        } catch (Exception e) {
+            Log.e("DatabaseHelper", "加载标题和地点索引时出错: " + e.getMessage());
+            rows = null;
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+        Index loaded = rows != null ? Index.build(rows) : null;
+
+        synchronized (this) {
+            loadsInProgress--;
+            if (index != null) {
+                return true;
+            }
+            if (loaded == null || invalidatedGeneration > startGeneration) {
+                if (loadsInProgress == 0) {
+                    pendingChanges.clear();
+                }
+                return false;
+            }
+            // 加载开始之后的修改可能已经读到，也可能没有；先删后加，重放一遍结果都一样
+            for (PendingChange change : pendingChanges) {
+                if (change.generation <= startGeneration) {
+                    continue;
+                }
+                loaded.removeTexts(change.id);
+                if (!change.removed) {
+                    loaded.addTexts(change.id, change.title, change.location);
+                }
+            }
+            pendingChanges.clear();
+            index = loaded;
+            return true;
+        }
+    }
+
+    // 转成小写并合并连续空白
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        return text.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    // 每个词开始的位置，整段文本的开头也算
+    private static List<Integer> wordStarts(String normalized) {
+        List<Integer> starts = new ArrayList<>();
+        for (int i = 0; i < normalized.length(); i++) {
+            if (i == 0 || !Character.isLetterOrDigit(normalized.charAt(i - 1))
+                    && Character.isLetterOrDigit(normalized.charAt(i))) {
+                starts.add(i);
+            }
+        }
+        return starts;
+    }
+
+    // 把文本按非字母数字字符拆成词，每个词补齐首尾后取所有连续三个字符
+    static Set<String> trigrams(String normalized) {
+        Set<String> result = new LinkedHashSet<>();
+        for (String word : normalized.split("[^\\p{L}\\p{N}]+")) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            String padded = WORD_PREFIX + word + WORD_SUFFIX;
+            for (int i = 0; i + 3 <= padded.length(); i++) {
+                result.add(padded.substring(i, i + 3));
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,255 @@
+package com.example.eventapp.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import java.util.Arrays;
+
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_END_TIME;
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_ID;
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_START_TIME;
+import static com.example.eventapp.database.DatabaseHelper.TABLE_EVENTS;
+
+// 活动时间区间的内存索引，回答时间段和状态筛选（未开始、进行中、已结束）
+// 活动按 (start_time, id) 排序，开始时间条件对应一段连续区间，用二分查找定位；
+// 结束时间条件用线段树记录每个子区间结束时间的最小值和最大值，整段不满足的子树直接跳过，
+// 所以“进行中”这样的点查询也只访问包含结果的分支
+// 索引第一次查询时从数据库加载，之后随活动的增删改同步更新
+final class EventTimeIndex {
+    // 对结束时间的要求
+    static final int END_ANY = 0;
+    // end_time >= endBound
+    static final int END_AT_LEAST = 1;
+    // end_time < endBound
+    static final int END_BEFORE = 2;
+
+    private final DatabaseHelper dbHelper;
+    private volatile Snapshot snapshot;
+    // 每次修改都递增，加载期间发生过修改时丢弃加载结果
+    private long generation;
+
+    EventTimeIndex(DatabaseHelper dbHelper) {
+        this.dbHelper = dbHelper;
+    }
+
+    // 按 (start_time, id) 顺序返回 (afterStart, afterId) 之后、满足条件的最多 limit 个活动 id
+    // 开始时间在 [startFrom, startTo] 之内，结束时间满足 endMode 和 endBound；索引加载失败时返回 null
+    long[] query(long startFrom, long startTo, int endMode, long endBound,
+                 long afterStart, long afterId, int limit) {
+        Snapshot current = load();
+        return current == null ? null
+                : current.query(startFrom, startTo, endMode, endBound, afterStart, afterId, limit);
+    }
+
+    // 新增或修改了活动的时间
+    synchronized void put(long id, long start, long end) {
+        generation++;
+        Snapshot current = snapshot;
+        if (current != null) {
+            snapshot = current.with(id, start, end);
+        }
+    }
+
+    synchronized void remove(long id) {
+        generation++;
+        Snapshot current = snapshot;
+        if (current != null) {
+            snapshot = current.without(id);
+        }
+    }
+
+    // 大批量写入后直接丢弃索引，下次查询时重新加载
+    synchronized void invalidate() {
+        generation++;
+        snapshot = null;
+    }
+
+    private Snapshot load() {
+        Snapshot current = snapshot;
+        if (current != null) {
+            return current;
+        }
+        long startGeneration;
+        synchronized (this) {
+            startGeneration = generation;
+        }
+
+        Cursor cursor = null;
+        try {
+            SQLiteDatabase db = dbHelper.getReadableDatabase();
+            cursor = db.rawQuery("SELECT " + COLUMN_ID + ", " + COLUMN_START_TIME + ", " + COLUMN_END_TIME
+                    + " FROM " + TABLE_EVENTS
+                    + " ORDER BY " + COLUMN_START_TIME + ", " + COLUMN_ID, null);
+            int count = cursor.getCount();
+            long[] ids = new long[count];
+            long[] starts = new long[count];
+            long[] ends = new long[count];
+            for (int i = 0; cursor.moveToNext(); i++) {
+                ids[i] = cursor.getLong(0);
+                starts[i] = cursor.getLong(1);
+                ends[i] = cursor.getLong(2);
+            }
+            current = new Snapshot(ids, starts, ends);
+        } catch (Exception e) {
+            Log.e("DatabaseHelper", "加载活动时间索引时出错: " + e.getMessage());
+            return null;
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+
+        synchronized (this) {
+            if (generation == startGeneration) {
+                snapshot = current;
+            }
+        }
+        return current;
+    }
+
+    // 不可变的索引快照，修改时生成新的快照，查询线程不需要加锁
+    static final class Snapshot {
+        final long[] ids;
+        final long[] starts;
+        final long[] ends;
+        final int leaves;
+        // 线段树，节点 1 为根，节点 i 的子节点为 2i 和 2i+1，叶子从 leaves 开始
+        final long[] minEnd;
+        final long[] maxEnd;
+
+        Snapshot(long[] ids, long[] starts, long[] ends) {
+            this.ids = ids;
+            this.starts = starts;
+            this.ends = ends;
+            int size = 1;
+            while (size < ids.length) {
+                size <<= 1;
+            }
+            leaves = size;
+            minEnd = new long[2 * size];
+            maxEnd = new long[2 * size];
+            for (int i = 0; i < size; i++) {
+                minEnd[size + i] = i < ends.length ? ends[i] : Long.MAX_VALUE;
+                maxEnd[size + i] = i < ends.length ? ends[i] : Long.MIN_VALUE;
+            }
+            for (int node = size - 1; node >= 1; node--) {
+                minEnd[node] = Math.min(minEnd[2 * node], minEnd[2 * node + 1]);
+                maxEnd[node] = Math.max(maxEnd[2 * node], maxEnd[2 * node + 1]);
+            }
+        }
+
+        long[] query(long startFrom, long startTo, int endMode, long endBound,
+                     long afterStart, long afterId, int limit) {
+            if (startFrom > startTo) {
+                return new long[0];
+            }
+            int lo = Math.max(firstAtLeast(startFrom), firstAfter(afterStart, afterId));
+            int hi = firstAfter(startTo, Long.MAX_VALUE);
+            long[] result = new long[Math.max(0, Math.min(limit, hi - lo))];
+            int count = lo < hi ? collect(1, 0, leaves, lo, hi, endMode, endBound, result, 0) : 0;
+            return count == result.length ? result : Arrays.copyOf(result, count);
+        }
+
+        // 第一个 start_time >= time 的位置
+        int firstAtLeast(long time) {
+            int lo = 0;
+            int hi = ids.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (starts[mid] < time) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        // 第一个排在 (start, id) 之后的位置
+        int firstAfter(long start, long id) {
+            int lo = 0;
+            int hi = ids.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (starts[mid] < start || (starts[mid] == start && ids[mid] <= id)) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        // 按顺序收集 [lo, hi) 中结束时间满足条件的 id，返回已收集的个数
+        int collect(int node, int nodeLo, int nodeHi, int lo, int hi,
+                    int endMode, long endBound, long[] out, int count) {
+            if (count >= out.length || nodeHi <= lo || nodeLo >= hi) {
+                return count;
+            }
+            if (endMode == END_AT_LEAST && maxEnd[node] < endBound
+                    || endMode == END_BEFORE && minEnd[node] >= endBound) {
+                return count;
+            }
+            if (nodeHi - nodeLo == 1) {
+                out[count++] = ids[nodeLo];
+                return count;
+            }
+            int mid = (nodeLo + nodeHi) >>> 1;
+            count = collect(2 * node, nodeLo, mid, lo, hi, endMode, endBound, out, count);
+            return collect(2 * node + 1, mid, nodeHi, lo, hi, endMode, endBound, out, count);
+        }
+
+        Snapshot without(long id) {
+            int index = indexOf(id);
+            return index < 0 ? this
+                    : new Snapshot(removeAt(ids, index), removeAt(starts, index), removeAt(ends, index));
+        }
+
+        // 加入活动，已有同一 id 时替换它；去掉旧位置和插入新位置在同一次拷贝里完成，线段树只重建一次
+        Snapshot with(long id, long start, long end) {
+            int old = indexOf(id);
+            int insert = firstAfter(start, id);
+            if (old >= 0 && old < insert) {
+                insert--;
+            }
+            int size = old < 0 ? ids.length + 1 : ids.length;
+            long[] newIds = new long[size];
+            long[] newStarts = new long[size];
+            long[] newEnds = new long[size];
+            int from = 0;
+            for (int to = 0; to < size; to++) {
+                if (to == insert) {
+                    newIds[to] = id;
+                    newStarts[to] = start;
+                    newEnds[to] = end;
+                    continue;
+                }
+                if (from == old) {
+                    from++;
+                }
+                newIds[to] = ids[from];
+                newStarts[to] = starts[from];
+                newEnds[to] = ends[from];
+                from++;
+            }
+            return new Snapshot(newIds, newStarts, newEnds);
+        }
+
+        private int indexOf(long id) {
+            for (int i = 0; i < ids.length; i++) {
+                if (ids[i] == id) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private static long[] removeAt(long[] values, int index) {
+            long[] result = new long[values.length - 1];
+            System.arraycopy(values, 0, result, 0, index);
+            System.arraycopy(values, index + 1, result, index, values.length - index - 1);
+            return result;
+        }
+    }
+}
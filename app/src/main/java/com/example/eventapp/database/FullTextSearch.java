@@ -0,0 +1,116 @@
+package com.example.eventapp.database;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+// 活动全文检索：把用户输入转换成 FTS 查询，并根据 matchinfo 计算 BM25 相关度
+// unicode61 分词器把一串连续的中日韩文字当作一个词，FTS 只能匹配词的开头，
+// 搜“会议”找不到“年度技术会议”；含这些文字的关键词改用 LIKE 做子串匹配，代价是全表扫描，没有摘要
+final class FullTextSearch {
+    static final String TABLE_EVENTS_FTS = "events_fts";
+
+    // matchinfo 的格式参数，依次为：短语数、列数、总行数、各列平均词数、本行各列词数、命中统计
+    static final String MATCHINFO_FORMAT = "pcnalx";
+
+    // 列权重，顺序与 events_fts 的列顺序（title, description, location）一致
+    private static final double[] COLUMN_WEIGHTS = {3.0, 1.0, 2.0};
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private FullTextSearch() {
+    }
+
+    // 每个关键词都按前缀匹配，多个关键词之间是 AND 关系；没有可用关键词时返回 null
+    static String toMatchQuery(String keyword) {
+        if (keyword == null) {
+            return null;
+        }
+        StringBuilder query = new StringBuilder();
+        for (String token : keyword.replace('"', ' ').trim().split("\\s+")) {
+            String term = token.replace("*", "");
+            if (term.isEmpty()) {
+                continue;
+            }
+            if (query.length() > 0) {
+                query.append(' ');
+            }
+            // 放在引号里，用户输入的 OR、NEAR、- 等不会被当成查询语法
+            query.append('"').append(term).append("*\"");
+        }
+        return query.length() > 0 ? query.toString() : null;
+    }
+
+    // 关键词中含有中日韩文字时需要子串匹配，不能走全文索引
+    static boolean needsSubstringMatch(String keyword) {
+        if (keyword == null) {
+            return false;
+        }
+        for (int i = 0; i < keyword.length(); ) {
+            int codePoint = keyword.codePointAt(i);
+            if (isCjk(codePoint)) {
+                return true;
+            }
+            i += Character.charCount(codePoint);
+        }
+        return false;
+    }
+
+    // 每个关键词转换成一个 LIKE 模式，配合 ESCAPE '\\' 使用，多个关键词之间是 AND 关系；没有可用关键词时返回 null
+    static String[] toLikePatterns(String keyword) {
+        if (keyword == null || keyword.trim().isEmpty()) {
+            return null;
+        }
+        String[] terms = keyword.trim().split("\\s+");
+        String[] patterns = new String[terms.length];
+        for (int i = 0; i < terms.length; i++) {
+            patterns[i] = "%" + terms[i].replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+        }
+        return patterns;
+    }
+
+    private static boolean isCjk(int codePoint) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+
+    // 按 BM25 计算一行的相关度，分数越高越相关
+    static double rank(byte[] matchInfo) {
+        if (matchInfo == null || matchInfo.length < 8) {
+            return 0;
+        }
+        // matchinfo 是本机字节序的 32 位无符号整数数组
+        IntBuffer info = ByteBuffer.wrap(matchInfo).order(ByteOrder.nativeOrder()).asIntBuffer();
+        int phraseCount = info.get(0);
+        int columnCount = info.get(1);
+        long rowCount = info.get(2) & 0xFFFFFFFFL;
+        int avgLengthStart = 3;
+        int lengthStart = avgLengthStart + columnCount;
+        int hitsStart = lengthStart + columnCount;
+
+        double score = 0;
+        for (int phrase = 0; phrase < phraseCount; phrase++) {
+            for (int column = 0; column < columnCount; column++) {
+                int base = hitsStart + 3 * (phrase * columnCount + column);
+                int hitsInRow = info.get(base);
+                if (hitsInRow == 0) {
+                    continue;
+                }
+                int docsWithHits = info.get(base + 2);
+                double idf = Math.log((rowCount - docsWithHits + 0.5) / (docsWithHits + 0.5));
+                // 常见词的 idf 可能为负，保留一个很小的正值，命中总比不命中好
+                idf = Math.max(idf, 1e-6);
+                double avgLength = Math.max(1, info.get(avgLengthStart + column));
+                double length = info.get(lengthStart + column);
+                double tf = hitsInRow * (K1 + 1)
+                        / (hitsInRow + K1 * (1 - B + B * length / avgLength));
+                double weight = column < COLUMN_WEIGHTS.length ? COLUMN_WEIGHTS[column] : 1.0;
+                score += weight * idf * tf;
+            }
+        }
+        return score;
+    }
+}
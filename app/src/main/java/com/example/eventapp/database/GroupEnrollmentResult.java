@@ -0,0 +1,40 @@
+package com.example.eventapp.database;
+
+import java.util.Collections;
+import java.util.List;
+
+// 批量报名的结果，每个用户只会出现在其中一个列表里，列表保持传入时的顺序
+public class GroupEnrollmentResult {
+    private final List<Long> enrolled;
+    private final List<Long> alreadyRegistered;
+    private final List<Long> leftOut;
+    private final List<Long> unknownUsers;
+
+    GroupEnrollmentResult(List<Long> enrolled, List<Long> alreadyRegistered,
+                          List<Long> leftOut, List<Long> unknownUsers) {
+        this.enrolled = Collections.unmodifiableList(enrolled);
+        this.alreadyRegistered = Collections.unmodifiableList(alreadyRegistered);
+        this.leftOut = Collections.unmodifiableList(leftOut);
+        this.unknownUsers = Collections.unmodifiableList(unknownUsers);
+    }
+
+    // 本次报名成功的用户
+    public List<Long> getEnrolled() {
+        return enrolled;
+    }
+
+    // 之前已经报名过的用户
+    public List<Long> getAlreadyRegistered() {
+        return alreadyRegistered;
+    }
+
+    // 名额不足没有报上的用户
+    public List<Long> getLeftOut() {
+        return leftOut;
+    }
+
+    // 不存在的用户 id
+    public List<Long> getUnknownUsers() {
+        return unknownUsers;
+    }
+}
@@ -0,0 +1,254 @@
+package com.example.eventapp.database;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// 按表的变化通知界面：写操作提交后报告改动过的表，订阅了其中任何一张表的查询在后台重新执行，
+// 结果推送给订阅者，界面不再自己判断什么时候需要重新读取
+// 同一个 key 的查询只保留一份，多个界面订阅时共用一次查询和同一个结果；
+// 通知在后台线程上合并处理，连续多次提交只触发一次重新查询，没有订阅者的查询不执行
+// 每张表有一个版本号，查询结果记下执行前的版本，取消订阅后暂时保留，
+// 重新订阅时版本没变就直接返回上次的结果
+public final class InvalidationTracker {
+    // 在后台线程上执行的查询，出错时由查询自己决定返回什么
+    public interface Query<T> {
+        T run();
+    }
+
+    // 结果在后台线程上回调，需要更新界面时自行切换到主线程
+    public interface Observer<T> {
+        void onChanged(T result);
+    }
+
+    // 订阅的句柄，界面不可见时取消；取消时正在进行的那一次回调仍可能到达
+    public static final class Subscription {
+        private final Runnable onCancel;
+        private boolean canceled;
+
+        private Subscription(Runnable onCancel) {
+            this.onCancel = onCancel;
+        }
+
+        public void cancel() {
+            synchronized (this) {
+                if (canceled) {
+                    return;
+                }
+                canceled = true;
+            }
+            onCancel.run();
+        }
+    }
+
+    // 取消订阅后保留结果的查询数，界面来回切换时不必重新查询
+    private static final int MAX_IDLE_QUERIES = 8;
+
+    // 重新查询和回调都在这个线程上依次执行
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Map<String, Long> tableVersions = new HashMap<>();
+    private final Map<String, LiveQuery<?>> liveQueries = new HashMap<>();
+    private final Map<String, LiveQuery<?>> idleQueries = new LinkedHashMap<String, LiveQuery<?>>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, LiveQuery<?>> eldest) {
+            return size() > MAX_IDLE_QUERIES;
+        }
+    };
+    private final List<TableObserver> tableObservers = new CopyOnWriteArrayList<>();
+    // 还没处理的变化，处理前到达的通知合并在一起
+    private final Set<String> pendingTables = new HashSet<>();
+    private boolean dispatchScheduled;
+
+    InvalidationTracker() {
+    }
+
+    // 订阅查询：先回调一次当前结果，之后 tables 中的任何一张表有变化就重新执行并回调
+    // key 相同的订阅共用一个查询，key 需要包含决定结果的全部参数；query 不要引用界面对象，
+    // 它可能在订阅者离开后继续被其他界面使用
+    public <T> Subscription observe(String key, String[] tables, Query<T> query, Observer<T> observer) {
+        final ObserverEntry<T> entry = new ObserverEntry<>(observer);
+        LiveQuery<T> liveQuery;
+        synchronized (this) {
+            @SuppressWarnings("unchecked")
+            LiveQuery<T> existing = (LiveQuery<T>) liveQueries.get(key);
+            if (existing == null) {
+                @SuppressWarnings("unchecked")
+                LiveQuery<T> idle = (LiveQuery<T>) idleQueries.remove(key);
+                existing = idle != null ? idle : new LiveQuery<>(key, tables, query);
+                liveQueries.put(key, existing);
+            }
+            liveQuery = existing;
+            liveQuery.observers.add(entry);
+        }
+        final LiveQuery<T> subscribed = liveQuery;
+        executor.execute(() -> deliverCurrent(subscribed, entry));
+        return new Subscription(() -> removeObserver(subscribed, entry));
+    }
+
+    // 只关心哪些表变了、不需要查询结果时使用，回调在后台线程上，参数是这一批变化中相关的表
+    public Subscription observeTables(String[] tables, Observer<Set<String>> observer) {
+        TableObserver tableObserver = new TableObserver(tables, observer);
+        tableObservers.add(tableObserver);
+        return new Subscription(() -> tableObservers.remove(tableObserver));
+    }
+
+    // 写操作提交之后调用；在事务里调用时，重新查询可能读到提交前的数据
+    void notifyTablesChanged(String... tables) {
+        if (tables.length == 0) {
+            return;
+        }
+        synchronized (this) {
+            for (String table : tables) {
+                Long version = tableVersions.get(table);
+                tableVersions.put(table, version == null ? 1 : version + 1);
+                pendingTables.add(table);
+            }
+            if (dispatchScheduled) {
+                return;
+            }
+            dispatchScheduled = true;
+        }
+        executor.execute(this::dispatch);
+    }
+
+    private void dispatch() {
+        Set<String> changed;
+        List<LiveQuery<?>> affected = new ArrayList<>();
+        synchronized (this) {
+            changed = new HashSet<>(pendingTables);
+            pendingTables.clear();
+            dispatchScheduled = false;
+            for (LiveQuery<?> liveQuery : liveQueries.values()) {
+                if (dependsOn(liveQuery.tables, changed)) {
+                    affected.add(liveQuery);
+                }
+            }
+        }
+        for (TableObserver tableObserver : tableObservers) {
+            Set<String> relevant = new HashSet<>(Arrays.asList(tableObserver.tables));
+            relevant.retainAll(changed);
+            if (!relevant.isEmpty()) {
+                tableObserver.observer.onChanged(relevant);
+            }
+        }
+        for (LiveQuery<?> liveQuery : affected) {
+            refresh(liveQuery);
+        }
+    }
+
+    // 新的订阅者：结果还是最新的就直接给它，否则重新查询后推送给所有订阅者
+    private <T> void deliverCurrent(LiveQuery<T> liveQuery, ObserverEntry<T> entry) {
+        if (!liveQuery.observers.contains(entry) || entry.received) {
+            return;
+        }
+        if (isFresh(liveQuery)) {
+            entry.received = true;
+            entry.observer.onChanged(liveQuery.result);
+        } else {
+            refresh(liveQuery);
+        }
+    }
+
+    // 上一次查询之后又有提交时，前一次刷新可能已经读到了这些变化，结果仍是最新的就不再查询
+    private <T> void refresh(LiveQuery<T> liveQuery) {
+        if (liveQuery.observers.isEmpty() || isFresh(liveQuery)) {
+            return;
+        }
+        // 执行前读取版本，查询期间提交的写操作会让结果被判为过期，并且会再触发一次刷新
+        long version = versionOf(liveQuery.tables);
+        T result;
+        try {
+            result = liveQuery.query.run();
+        } catch (Exception e) {
+            Log.e("DatabaseHelper", "重新执行订阅的查询时出错: " + liveQuery.key + ", " + e.getMessage());
+            return;
+        }
+        liveQuery.result = result;
+        liveQuery.version = version;
+        liveQuery.hasResult = true;
+        for (ObserverEntry<T> entry : liveQuery.observers) {
+            entry.received = true;
+            entry.observer.onChanged(result);
+        }
+    }
+
+    private <T> boolean isFresh(LiveQuery<T> liveQuery) {
+        return liveQuery.hasResult && liveQuery.version == versionOf(liveQuery.tables);
+    }
+
+    private synchronized <T> void removeObserver(LiveQuery<T> liveQuery, ObserverEntry<T> entry) {
+        liveQuery.observers.remove(entry);
+        if (liveQuery.observers.isEmpty() && liveQueries.remove(liveQuery.key) == liveQuery) {
+            idleQueries.put(liveQuery.key, liveQuery);
+        }
+    }
+
+    // 版本号只增不减，表版本之和相同说明这些表都没有变化
+    private synchronized long versionOf(String[] tables) {
+        long sum = 0;
+        for (String table : tables) {
+            Long version = tableVersions.get(table);
+            if (version != null) {
+                sum += version;
+            }
+        }
+        return sum;
+    }
+
+    private static boolean dependsOn(String[] tables, Set<String> changed) {
+        for (String table : tables) {
+            if (changed.contains(table)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // result、version 和 hasResult 只在后台线程上读写
+    private static final class LiveQuery<T> {
+        final String key;
+        final String[] tables;
+        final Query<T> query;
+        final List<ObserverEntry<T>> observers = new CopyOnWriteArrayList<>();
+        T result;
+        long version;
+        boolean hasResult;
+
+        LiveQuery(String key, String[] tables, Query<T> query) {
+            this.key = key;
+            this.tables = tables;
+            this.query = query;
+        }
+    }
+
+    // 每次订阅单独一项，同一个回调对象订阅两次也分别计算
+    private static final class ObserverEntry<T> {
+        final Observer<T> observer;
+        // 已经收到过结果，只在后台线程上读写
+        boolean received;
+
+        ObserverEntry(Observer<T> observer) {
+            this.observer = observer;
+        }
+    }
+
+    private static final class TableObserver {
+        final String[] tables;
+        final Observer<Set<String>> observer;
+
+        TableObserver(String[] tables, Observer<Set<String>> observer) {
+            this.tables = tables;
+            this.observer = observer;
+        }
+    }
+}
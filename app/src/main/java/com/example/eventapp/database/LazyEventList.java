@@ -0,0 +1,176 @@
+package com.example.eventapp.database;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.example.eventapp.model.Event;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+// 按需加载的活动列表：创建时只保存排好序的活动 id，
+// 列表项被绑定时才按窗口在后台线程读取对应的 Event，只缓存最近用到的几个窗口
+// 窗口还没加载好时 get 返回 null，由界面显示占位项，加载完成后通过 Listener 通知刷新；
+// 生成列表之后被删除的活动在所在窗口加载时从列表中移除
+// 除 snapshotIds 的结果外只能在主线程使用
+public final class LazyEventList extends AbstractList<Event> {
+    // 每个窗口的行数，大约是屏幕上能显示的条数的两倍
+    static final int WINDOW_SIZE = 20;
+    // 同时保留的窗口数：屏幕可能跨两个窗口，另外预取前后各一个
+    private static final int CACHED_WINDOWS = 4;
+
+    // 窗口的查询在这个线程上依次执行，不占用主线程
+    private static final Executor LOAD_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    // 按 id 读取一个窗口内的活动，返回结果不要求与 id 的顺序一致；在后台线程调用，出错时返回 null
+    interface WindowLoader {
+        List<Event> load(long[] ids);
+    }
+
+    // 在主线程回调
+    public interface Listener {
+        // [start, start + count) 的活动已加载，可以重新绑定
+        void onWindowLoaded(int start, int count);
+
+        // position 处的活动已被删除，之后的项前移一位
+        void onRemoved(int position);
+    }
+
+    private final WindowLoader loader;
+    private final Executor loadExecutor;
+    private final Executor mainExecutor;
+    private final long[] ids;
+    private int size;
+    private final Map<Long, Event> loaded = new LinkedHashMap<Long, Event>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Event> eldest) {
+            return size() > CACHED_WINDOWS * WINDOW_SIZE;
+        }
+    };
+    // 正在加载的窗口，按窗口第一项的 id 记录，删除活动后窗口的位置会前移
+    private final Set<Long> pendingWindows = new HashSet<>();
+    private Listener listener;
+
+    LazyEventList(long[] ids, WindowLoader loader) {
+        this(ids, loader, LOAD_EXECUTOR, new Handler(Looper.getMainLooper())::post);
+    }
+
+    LazyEventList(long[] ids, WindowLoader loader, Executor loadExecutor, Executor mainExecutor) {
+        this.ids = ids;
+        this.size = ids.length;
+        this.loader = loader;
+        this.loadExecutor = loadExecutor;
+        this.mainExecutor = mainExecutor;
+    }
+
+    // 已加载时返回活动，否则开始加载它所在的窗口并返回 null；同时预取相邻的窗口
+    @Override
+    public Event get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index: " + index + ", size: " + size);
+        }
+        Event event = loaded.get(ids[index]);
+        if (event == null) {
+            requestWindow(index / WINDOW_SIZE);
+            return null;
+        }
+        // 滚过窗口的一半时预先加载滚动方向上的下一个窗口
+        int windowIndex = index / WINDOW_SIZE;
+        requestWindow(index % WINDOW_SIZE >= WINDOW_SIZE / 2 ? windowIndex + 1 : windowIndex - 1);
+        return event;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    public long getId(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index: " + index + ", size: " + size);
+        }
+        return ids[index];
+    }
+
+    // 当前全部 id 的副本，可以交给后台线程使用
+    public long[] snapshotIds() {
+        return Arrays.copyOf(ids, size);
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    private void requestWindow(int windowIndex) {
+        int start = windowIndex * WINDOW_SIZE;
+        if (windowIndex < 0 || start >= size || loaded.containsKey(ids[start])
+                || !pendingWindows.add(ids[start])) {
+            return;
+        }
+        int count = Math.min(WINDOW_SIZE, size - start);
+        final long[] windowIds = Arrays.copyOfRange(ids, start, start + count);
+        loadExecutor.execute(() -> {
+            List<Event> events = loader.load(windowIds);
+            mainExecutor.execute(() -> onWindowLoaded(start, windowIds, events));
+        });
+    }
+
+    private void onWindowLoaded(int start, long[] windowIds, List<Event> events) {
+        pendingWindows.remove(windowIds[0]);
+        if (events == null) {
+            // 读取失败时保持占位，下次绑定时重试
+            return;
+        }
+        Map<Long, Event> byId = new LinkedHashMap<>();
+        for (Event event : events) {
+            byId.put(event.getId(), event);
+        }
+        int first = -1;
+        int count = 0;
+        for (int i = 0; i < windowIds.length; i++) {
+            long id = windowIds[i];
+            int position = positionOf(id, start + i);
+            if (position < 0) {
+                continue;
+            }
+            Event event = byId.get(id);
+            if (event == null) {
+                removeDeleted(position);
+                continue;
+            }
+            loaded.put(id, event);
+            if (first < 0) {
+                first = position;
+            }
+            count++;
+        }
+        if (count > 0 && listener != null) {
+            listener.onWindowLoaded(first, count);
+        }
+    }
+
+    // 只有删除会移动位置，而且只会往前移，从请求时的位置往前找，通常第一次就命中
+    private int positionOf(long id, int requestedPosition) {
+        for (int i = Math.min(requestedPosition, size - 1); i >= 0; i--) {
+            if (ids[i] == id) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void removeDeleted(int position) {
+        System.arraycopy(ids, position + 1, ids, position, size - position - 1);
+        size--;
+        if (listener != null) {
+            listener.onRemoved(position);
+        }
+    }
+}
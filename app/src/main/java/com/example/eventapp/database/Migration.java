@@ -0,0 +1,16 @@
+package com.example.eventapp.database;
+
+import android.database.sqlite.SQLiteDatabase;
+
+// 一步数据库结构升级：把 startVersion 的结构升级到 endVersion，过程中保留已有数据
+abstract class Migration {
+    final int startVersion;
+    final int endVersion;
+
+    Migration(int startVersion, int endVersion) {
+        this.startVersion = startVersion;
+        this.endVersion = endVersion;
+    }
+
+    abstract void migrate(SQLiteDatabase db);
+}
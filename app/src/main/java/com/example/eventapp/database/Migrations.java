@@ -0,0 +1,302 @@
+package com.example.eventapp.database;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_CURRENT_PARTICIPANTS;
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_DESCRIPTION;
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_DESCRIPTION_EXCERPT;
+import static com.example.eventapp.database.DatabaseHelper.DESCRIPTION_EXCERPT_LENGTH;
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_END_TIME;
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_EVENT_ID;
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_ID;
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_JOIN_TIME;
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_LATITUDE;
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_LOCATION;
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_LONGITUDE;
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_MAX_PARTICIPANTS;
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_OCCURRENCE_INDEX;
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_ORGANIZER;
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_REGISTER_TIME;
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_SERIES_ID;
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_START_TIME;
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_TITLE;
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_USER_ID;
+import static com.example.eventapp.database.DatabaseHelper.TABLE_EVENTS;
+import static com.example.eventapp.database.DatabaseHelper.TABLE_REGISTRATIONS;
+import static com.example.eventapp.database.DatabaseHelper.TABLE_USERS;
+import static com.example.eventapp.database.DatabaseHelper.TABLE_WAITLIST;
+
+// 所有版本升级步骤，按版本号顺序逐步执行
+// 新增结构变化时：提升 DatabaseHelper.DATABASE_VERSION，并在这里追加一个 Migration
+final class Migrations {
+    // 附近搜索先按纬度范围查找索引，经度在索引条目里过滤，不需要回表
+    private static final String CREATE_LOCATION_INDEX = "CREATE INDEX IF NOT EXISTS idx_events_location ON "
+            + TABLE_EVENTS + "(" + COLUMN_LATITUDE + ", " + COLUMN_LONGITUDE + ")";
+
+    // 2 -> 3: 报名表外键改为级联删除，并为列表排序、时间/状态筛选和“我的活动”连接查询建立索引
+    static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+        @Override
+        void migrate(SQLiteDatabase db) {
+            // SQLite 不能修改已有的外键约束，只能重建报名表再拷贝数据
+            String newTable = TABLE_REGISTRATIONS + "_new";
+            db.execSQL("CREATE TABLE " + newTable + "("
+                    + COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                    + COLUMN_EVENT_ID + " INTEGER, "
+                    + COLUMN_USER_ID + " INTEGER, "
+                    + COLUMN_REGISTER_TIME + " INTEGER, "
+                    + "UNIQUE(" + COLUMN_EVENT_ID + ", " + COLUMN_USER_ID + "), "
+                    + "FOREIGN KEY(" + COLUMN_EVENT_ID + ") REFERENCES " + TABLE_EVENTS + "(" + COLUMN_ID + ") ON DELETE CASCADE, "
+                    + "FOREIGN KEY(" + COLUMN_USER_ID + ") REFERENCES " + TABLE_USERS + "(" + COLUMN_ID + ") ON DELETE CASCADE)");
+            // 旧版本删除活动时可能留下孤立的报名记录，外键开启后不能再拷贝它们
+            db.execSQL("INSERT INTO " + newTable + "("
+                    + COLUMN_ID + ", " + COLUMN_EVENT_ID + ", " + COLUMN_USER_ID + ", " + COLUMN_REGISTER_TIME + ")"
+                    + " SELECT " + COLUMN_ID + ", " + COLUMN_EVENT_ID + ", " + COLUMN_USER_ID + ", " + COLUMN_REGISTER_TIME
+                    + " FROM " + TABLE_REGISTRATIONS
+                    + " WHERE " + COLUMN_EVENT_ID + " IN (SELECT " + COLUMN_ID + " FROM " + TABLE_EVENTS + ")"
+                    + " AND " + COLUMN_USER_ID + " IN (SELECT " + COLUMN_ID + " FROM " + TABLE_USERS + ")");
+            db.execSQL("DROP TABLE " + TABLE_REGISTRATIONS);
+            db.execSQL("ALTER TABLE " + newTable + " RENAME TO " + TABLE_REGISTRATIONS);
+
+            // (start_time, id) 同时服务 ORDER BY start_time 和时间范围筛选
+            db.execSQL("CREATE INDEX IF NOT EXISTS idx_events_start_time ON "
+                    + TABLE_EVENTS + "(" + COLUMN_START_TIME + ", " + COLUMN_ID + ")");
+            db.execSQL("CREATE INDEX IF NOT EXISTS idx_events_end_time ON "
+                    + TABLE_EVENTS + "(" + COLUMN_END_TIME + ", " + COLUMN_START_TIME + ")");
+            db.execSQL("CREATE INDEX IF NOT EXISTS idx_events_organizer ON "
+                    + TABLE_EVENTS + "(" + COLUMN_ORGANIZER + ")");
+            // 覆盖“我的活动”连接查询，不需要回表读取报名记录
+            db.execSQL("CREATE INDEX IF NOT EXISTS idx_registrations_user ON "
+                    + TABLE_REGISTRATIONS + "(" + COLUMN_USER_ID + ", " + COLUMN_EVENT_ID + ")");
+        }
+    };
+
+    // 3 -> 4: 建立 FTS4 全文索引（外部内容表，正文只存一份），由触发器与 events 表保持同步
+    static final Migration MIGRATION_3_4 = new Migration(3, 4) {
+        @Override
+        void migrate(SQLiteDatabase db) {
+            String fts = FullTextSearch.TABLE_EVENTS_FTS;
+            String indexedColumns = COLUMN_TITLE + ", " + COLUMN_DESCRIPTION + ", " + COLUMN_LOCATION;
+            db.execSQL("CREATE VIRTUAL TABLE " + fts + " USING fts4("
+                    + "content=\"" + TABLE_EVENTS + "\", " + indexedColumns
+                    + ", tokenize=unicode61, prefix=\"2,3\")");
+            // 只在被索引的列变化时更新索引，报名人数变化不会触发
+            db.execSQL("CREATE TRIGGER " + fts + "_before_update BEFORE UPDATE OF " + indexedColumns
+                    + " ON " + TABLE_EVENTS + " BEGIN"
+                    + " DELETE FROM " + fts + " WHERE docid = old." + COLUMN_ID + ";"
+                    + " END");
+            db.execSQL("CREATE TRIGGER " + fts + "_before_delete BEFORE DELETE ON " + TABLE_EVENTS + " BEGIN"
+                    + " DELETE FROM " + fts + " WHERE docid = old." + COLUMN_ID + ";"
+                    + " END");
+            db.execSQL("CREATE TRIGGER " + fts + "_after_update AFTER UPDATE OF " + indexedColumns
+                    + " ON " + TABLE_EVENTS + " BEGIN"
+                    + " INSERT INTO " + fts + "(docid, " + indexedColumns + ")"
+                    + " VALUES (new." + COLUMN_ID + ", new." + COLUMN_TITLE
+                    + ", new." + COLUMN_DESCRIPTION + ", new." + COLUMN_LOCATION + ");"
+                    + " END");
+            db.execSQL("CREATE TRIGGER " + fts + "_after_insert AFTER INSERT ON " + TABLE_EVENTS + " BEGIN"
+                    + " INSERT INTO " + fts + "(docid, " + indexedColumns + ")"
+                    + " VALUES (new." + COLUMN_ID + ", new." + COLUMN_TITLE
+                    + ", new." + COLUMN_DESCRIPTION + ", new." + COLUMN_LOCATION + ");"
+                    + " END");
+            // 为已有活动建立索引
+            db.execSQL("INSERT INTO " + fts + "(" + fts + ") VALUES ('rebuild')");
+        }
+    };
+
+    // 4 -> 5: 候补名单，自增 id 即加入顺序
+    static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+        @Override
+        void migrate(SQLiteDatabase db) {
+            db.execSQL("CREATE TABLE " + TABLE_WAITLIST + "("
+                    + COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                    + COLUMN_EVENT_ID + " INTEGER NOT NULL, "
+                    + COLUMN_USER_ID + " INTEGER NOT NULL, "
+                    + COLUMN_JOIN_TIME + " INTEGER, "
+                    + "UNIQUE(" + COLUMN_EVENT_ID + ", " + COLUMN_USER_ID + "), "
+                    + "FOREIGN KEY(" + COLUMN_EVENT_ID + ") REFERENCES " + TABLE_EVENTS + "(" + COLUMN_ID + ") ON DELETE CASCADE, "
+                    + "FOREIGN KEY(" + COLUMN_USER_ID + ") REFERENCES " + TABLE_USERS + "(" + COLUMN_ID + ") ON DELETE CASCADE)");
+            // 索引隐含 rowid，同一活动内按加入顺序排列，取队首只需一次索引查找
+            db.execSQL("CREATE INDEX IF NOT EXISTS idx_waitlist_event ON "
+                    + TABLE_WAITLIST + "(" + COLUMN_EVENT_ID + ")");
+        }
+    };
+
+    // 5 -> 6: 保存描述的开头部分，列表页读取它而不是完整描述；由触发器在描述写入时维护
+    static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+        @Override
+        void migrate(SQLiteDatabase db) {
+            String excerpt = "substr(new." + COLUMN_DESCRIPTION + ", 1, " + DESCRIPTION_EXCERPT_LENGTH + ")";
+            db.execSQL("ALTER TABLE " + TABLE_EVENTS + " ADD COLUMN " + COLUMN_DESCRIPTION_EXCERPT + " TEXT");
+            // 只更新摘要列，不会触发全文索引的 UPDATE OF 触发器，也不会再次触发自身
+            db.execSQL("CREATE TRIGGER events_excerpt_after_insert AFTER INSERT ON " + TABLE_EVENTS + " BEGIN"
+                    + " UPDATE " + TABLE_EVENTS + " SET " + COLUMN_DESCRIPTION_EXCERPT + " = " + excerpt
+                    + " WHERE " + COLUMN_ID + " = new." + COLUMN_ID + ";"
+                    + " END");
+            db.execSQL("CREATE TRIGGER events_excerpt_after_update AFTER UPDATE OF " + COLUMN_DESCRIPTION
+                    + " ON " + TABLE_EVENTS + " BEGIN"
+                    + " UPDATE " + TABLE_EVENTS + " SET " + COLUMN_DESCRIPTION_EXCERPT + " = " + excerpt
+                    + " WHERE " + COLUMN_ID + " = new." + COLUMN_ID + ";"
+                    + " END");
+            db.execSQL("UPDATE " + TABLE_EVENTS + " SET " + COLUMN_DESCRIPTION_EXCERPT
+                    + " = substr(" + COLUMN_DESCRIPTION + ", 1, " + DESCRIPTION_EXCERPT_LENGTH + ")");
+        }
+    };
+
+    // 6 -> 7: 活动的可选坐标，按 (latitude, longitude) 建普通索引按范围查找
+    // 系统自带的 SQLite 没有编译 R*Tree 模块，不能使用 rtree 虚拟表
+    static final Migration MIGRATION_6_7 = new Migration(6, 7) {
+        @Override
+        void migrate(SQLiteDatabase db) {
+            db.execSQL("ALTER TABLE " + TABLE_EVENTS + " ADD COLUMN " + COLUMN_LATITUDE + " REAL");
+            db.execSQL("ALTER TABLE " + TABLE_EVENTS + " ADD COLUMN " + COLUMN_LONGITUDE + " REAL");
+            db.execSQL(CREATE_LOCATION_INDEX);
+        }
+    };
+
+    // 7 -> 8: 周期活动。系列只存一行规则，events 表里只保存被报名或修改过的那一次，
+    // 删除的那一次记入例外表；系列删除时这些行一并级联删除
+    static final Migration MIGRATION_7_8 = new Migration(7, 8) {
+        @Override
+        void migrate(SQLiteDatabase db) {
+            String series = RecurringEvents.TABLE_EVENT_SERIES;
+            db.execSQL("CREATE TABLE " + series + "("
+                    + COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                    + COLUMN_TITLE + " TEXT, "
+                    + COLUMN_DESCRIPTION + " TEXT, "
+                    + COLUMN_LOCATION + " TEXT, "
+                    + COLUMN_ORGANIZER + " TEXT, "
+                    + COLUMN_MAX_PARTICIPANTS + " INTEGER, "
+                    + COLUMN_START_TIME + " INTEGER, "
+                    + COLUMN_END_TIME + " INTEGER, "
+                    + RecurringEvents.COLUMN_FREQUENCY + " TEXT NOT NULL, "
+                    + RecurringEvents.COLUMN_REPEAT_INTERVAL + " INTEGER NOT NULL DEFAULT 1, "
+                    + RecurringEvents.COLUMN_OCCURRENCE_COUNT + " INTEGER, "
+                    + RecurringEvents.COLUMN_UNTIL_TIME + " INTEGER, "
+                    + RecurringEvents.COLUMN_LAST_START + " INTEGER, "
+                    + COLUMN_LATITUDE + " REAL, "
+                    + COLUMN_LONGITUDE + " REAL)");
+            // 按窗口查找系列时用 start_time <= 窗口结束 限定范围
+            db.execSQL("CREATE INDEX IF NOT EXISTS idx_event_series_start_time ON "
+                    + series + "(" + COLUMN_START_TIME + ")");
+
+            db.execSQL("ALTER TABLE " + TABLE_EVENTS + " ADD COLUMN " + COLUMN_SERIES_ID
+                    + " INTEGER REFERENCES " + series + "(" + COLUMN_ID + ") ON DELETE CASCADE");
+            db.execSQL("ALTER TABLE " + TABLE_EVENTS + " ADD COLUMN " + COLUMN_OCCURRENCE_INDEX + " INTEGER");
+            // 同一次活动只能保存一行；普通活动两列都是 NULL，不受唯一约束影响
+            db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS idx_events_occurrence ON "
+                    + TABLE_EVENTS + "(" + COLUMN_SERIES_ID + ", " + COLUMN_OCCURRENCE_INDEX + ")");
+
+            db.execSQL("CREATE TABLE " + RecurringEvents.TABLE_SERIES_EXCEPTIONS + "("
+                    + COLUMN_SERIES_ID + " INTEGER NOT NULL, "
+                    + COLUMN_OCCURRENCE_INDEX + " INTEGER NOT NULL, "
+                    + "PRIMARY KEY(" + COLUMN_SERIES_ID + ", " + COLUMN_OCCURRENCE_INDEX + "), "
+                    + "FOREIGN KEY(" + COLUMN_SERIES_ID + ") REFERENCES " + series + "(" + COLUMN_ID + ") ON DELETE CASCADE)"
+                    + " WITHOUT ROWID");
+        }
+    };
+
+    // 8 -> 9: 活动名单按报名时间分页，(event_id, register_time) 索引的条目自带行 id，正好是分页键的顺序
+    static final Migration MIGRATION_8_9 = new Migration(8, 9) {
+        @Override
+        void migrate(SQLiteDatabase db) {
+            db.execSQL("CREATE INDEX IF NOT EXISTS idx_registrations_event_time ON "
+                    + TABLE_REGISTRATIONS + "(" + COLUMN_EVENT_ID + ", " + COLUMN_REGISTER_TIME + ")");
+        }
+    };
+
+    // 9 -> 10: 变更日志。events 的写入由触发器在同一个事务里记下活动 id，
+    // 列表回来时只刷新变化过的行；保存生成的活动和周期系列的变化记为 RELOAD_ALL，读取方整体重新加载
+    static final Migration MIGRATION_9_10 = new Migration(9, 10) {
+        @Override
+        void migrate(SQLiteDatabase db) {
+            String changes = ChangeLog.TABLE_EVENT_CHANGES;
+            db.execSQL("CREATE TABLE " + changes + "("
+                    + ChangeLog.COLUMN_SEQ + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                    + COLUMN_EVENT_ID + " INTEGER NOT NULL)");
+            // 压缩时按活动找到最新的一行
+            db.execSQL("CREATE INDEX IF NOT EXISTS idx_event_changes_event ON "
+                    + changes + "(" + COLUMN_EVENT_ID + ")");
+
+            String log = " INSERT INTO " + changes + "(" + COLUMN_EVENT_ID + ") VALUES (";
+            // 生成的活动第一次保存时，列表里显示的还是它生成时的 id，无法按行替换
+            db.execSQL("CREATE TRIGGER " + changes + "_events_insert AFTER INSERT ON " + TABLE_EVENTS + " BEGIN"
+                    + log + "CASE WHEN new." + COLUMN_SERIES_ID + " IS NULL THEN new." + COLUMN_ID
+                    + " ELSE " + ChangeLog.RELOAD_ALL + " END);"
+                    + " END");
+            // 只记录列表显示或排序用到的列；摘要由描述的触发器维护，只改摘要（例如补齐旧数据）不记录
+            db.execSQL("CREATE TRIGGER " + changes + "_events_update AFTER UPDATE OF "
+                    + COLUMN_TITLE + ", " + COLUMN_DESCRIPTION + ", " + COLUMN_LOCATION + ", "
+                    + COLUMN_START_TIME + ", " + COLUMN_END_TIME + ", "
+                    + COLUMN_MAX_PARTICIPANTS + ", " + COLUMN_CURRENT_PARTICIPANTS
+                    + " ON " + TABLE_EVENTS + " BEGIN"
+                    + log + "new." + COLUMN_ID + ");"
+                    + " END");
+            db.execSQL("CREATE TRIGGER " + changes + "_events_delete AFTER DELETE ON " + TABLE_EVENTS + " BEGIN"
+                    + log + "old." + COLUMN_ID + ");"
+                    + " END");
+            // 报名和取消都会在同一个事务里修改 current_participants，由上面的触发器记录，报名表不另建触发器
+            String reload = log + ChangeLog.RELOAD_ALL + ");";
+            String series = RecurringEvents.TABLE_EVENT_SERIES;
+            db.execSQL("CREATE TRIGGER " + changes + "_series_insert AFTER INSERT ON " + series + " BEGIN"
+                    + reload + " END");
+            db.execSQL("CREATE TRIGGER " + changes + "_series_update AFTER UPDATE ON " + series + " BEGIN"
+                    + reload + " END");
+            db.execSQL("CREATE TRIGGER " + changes + "_series_delete AFTER DELETE ON " + series + " BEGIN"
+                    + reload + " END");
+            db.execSQL("CREATE TRIGGER " + changes + "_exceptions_insert AFTER INSERT ON "
+                    + RecurringEvents.TABLE_SERIES_EXCEPTIONS + " BEGIN"
+                    + reload + " END");
+        }
+    };
+
+    // 10 -> 11: 之前的 6 -> 7 在支持 R*Tree 的设备上建过 events_rtree 和同步它的触发器，
+    // 改用 (latitude, longitude) 索引后删除它们；没有这些表的数据库只是补建索引
+    static final Migration MIGRATION_10_11 = new Migration(10, 11) {
+        @Override
+        void migrate(SQLiteDatabase db) {
+            db.execSQL("DROP TRIGGER IF EXISTS events_rtree_after_insert");
+            db.execSQL("DROP TRIGGER IF EXISTS events_rtree_after_update");
+            db.execSQL("DROP TRIGGER IF EXISTS events_rtree_after_delete");
+            db.execSQL("DROP TABLE IF EXISTS events_rtree");
+            db.execSQL(CREATE_LOCATION_INDEX);
+        }
+    };
+
+    static final Migration[] ALL = {
+            MIGRATION_2_3,
+            MIGRATION_3_4,
+            MIGRATION_4_5,
+            MIGRATION_5_6,
+            MIGRATION_6_7,
+            MIGRATION_7_8,
+            MIGRATION_8_9,
+            MIGRATION_9_10,
+            MIGRATION_10_11
+    };
+
+    private Migrations() {
+    }
+
+    // 从 fromVersion 逐步升级到 toVersion，找不到完整的升级路径时返回 false
+    static boolean migrate(SQLiteDatabase db, int fromVersion, int toVersion) {
+        int version = fromVersion;
+        while (version < toVersion) {
+            Migration next = null;
+            for (Migration migration : ALL) {
+                if (migration.startVersion == version) {
+                    next = migration;
+                    break;
+                }
+            }
+            if (next == null) {
+                Log.e("DatabaseHelper", "缺少升级步骤: " + version + " -> " + toVersion);
+                return false;
+            }
+            Log.d("DatabaseHelper", "执行数据库升级步骤: " + next.startVersion + " -> " + next.endVersion);
+            next.migrate(db);
+            version = next.endVersion;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.eventapp.database;
+
+// 按距离查找活动：(latitude, longitude) 索引先用外接矩形筛出候选，再按球面距离精确过滤和排序
+final class NearbySearch {
+    private static final double EARTH_RADIUS_KM = 6371.0088;
+
+    private NearbySearch() {
+    }
+
+    // 覆盖以 (latitude, longitude) 为中心、radiusKm 为半径的圆的矩形，每个为 {minLat, maxLat, minLng, maxLng}
+    // 圆跨过 180° 经线时拆成两个矩形，包含极点时经度取全部范围
+    static double[][] boundingBoxes(double latitude, double longitude, double radiusKm) {
+        double angularRadius = radiusKm / EARTH_RADIUS_KM;
+        double deltaLat = Math.toDegrees(angularRadius);
+        double minLat = latitude - deltaLat;
+        double maxLat = latitude + deltaLat;
+        if (minLat <= -90 || maxLat >= 90 || angularRadius >= Math.PI / 2) {
+            return new double[][]{{Math.max(minLat, -90), Math.min(maxLat, 90), -180, 180}};
+        }
+
+        double deltaLng = Math.toDegrees(Math.asin(Math.sin(angularRadius) / Math.cos(Math.toRadians(latitude))));
+        double minLng = longitude - deltaLng;
+        double maxLng = longitude + deltaLng;
+        if (minLng < -180) {
+            return new double[][]{{minLat, maxLat, minLng + 360, 180}, {minLat, maxLat, -180, maxLng}};
+        }
+        if (maxLng > 180) {
+            return new double[][]{{minLat, maxLat, minLng, 180}, {minLat, maxLat, -180, maxLng - 360}};
+        }
+        return new double[][]{{minLat, maxLat, minLng, maxLng}};
+    }
+
+    // 两点之间的球面距离（haversine 公式），单位千米
+    static double distanceKm(double lat1, double lng1, double lat2, double lng2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLng = Math.toRadians(lng2 - lng1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(dLng / 2) * Math.sin(dLng / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+}
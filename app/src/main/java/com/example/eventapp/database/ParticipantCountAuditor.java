@@ -0,0 +1,256 @@
+package com.example.eventapp.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_CURRENT_PARTICIPANTS;
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_EVENT_ID;
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_ID;
+import static com.example.eventapp.database.DatabaseHelper.TABLE_EVENTS;
+import static com.example.eventapp.database.DatabaseHelper.TABLE_REGISTRATIONS;
+
+// 核对 events.current_participants 与报名表的实际行数，并修复不一致的计数
+// 核对只读，用一条分组聚合查询一批活动，不占用写锁；
+// 修复按小批进行，每批一个短事务，在事务里按报名表重新计数，期间发生的报名也不会被覆盖
+// 同一时间只进行一次核对：后台核对在专用线程上执行，上一次还没结束时新的请求直接跳过
+public final class ParticipantCountAuditor {
+    // 全量核对时每次聚合的活动数
+    private static final int SCAN_CHUNK_SIZE = 500;
+    // 每个修复事务处理的活动数
+    private static final int REPAIR_BATCH_SIZE = 50;
+
+    // 计数不一致的活动
+    public static final class Mismatch {
+        private final long eventId;
+        private final int storedCount;
+        private final int actualCount;
+
+        Mismatch(long eventId, int storedCount, int actualCount) {
+            this.eventId = eventId;
+            this.storedCount = storedCount;
+            this.actualCount = actualCount;
+        }
+
+        public long getEventId() {
+            return eventId;
+        }
+
+        public int getStoredCount() {
+            return storedCount;
+        }
+
+        public int getActualCount() {
+            return actualCount;
+        }
+    }
+
+    public static final class AuditReport {
+        private final int checkedCount;
+        private final List<Mismatch> mismatches;
+        private final int repairedCount;
+
+        AuditReport(int checkedCount, List<Mismatch> mismatches, int repairedCount) {
+            this.checkedCount = checkedCount;
+            this.mismatches = Collections.unmodifiableList(mismatches);
+            this.repairedCount = repairedCount;
+        }
+
+        public int getCheckedCount() {
+            return checkedCount;
+        }
+
+        public List<Mismatch> getMismatches() {
+            return mismatches;
+        }
+
+        public int getRepairedCount() {
+            return repairedCount;
+        }
+    }
+
+    private final DatabaseHelper dbHelper;
+    // 最近报名人数发生过变化的活动，增量核对时只检查这些
+    private final Set<Long> touchedEvents = ConcurrentHashMap.newKeySet();
+    // 后台核对的线程和是否有核对正在进行
+    private final Executor auditExecutor = Executors.newSingleThreadExecutor();
+    private final AtomicBoolean auditRunning = new AtomicBoolean(false);
+
+    ParticipantCountAuditor(DatabaseHelper dbHelper) {
+        this.dbHelper = dbHelper;
+    }
+
+    void markTouched(long eventId) {
+        touchedEvents.add(eventId);
+    }
+
+    // 在后台线程核对并修复，full 为 true 时全量核对；已有核对在进行时不再开始，返回 false
+    public boolean auditInBackground(boolean full) {
+        if (!auditRunning.compareAndSet(false, true)) {
+            return false;
+        }
+        auditExecutor.execute(() -> {
+            try {
+                if (full) {
+                    auditAll(true);
+                } else {
+                    auditRecent(true);
+                }
+            } finally {
+                auditRunning.set(false);
+            }
+        });
+        return true;
+    }
+
+    // 增量核对：只检查上次核对之后报名人数变化过的活动
+    public synchronized AuditReport auditRecent(boolean repair) {
+        // 逐个取出，取出之后再被标记的活动留在集合里，下次核对
+        List<Long> ids = new ArrayList<>();
+        for (Iterator<Long> it = touchedEvents.iterator(); it.hasNext(); ) {
+            ids.add(it.next());
+            it.remove();
+        }
+        List<Mismatch> mismatches = new ArrayList<>();
+        int checked = 0;
+        try {
+            SQLiteDatabase db = dbHelper.getReadableDatabase();
+            for (int start = 0; start < ids.size(); start += SCAN_CHUNK_SIZE) {
+                List<Long> chunk = ids.subList(start, Math.min(ids.size(), start + SCAN_CHUNK_SIZE));
+                StringBuilder where = new StringBuilder("e.").append(COLUMN_ID).append(" IN (");
+                long[] args = new long[chunk.size()];
+                for (int i = 0; i < args.length; i++) {
+                    where.append(i == 0 ? "?" : ", ?");
+                    args[i] = chunk.get(i);
+                }
+                where.append(")");
+                findMismatches(db, where.toString(), args, mismatches);
+                checked += chunk.size();
+            }
+        } catch (Exception e) {
+            Log.e("DatabaseHelper", "核对报名人数时出错: " + e.getMessage());
+            // 没有核对完的活动留到下次
+            touchedEvents.addAll(ids);
+        }
+        return finish(checked, mismatches, repair);
+    }
+
+    // 全量核对：按 id 分段扫描所有活动，每段一条聚合查询
+    public synchronized AuditReport auditAll(boolean repair) {
+        List<Mismatch> mismatches = new ArrayList<>();
+        int checked = 0;
+        try {
+            SQLiteDatabase db = dbHelper.getReadableDatabase();
+            long lastId = Long.MIN_VALUE;
+            while (true) {
+                long upperId = chunkUpperBound(db, lastId);
+                if (upperId == Long.MIN_VALUE) {
+                    break;
+                }
+                checked += findMismatches(db, "e." + COLUMN_ID + " > ? AND e." + COLUMN_ID + " <= ?",
+                        new long[]{lastId, upperId}, mismatches);
+                lastId = upperId;
+            }
+        } catch (Exception e) {
+            Log.e("DatabaseHelper", "全量核对报名人数时出错: " + e.getMessage());
+        }
+        return finish(checked, mismatches, repair);
+    }
+
+    // 下一段的最大 id，已扫描完时返回 Long.MIN_VALUE
+    private long chunkUpperBound(SQLiteDatabase db, long lastId) {
+        Cursor cursor = EventStatements.query(db, "SELECT MAX(" + COLUMN_ID + ") FROM (SELECT " + COLUMN_ID
+                + " FROM " + TABLE_EVENTS + " WHERE " + COLUMN_ID + " > ?"
+                + " ORDER BY " + COLUMN_ID + " LIMIT " + SCAN_CHUNK_SIZE + ")", TABLE_EVENTS, lastId);
+        try {
+            return cursor.moveToFirst() && !cursor.isNull(0) ? cursor.getLong(0) : Long.MIN_VALUE;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    // 对满足 where 条件的活动做一次分组计数，把不一致的加入 mismatches，返回检查的活动数
+    private int findMismatches(SQLiteDatabase db, String where, long[] args, List<Mismatch> mismatches) {
+        String sql = "SELECT e." + COLUMN_ID + ", e." + COLUMN_CURRENT_PARTICIPANTS
+                + ", COUNT(r." + COLUMN_EVENT_ID + ")"
+                + " FROM " + TABLE_EVENTS + " e"
+                + " LEFT JOIN " + TABLE_REGISTRATIONS + " r ON r." + COLUMN_EVENT_ID + " = e." + COLUMN_ID
+                + " WHERE " + where
+                + " GROUP BY e." + COLUMN_ID;
+        int checked = 0;
+        Cursor cursor = EventStatements.query(db, sql, TABLE_EVENTS, args);
+        try {
+            while (cursor.moveToNext()) {
+                checked++;
+                int stored = cursor.getInt(1);
+                int actual = cursor.getInt(2);
+                if (cursor.isNull(1) || stored != actual) {
+                    mismatches.add(new Mismatch(cursor.getLong(0), stored, actual));
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        return checked;
+    }
+
+    private AuditReport finish(int checked, List<Mismatch> mismatches, boolean repair) {
+        for (Mismatch mismatch : mismatches) {
+            Log.w("DatabaseHelper", "报名人数不一致: eventId=" + mismatch.getEventId()
+                    + ", 记录=" + mismatch.getStoredCount() + ", 实际=" + mismatch.getActualCount());
+        }
+        int repaired = repair && !mismatches.isEmpty() ? repair(mismatches) : 0;
+        Log.d("DatabaseHelper", "报名人数核对完成: 检查 " + checked + " 个活动, 不一致 "
+                + mismatches.size() + " 个, 修复 " + repaired + " 个");
+        return new AuditReport(checked, mismatches, repaired);
+    }
+
+    private int repair(List<Mismatch> mismatches) {
+        int repaired = 0;
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        for (int start = 0; start < mismatches.size(); start += REPAIR_BATCH_SIZE) {
+            List<Mismatch> batch = mismatches.subList(start, Math.min(mismatches.size(), start + REPAIR_BATCH_SIZE));
+            StringBuilder sql = new StringBuilder("UPDATE ").append(TABLE_EVENTS)
+                    .append(" SET ").append(COLUMN_CURRENT_PARTICIPANTS).append(" = (SELECT COUNT(*) FROM ")
+                    .append(TABLE_REGISTRATIONS).append(" WHERE ").append(COLUMN_EVENT_ID).append(" = ")
+                    .append(TABLE_EVENTS).append(".").append(COLUMN_ID).append(")")
+                    .append(" WHERE ").append(COLUMN_ID).append(" IN (");
+            Object[] args = new Object[batch.size()];
+            for (int i = 0; i < args.length; i++) {
+                sql.append(i == 0 ? "?" : ", ?");
+                args[i] = batch.get(i).getEventId();
+            }
+            sql.append(")");
+
+            db.beginTransactionNonExclusive();
+            try {
+                db.execSQL(sql.toString(), args);
+                // 计数改小后空出的名额交给候补名单
+                for (Mismatch mismatch : batch) {
+                    dbHelper.promoteWaitlist(mismatch.getEventId());
+                }
+                db.setTransactionSuccessful();
+                repaired += batch.size();
+            } catch (Exception e) {
+                Log.e("DatabaseHelper", "修复报名人数时出错: " + e.getMessage());
+            } finally {
+                db.endTransaction();
+            }
+        }
+        if (repaired > 0) {
+            // 修复时可能有候补转正
+            dbHelper.notifyRegistrationsChanged();
+        }
+        return repaired;
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.eventapp.database;
+
+import com.example.eventapp.model.Event;
+import com.example.eventapp.model.EventSeries;
+
+import java.util.Calendar;
+
+import static com.example.eventapp.database.DatabaseHelper.DESCRIPTION_EXCERPT_LENGTH;
+
+// 周期活动的时间计算：第几次的开始时间、某个时间之后的第一次，以及生成的活动的 id
+// 每次的开始时间都从第一次直接推算，不逐次累加，所以任意窗口的计算量只和窗口内的次数有关
+final class Recurrence {
+    // 生成的活动 id：低 20 位是第几次，更高的位是系列 id，整体取负，和数据库里的正数 id 不会冲突
+    private static final int INDEX_BITS = 20;
+    // 每个系列最多的次数，每天一次也够用两千多年
+    static final int MAX_OCCURRENCES = 1 << INDEX_BITS;
+
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+    // 估算序号时使用的平均月长
+    private static final double AVERAGE_MONTH_MILLIS = 30.436875 * DAY_MILLIS;
+
+    private Recurrence() {
+    }
+
+    static long occurrenceId(long seriesId, int index) {
+        return -((seriesId << INDEX_BITS) | index);
+    }
+
+    static boolean isOccurrenceId(long id) {
+        return id < 0;
+    }
+
+    static long seriesIdOf(long occurrenceId) {
+        return (-occurrenceId) >>> INDEX_BITS;
+    }
+
+    static int indexOf(long occurrenceId) {
+        return (int) ((-occurrenceId) & (MAX_OCCURRENCES - 1));
+    }
+
+    // 第 index 次的开始时间，按本地日历推算，夏令时前后保持同样的钟点；
+    // 按月重复时，当月没有对应的日期（如 31 日）就落在当月最后一天
+    static long startOf(EventSeries series, int index) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(series.getStartTime());
+        int steps = index * series.getInterval();
+        switch (series.getFrequency()) {
+            case DAILY:
+                calendar.add(Calendar.DAY_OF_MONTH, steps);
+                break;
+            case WEEKLY:
+                calendar.add(Calendar.DAY_OF_MONTH, steps * 7);
+                break;
+            default:
+                calendar.add(Calendar.MONTH, steps);
+                break;
+        }
+        return calendar.getTimeInMillis();
+    }
+
+    // 开始时间不早于 time 的第一次的序号，可能超过 lastIndex
+    static int firstIndexAtOrAfter(EventSeries series, long time) {
+        if (time <= series.getStartTime()) {
+            return 0;
+        }
+        // 先按平均周期估算，再向前后微调，夏令时和月份长短只会带来很小的偏差
+        double period = periodMillis(series);
+        int index = (int) Math.min(MAX_OCCURRENCES, (time - series.getStartTime()) / period);
+        while (index > 0 && startOf(series, index - 1) >= time) {
+            index--;
+        }
+        while (index < MAX_OCCURRENCES && startOf(series, index) < time) {
+            index++;
+        }
+        return index;
+    }
+
+    // 最后一次的序号，同时受次数和截止日期限制；一次都没有时返回 -1
+    static int lastIndex(EventSeries series) {
+        int last = MAX_OCCURRENCES - 1;
+        if (series.getOccurrenceCount() != null) {
+            last = Math.min(last, series.getOccurrenceCount() - 1);
+        }
+        if (series.getUntil() != null && series.getUntil() < Long.MAX_VALUE) {
+            last = Math.min(last, firstIndexAtOrAfter(series, series.getUntil() + 1) - 1);
+        }
+        return last;
+    }
+
+    // 最后一次的开始时间，不限次数和日期时返回 null
+    static Long lastStart(EventSeries series) {
+        if (series.getOccurrenceCount() == null && series.getUntil() == null) {
+            return null;
+        }
+        int last = lastIndex(series);
+        return last >= 0 ? startOf(series, last) : series.getStartTime() - 1;
+    }
+
+    // 按系列生成第 index 次活动，报名人数为 0
+    static Event occurrence(EventSeries series, int index) {
+        long start = startOf(series, index);
+        Event event = new Event();
+        event.setId(occurrenceId(series.getId(), index));
+        event.setSeriesId(series.getId());
+        event.setOccurrenceIndex(index);
+        event.setTitle(series.getTitle());
+        event.setDescription(series.getDescription());
+        String description = series.getDescription();
+        if (description != null) {
+            event.setDescriptionExcerpt(description.length() > DESCRIPTION_EXCERPT_LENGTH
+                    ? description.substring(0, DESCRIPTION_EXCERPT_LENGTH) : description);
+        }
+        event.setLocation(series.getLocation());
+        event.setLatitude(series.getLatitude());
+        event.setLongitude(series.getLongitude());
+        event.setOrganizer(series.getOrganizer());
+        event.setMaxParticipants(series.getMaxParticipants());
+        event.setCurrentParticipants(0);
+        event.setStartTime(start);
+        event.setEndTime(start + (series.getEndTime() - series.getStartTime()));
+        return event;
+    }
+
+    private static double periodMillis(EventSeries series) {
+        switch (series.getFrequency()) {
+            case DAILY:
+                return (double) DAY_MILLIS * series.getInterval();
+            case WEEKLY:
+                return (double) DAY_MILLIS * 7 * series.getInterval();
+            default:
+                return AVERAGE_MONTH_MILLIS * series.getInterval();
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package com.example.eventapp.database;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.CancellationSignal;
+
+import com.example.eventapp.model.Event;
+import com.example.eventapp.model.EventSeries;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_CURRENT_PARTICIPANTS;
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_DESCRIPTION;
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_END_TIME;
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_ID;
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_LATITUDE;
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_LOCATION;
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_LONGITUDE;
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_MAX_PARTICIPANTS;
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_OCCURRENCE_INDEX;
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_ORGANIZER;
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_SERIES_ID;
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_START_TIME;
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_TITLE;
+import static com.example.eventapp.database.DatabaseHelper.TABLE_EVENTS;
+
+// 周期活动的存储：每个系列在 event_series 表里只有一行，每次的活动在查询时按时间窗口生成
+// 只有被报名或单独修改过的那一次才写入 events 表（带 series_id 和 occurrence_index），
+// 被删除的那一次记在 series_exceptions 表里，生成时跳过这两类
+final class RecurringEvents {
+    static final String TABLE_EVENT_SERIES = "event_series";
+    static final String TABLE_SERIES_EXCEPTIONS = "series_exceptions";
+    static final String COLUMN_FREQUENCY = "frequency";
+    static final String COLUMN_REPEAT_INTERVAL = "repeat_interval";
+    static final String COLUMN_OCCURRENCE_COUNT = "occurrence_count";
+    static final String COLUMN_UNTIL_TIME = "until_time";
+    // 最后一次的开始时间，不限次数和日期时为 NULL；按窗口查找系列时不需要逐个推算
+    static final String COLUMN_LAST_START = "last_start";
+
+    private static final String SQL_SERIES_BY_ID = "SELECT * FROM " + TABLE_EVENT_SERIES
+            + " WHERE " + COLUMN_ID + " = ?";
+    private static final String SQL_STORED_OCCURRENCE = "SELECT " + COLUMN_ID + " FROM " + TABLE_EVENTS
+            + " WHERE " + COLUMN_SERIES_ID + " = ? AND " + COLUMN_OCCURRENCE_INDEX + " = ?";
+    private static final String SQL_IS_EXCEPTION = "SELECT 1 FROM " + TABLE_SERIES_EXCEPTIONS
+            + " WHERE " + COLUMN_SERIES_ID + " = ? AND " + COLUMN_OCCURRENCE_INDEX + " = ?";
+
+    private RecurringEvents() {
+    }
+
+    static long insertSeries(SQLiteDatabase db, EventSeries series) {
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_TITLE, series.getTitle());
+        values.put(COLUMN_DESCRIPTION, series.getDescription());
+        values.put(COLUMN_LOCATION, series.getLocation());
+        values.put(COLUMN_ORGANIZER, series.getOrganizer());
+        values.put(COLUMN_MAX_PARTICIPANTS, series.getMaxParticipants());
+        values.put(COLUMN_START_TIME, series.getStartTime());
+        values.put(COLUMN_END_TIME, series.getEndTime());
+        values.put(COLUMN_FREQUENCY, series.getFrequency().name());
+        values.put(COLUMN_REPEAT_INTERVAL, series.getInterval());
+        values.put(COLUMN_OCCURRENCE_COUNT, series.getOccurrenceCount());
+        values.put(COLUMN_UNTIL_TIME, series.getUntil());
+        values.put(COLUMN_LAST_START, Recurrence.lastStart(series));
+        values.put(COLUMN_LATITUDE, series.getLatitude());
+        values.put(COLUMN_LONGITUDE, series.getLongitude());
+        return db.insert(TABLE_EVENT_SERIES, null, values);
+    }
+
+    // 有活动在 [from, to] 内开始的系列；keyword 不为空时只保留标题、描述或地点包含它的系列
+    // 由 start_time 索引限定范围，查询量只和窗口附近的系列数有关
+    static List<EventSeries> seriesInWindow(SQLiteDatabase db, long from, long to, String keyword,
+                                            CancellationSignal cancellationSignal) {
+        StringBuilder queryBuilder = new StringBuilder("SELECT * FROM ").append(TABLE_EVENT_SERIES)
+                .append(" WHERE ").append(COLUMN_START_TIME).append(" <= ?")
+                .append(" AND (").append(COLUMN_LAST_START).append(" IS NULL OR ")
+                .append(COLUMN_LAST_START).append(" >= ?)");
+        List<String> args = new ArrayList<>();
+        args.add(String.valueOf(to));
+        args.add(String.valueOf(from));
+        if (keyword != null) {
+            String pattern = "%" + keyword.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+            queryBuilder.append(" AND (");
+            String[] columns = {COLUMN_TITLE, COLUMN_DESCRIPTION, COLUMN_LOCATION};
+            for (int i = 0; i < columns.length; i++) {
+                queryBuilder.append(i == 0 ? "" : " OR ").append(columns[i]).append(" LIKE ? ESCAPE '\\'");
+                args.add(pattern);
+            }
+            queryBuilder.append(")");
+        }
+
+        List<EventSeries> result = new ArrayList<>();
+        Cursor cursor = null;
+        try {
+            cursor = db.rawQuery(queryBuilder.toString(), args.toArray(new String[0]), cancellationSignal);
+            while (cursor.moveToNext()) {
+                result.add(mapSeries(cursor));
+            }
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+        return result;
+    }
+
+    // 生成各系列中开始时间在 [from, to] 内、结束时间在 [minEnd, maxEnd) 内的活动，按 (开始时间, id) 排在
+    // (afterStartTime, afterId) 之后；每个系列最多 perSeriesLimit 个，已单独保存或已删除的那一次跳过
+    static List<Event> expand(SQLiteDatabase db, List<EventSeries> seriesList, long from, long to,
+                              long minEnd, long maxEnd, long afterStartTime, long afterId, int perSeriesLimit) {
+        List<Event> result = new ArrayList<>();
+        for (EventSeries series : seriesList) {
+            long duration = series.getEndTime() - series.getStartTime();
+            long low = Math.max(Math.max(from, afterStartTime),
+                    minEnd == Long.MIN_VALUE ? Long.MIN_VALUE : minEnd - duration);
+            long high = Math.min(to, maxEnd == Long.MAX_VALUE ? Long.MAX_VALUE : maxEnd - duration - 1);
+            if (low > high) {
+                continue;
+            }
+            int first = Recurrence.firstIndexAtOrAfter(series, low);
+            int last = Recurrence.lastIndex(series);
+            if (high < Long.MAX_VALUE) {
+                last = Math.min(last, Recurrence.firstIndexAtOrAfter(series, high + 1) - 1);
+            }
+            if (first > last) {
+                continue;
+            }
+
+            Set<Integer> skipped = skippedIndexes(db, series.getId(), first, last);
+            int added = 0;
+            for (int index = first; index <= last && added < perSeriesLimit; index++) {
+                if (skipped.contains(index)) {
+                    continue;
+                }
+                Event event = Recurrence.occurrence(series, index);
+                if (event.getStartTime() == afterStartTime && event.getId() <= afterId) {
+                    continue;
+                }
+                result.add(event);
+                added++;
+            }
+        }
+        return result;
+    }
+
+    // 生成的某一次活动；系列不存在、超出范围或这一次已删除时返回 null，不检查是否已单独保存
+    static Event occurrence(SQLiteDatabase db, long occurrenceId) {
+        EventSeries series = getSeries(db, Recurrence.seriesIdOf(occurrenceId));
+        int index = Recurrence.indexOf(occurrenceId);
+        if (series == null || index > Recurrence.lastIndex(series) || isException(db, series.getId(), index)) {
+            return null;
+        }
+        return Recurrence.occurrence(series, index);
+    }
+
+    // 这一次已经单独保存时返回它在 events 表中的 id，否则返回 -1
+    static long storedId(SQLiteDatabase db, long occurrenceId) {
+        Cursor cursor = EventStatements.query(db, SQL_STORED_OCCURRENCE, TABLE_EVENTS,
+                Recurrence.seriesIdOf(occurrenceId), Recurrence.indexOf(occurrenceId));
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : -1;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    // 把生成的一次活动写入 events 表，已写入过时直接返回已有的行；返回保存后的活动，这一次不存在时返回 null
+    // 需要在调用方的事务里执行，报名失败回滚时这一行也一并撤销
+    static Event materialize(SQLiteDatabase db, long occurrenceId) {
+        Event event = occurrence(db, occurrenceId);
+        if (event == null) {
+            return null;
+        }
+        long storedId = storedId(db, occurrenceId);
+        if (storedId == -1) {
+            ContentValues values = new ContentValues();
+            values.put(COLUMN_TITLE, event.getTitle());
+            values.put(COLUMN_DESCRIPTION, event.getDescription());
+            values.put(COLUMN_LOCATION, event.getLocation());
+            values.put(COLUMN_START_TIME, event.getStartTime());
+            values.put(COLUMN_END_TIME, event.getEndTime());
+            values.put(COLUMN_ORGANIZER, event.getOrganizer());
+            values.put(COLUMN_MAX_PARTICIPANTS, event.getMaxParticipants());
+            values.put(COLUMN_CURRENT_PARTICIPANTS, 0);
+            values.put(COLUMN_LATITUDE, event.getLatitude());
+            values.put(COLUMN_LONGITUDE, event.getLongitude());
+            values.put(COLUMN_SERIES_ID, event.getSeriesId());
+            values.put(COLUMN_OCCURRENCE_INDEX, event.getOccurrenceIndex());
+            storedId = db.insertOrThrow(TABLE_EVENTS, null, values);
+        }
+        event.setId(storedId);
+        return event;
+    }
+
+    // 记录删除了系列中的某一次，之后不再生成
+    static void addException(SQLiteDatabase db, long seriesId, int index) {
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_SERIES_ID, seriesId);
+        values.put(COLUMN_OCCURRENCE_INDEX, index);
+        db.insertWithOnConflict(TABLE_SERIES_EXCEPTIONS, null, values, SQLiteDatabase.CONFLICT_IGNORE);
+    }
+
+    // 要删除的活动是某个系列中单独保存的那一次时，记为例外；普通活动不做任何事
+    static void addStoredException(SQLiteDatabase db, long eventId) {
+        db.execSQL("INSERT OR IGNORE INTO " + TABLE_SERIES_EXCEPTIONS + "(" + COLUMN_SERIES_ID + ", "
+                + COLUMN_OCCURRENCE_INDEX + ") SELECT " + COLUMN_SERIES_ID + ", " + COLUMN_OCCURRENCE_INDEX
+                + " FROM " + TABLE_EVENTS + " WHERE " + COLUMN_ID + " = ? AND " + COLUMN_SERIES_ID + " IS NOT NULL",
+                new Object[]{eventId});
+    }
+
+    private static EventSeries getSeries(SQLiteDatabase db, long seriesId) {
+        Cursor cursor = EventStatements.query(db, SQL_SERIES_BY_ID, TABLE_EVENT_SERIES, seriesId);
+        try {
+            return cursor.moveToFirst() ? mapSeries(cursor) : null;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static boolean isException(SQLiteDatabase db, long seriesId, int index) {
+        Cursor cursor = EventStatements.query(db, SQL_IS_EXCEPTION, TABLE_SERIES_EXCEPTIONS, seriesId, index);
+        try {
+            return cursor.moveToFirst();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    // [first, last] 内已单独保存或已删除的序号，两张表都按 (series_id, occurrence_index) 建了索引
+    private static Set<Integer> skippedIndexes(SQLiteDatabase db, long seriesId, int first, int last) {
+        Set<Integer> result = new HashSet<>();
+        String sql = "SELECT " + COLUMN_OCCURRENCE_INDEX + " FROM " + TABLE_EVENTS
+                + " WHERE " + COLUMN_SERIES_ID + " = ? AND " + COLUMN_OCCURRENCE_INDEX + " BETWEEN ? AND ?"
+                + " UNION ALL SELECT " + COLUMN_OCCURRENCE_INDEX + " FROM " + TABLE_SERIES_EXCEPTIONS
+                + " WHERE " + COLUMN_SERIES_ID + " = ? AND " + COLUMN_OCCURRENCE_INDEX + " BETWEEN ? AND ?";
+        Cursor cursor = EventStatements.query(db, sql, TABLE_EVENTS, seriesId, first, last, seriesId, first, last);
+        try {
+            while (cursor.moveToNext()) {
+                result.add(cursor.getInt(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return result;
+    }
+
+    private static EventSeries mapSeries(Cursor cursor) {
+        EventSeries series = new EventSeries();
+        series.setId(cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_ID)));
+        series.setTitle(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_TITLE)));
+        series.setDescription(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_DESCRIPTION)));
+        series.setLocation(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_LOCATION)));
+        series.setOrganizer(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_ORGANIZER)));
+        series.setMaxParticipants(cursor.getInt(cursor.getColumnIndexOrThrow(COLUMN_MAX_PARTICIPANTS)));
+        series.setStartTime(cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_START_TIME)));
+        series.setEndTime(cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_END_TIME)));
+        series.setFrequency(EventSeries.Frequency.valueOf(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_FREQUENCY))));
+        series.setInterval(cursor.getInt(cursor.getColumnIndexOrThrow(COLUMN_REPEAT_INTERVAL)));
+        int countIndex = cursor.getColumnIndexOrThrow(COLUMN_OCCURRENCE_COUNT);
+        series.setOccurrenceCount(cursor.isNull(countIndex) ? null : cursor.getInt(countIndex));
+        int untilIndex = cursor.getColumnIndexOrThrow(COLUMN_UNTIL_TIME);
+        series.setUntil(cursor.isNull(untilIndex) ? null : cursor.getLong(untilIndex));
+        int latitudeIndex = cursor.getColumnIndexOrThrow(COLUMN_LATITUDE);
+        int longitudeIndex = cursor.getColumnIndexOrThrow(COLUMN_LONGITUDE);
+        if (!cursor.isNull(latitudeIndex) && !cursor.isNull(longitudeIndex)) {
+            series.setLatitude(cursor.getDouble(latitudeIndex));
+            series.setLongitude(cursor.getDouble(longitudeIndex));
+        }
+        return series;
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.eventapp.database;
+
+// 报名（抢占名额）的结果
+public enum RegistrationResult {
+    // 成功占到名额并写入报名记录
+    CLAIMED,
+    // 活动已满
+    FULL,
+    // 活动已满，已加入候补名单
+    WAITLISTED,
+    // 用户已经报名过该活动
+    ALREADY_REGISTERED,
+    // 活动不存在
+    EVENT_NOT_FOUND,
+    // 数据库出错
+    FAILED
+}
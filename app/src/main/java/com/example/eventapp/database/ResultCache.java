@@ -0,0 +1,77 @@
+package com.example.eventapp.database;
+
+import android.content.ComponentCallbacks2;
+import android.content.res.Configuration;
+import android.util.LruCache;
+
+import com.example.eventapp.model.Event;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+// 列表查询结果的 LRU 缓存，键由数据版本和规范化后的查询条件组成
+// 任何写操作都会提升数据版本并清空缓存；查询开始前生成的键带着旧版本，
+// 即使查询在写操作之后才完成，放进来的结果也不会再被命中
+final class ResultCache implements ComponentCallbacks2 {
+    private static final int MAX_ENTRIES = 24;
+    // 按时间和状态筛选的结果会随时间变化，即使数据没变也只在同一分钟内复用
+    private static final long TIME_BUCKET_MILLIS = 60 * 1000;
+    private static final char SEPARATOR = '\u001F';
+
+    private final AtomicLong version = new AtomicLong();
+    private final LruCache<String, List<Event>> entries = new LruCache<>(MAX_ENTRIES);
+
+    long getVersion() {
+        return version.get();
+    }
+
+    // 生成缓存键，timeDependent 为 true 时结果只在当前这一分钟内有效
+    String key(boolean timeDependent, Object... parts) {
+        StringBuilder key = new StringBuilder().append(version.get());
+        if (timeDependent) {
+            key.append(SEPARATOR).append(System.currentTimeMillis() / TIME_BUCKET_MILLIS);
+        }
+        for (Object part : parts) {
+            key.append(SEPARATOR).append(part);
+        }
+        return key.toString();
+    }
+
+    // 返回副本，调用方可以修改返回的列表；按需加载的列表本身不可修改，直接共用
+    List<Event> get(String key) {
+        List<Event> cached = entries.get(key);
+        if (cached == null || cached instanceof LazyEventList) {
+            return cached;
+        }
+        return new ArrayList<>(cached);
+    }
+
+    void put(String key, List<Event> events) {
+        entries.put(key, events instanceof LazyEventList ? events : new ArrayList<>(events));
+    }
+
+    // 数据发生变化
+    void invalidate() {
+        version.incrementAndGet();
+        entries.evictAll();
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        if (level >= TRIM_MEMORY_BACKGROUND || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+            entries.evictAll();
+        } else {
+            entries.trimToSize(MAX_ENTRIES / 2);
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        entries.evictAll();
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+    }
+}
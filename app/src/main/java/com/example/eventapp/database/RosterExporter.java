@@ -0,0 +1,91 @@
+package com.example.eventapp.database;
+
+import com.example.eventapp.model.Participant;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+// 把活动名单导出为 CSV
+// 名单按报名时间分页读取，每页写完就丢弃，内存占用只和页的大小有关，与报名人数无关
+public final class RosterExporter {
+    // 每写完一页后回调一次，在导出所在的线程上调用
+    public interface ProgressListener {
+        void onProgress(int exportedRows);
+    }
+
+    private static final int PAGE_SIZE = 500;
+    private static final String[] HEADER = {"username", "email", "register_time"};
+
+    private final DatabaseHelper dbHelper;
+    private final SimpleDateFormat dateFormat;
+
+    public RosterExporter(DatabaseHelper dbHelper) {
+        this.dbHelper = dbHelper;
+        // 与导入活动时使用的时间格式相同
+        this.dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm", Locale.getDefault());
+    }
+
+    // 写出表头和全部报名记录，返回导出的行数；读取名单失败时抛出 IOException
+    // writer 由调用方关闭
+    public int exportCsv(long eventId, Writer writer, ProgressListener listener) throws IOException {
+        writeRow(writer, HEADER);
+        int exported = 0;
+        long afterRegisterTime = Long.MIN_VALUE;
+        long afterRegistrationId = 0;
+        while (true) {
+            List<Participant> page = dbHelper.getParticipantsPage(eventId, afterRegisterTime,
+                    afterRegistrationId, PAGE_SIZE);
+            if (page == null) {
+                throw new IOException("读取活动名单失败");
+            }
+            for (Participant participant : page) {
+                writeRow(writer, new String[]{
+                        participant.getUsername(),
+                        participant.getEmail(),
+                        dateFormat.format(new Date(participant.getRegisterTime()))
+                });
+            }
+            exported += page.size();
+            if (listener != null && !page.isEmpty()) {
+                listener.onProgress(exported);
+            }
+            if (page.size() < PAGE_SIZE) {
+                break;
+            }
+            Participant last = page.get(page.size() - 1);
+            afterRegisterTime = last.getRegisterTime();
+            afterRegistrationId = last.getRegistrationId();
+        }
+        writer.flush();
+        return exported;
+    }
+
+    private static void writeRow(Writer writer, String[] fields) throws IOException {
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writer.write(escape(fields[i]));
+        }
+        writer.write("\r\n");
+    }
+
+    // 含逗号、引号或换行的字段加引号，内部的引号写两次；以公式字符开头的字段前加单引号，避免表格软件当作公式执行
+    private static String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (!value.isEmpty() && "=+-@".indexOf(value.charAt(0)) >= 0) {
+            value = "'" + value;
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0
+                && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
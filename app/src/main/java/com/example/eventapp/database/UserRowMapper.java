@@ -0,0 +1,47 @@
+package com.example.eventapp.database;
+
+import android.database.Cursor;
+
+import com.example.eventapp.model.User;
+
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_EMAIL;
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_ID;
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_IS_STAFF;
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_PASSWORD;
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_USERNAME;
+
+// 把 Cursor 的行转换成 User，列位置在创建时解析一次
+final class UserRowMapper {
+    private final int idIndex;
+    private final int usernameIndex;
+    private final int passwordIndex;
+    private final int emailIndex;
+    private final int isStaffIndex;
+
+    UserRowMapper(Cursor cursor) {
+        idIndex = cursor.getColumnIndexOrThrow(COLUMN_ID);
+        usernameIndex = cursor.getColumnIndex(COLUMN_USERNAME);
+        passwordIndex = cursor.getColumnIndex(COLUMN_PASSWORD);
+        emailIndex = cursor.getColumnIndex(COLUMN_EMAIL);
+        isStaffIndex = cursor.getColumnIndex(COLUMN_IS_STAFF);
+    }
+
+    // 读取 Cursor 当前所在的行
+    User map(Cursor cursor) {
+        User user = new User();
+        user.setId(cursor.getLong(idIndex));
+        if (usernameIndex >= 0) {
+            user.setUsername(cursor.getString(usernameIndex));
+        }
+        if (passwordIndex >= 0) {
+            user.setPassword(cursor.getString(passwordIndex));
+        }
+        if (emailIndex >= 0) {
+            user.setEmail(cursor.getString(emailIndex));
+        }
+        if (isStaffIndex >= 0) {
+            user.setStaff(cursor.getInt(isStaffIndex) == 1);
+        }
+        return user;
+    }
+}
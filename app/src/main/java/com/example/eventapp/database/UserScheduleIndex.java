@@ -0,0 +1,155 @@
+package com.example.eventapp.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_END_TIME;
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_EVENT_ID;
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_ID;
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_START_TIME;
+import static com.example.eventapp.database.DatabaseHelper.COLUMN_USER_ID;
+import static com.example.eventapp.database.DatabaseHelper.TABLE_EVENTS;
+import static com.example.eventapp.database.DatabaseHelper.TABLE_REGISTRATIONS;
+
+// 每个用户已报名活动的时间区间索引，报名前检查时间冲突
+// 区间按 (start_time, id) 排序，另存结束时间的前缀最大值：开始时间早于新活动结束的区间是一段前缀，
+// 二分找到这段前缀后，前缀中最晚的结束时间不晚于新活动的开始就没有冲突，判断只需 O(log n)；
+// 有冲突时从后往前列出，剩余前缀的最晚结束时间不再晚于新活动的开始时停止
+// 按用户在第一次检查时从数据库加载，报名变化后丢弃该用户的索引，活动时间或候补转正后全部丢弃
+final class UserScheduleIndex {
+    // 通常只有当前登录的用户，少量缓存足够
+    private static final int MAX_CACHED_USERS = 8;
+
+    private final DatabaseHelper dbHelper;
+    private final Map<Long, Schedule> schedules = new LinkedHashMap<Long, Schedule>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Schedule> eldest) {
+            return size() > MAX_CACHED_USERS;
+        }
+    };
+    // 每次修改都递增，加载期间发生过修改时不保存加载结果
+    private long generation;
+
+    UserScheduleIndex(DatabaseHelper dbHelper) {
+        this.dbHelper = dbHelper;
+    }
+
+    // 用户已报名的活动中与 (start, end) 重叠的活动 id，按开始时间排序，不包括 excludeId 本身；
+    // 首尾相接的两个活动不算冲突。索引加载失败时返回 null
+    long[] conflicts(long userId, long start, long end, long excludeId) {
+        Schedule schedule = load(userId);
+        return schedule != null ? schedule.overlapping(start, end, excludeId) : null;
+    }
+
+    // 用户的报名发生了变化
+    synchronized void invalidate(long userId) {
+        generation++;
+        schedules.remove(userId);
+    }
+
+    // 活动时间变化或候补转正，可能影响任意用户
+    synchronized void invalidateAll() {
+        generation++;
+        schedules.clear();
+    }
+
+    private Schedule load(long userId) {
+        long startGeneration;
+        synchronized (this) {
+            Schedule cached = schedules.get(userId);
+            if (cached != null) {
+                return cached;
+            }
+            startGeneration = generation;
+        }
+
+        Schedule schedule;
+        Cursor cursor = null;
+        try {
+            SQLiteDatabase db = dbHelper.getReadableDatabase();
+            cursor = EventStatements.query(db, "SELECT e." + COLUMN_ID + ", e." + COLUMN_START_TIME
+                    + ", e." + COLUMN_END_TIME + " FROM " + TABLE_REGISTRATIONS + " r"
+                    + " JOIN " + TABLE_EVENTS + " e ON e." + COLUMN_ID + " = r." + COLUMN_EVENT_ID
+                    + " WHERE r." + COLUMN_USER_ID + " = ?"
+                    + " ORDER BY e." + COLUMN_START_TIME + ", e." + COLUMN_ID, TABLE_REGISTRATIONS, userId);
+            int count = cursor.getCount();
+            long[] ids = new long[count];
+            long[] starts = new long[count];
+            long[] ends = new long[count];
+            for (int i = 0; cursor.moveToNext(); i++) {
+                ids[i] = cursor.getLong(0);
+                starts[i] = cursor.getLong(1);
+                ends[i] = cursor.getLong(2);
+            }
+            schedule = new Schedule(ids, starts, ends);
+        } catch (Exception e) {
+            Log.e("DatabaseHelper", "加载用户报名时间索引时出错: " + e.getMessage());
+            return null;
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+
+        synchronized (this) {
+            if (generation == startGeneration) {
+                schedules.put(userId, schedule);
+            }
+        }
+        return schedule;
+    }
+
+    // 加载后不再修改，可以在锁外读取
+    static final class Schedule {
+        final long[] ids;
+        final long[] starts;
+        final long[] ends;
+        // maxEnds[i] 是 ends[0..i] 中的最大值
+        final long[] maxEnds;
+
+        Schedule(long[] ids, long[] starts, long[] ends) {
+            this.ids = ids;
+            this.starts = starts;
+            this.ends = ends;
+            maxEnds = new long[ends.length];
+            for (int i = 0; i < ends.length; i++) {
+                maxEnds[i] = i == 0 ? ends[0] : Math.max(maxEnds[i - 1], ends[i]);
+            }
+        }
+
+        long[] overlapping(long start, long end, long excludeId) {
+            // 开始时间早于 end 的区间是 [0, hi)
+            int lo = 0;
+            int hi = starts.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (starts[mid] < end) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            long[] result = new long[0];
+            int count = 0;
+            for (int i = lo - 1; i >= 0 && maxEnds[i] > start; i--) {
+                if (ends[i] > start && ids[i] != excludeId) {
+                    if (count == result.length) {
+                        result = Arrays.copyOf(result, Math.max(4, count * 2));
+                    }
+                    result[count++] = ids[i];
+                }
+            }
+            // 从后往前收集的，翻转成按开始时间排序
+            long[] ordered = new long[count];
+            for (int i = 0; i < count; i++) {
+                ordered[i] = result[count - 1 - i];
+            }
+            return ordered;
+        }
+    }
+}
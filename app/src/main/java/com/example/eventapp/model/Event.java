@@ -10,6 +10,18 @@ public class Event {
     private String organizer;
     private int maxParticipants;
     private int currentParticipants;
+    // 列表页只读取的描述开头部分，由数据库在写入描述时生成
+    private String descriptionExcerpt;
+    // 活动地点的坐标，可选，没有填写时为 null
+    private Double latitude;
+    private Double longitude;
+    // 当前的时间状态，由 EventStatusTracker 在状态变化时更新，不保存到数据库
+    private EventStatus status;
+    // 全文搜索时命中内容的摘要，不保存到数据库
+    private String snippet;
+    // 属于周期活动时为所属系列的 id 和第几次（从 0 开始），普通活动的 seriesId 为 0
+    private long seriesId;
+    private int occurrenceIndex;
 
     public Event() {
     }
@@ -97,4 +109,65 @@ public class Event {
     public void setCurrentParticipants(int currentParticipants) {
         this.currentParticipants = currentParticipants;
     }
+
+    public String getDescriptionExcerpt() {
+        return descriptionExcerpt;
+    }
+
+    public void setDescriptionExcerpt(String descriptionExcerpt) {
+        this.descriptionExcerpt = descriptionExcerpt;
+    }
+
+    public Double getLatitude() {
+        return latitude;
+    }
+
+    public void setLatitude(Double latitude) {
+        this.latitude = latitude;
+    }
+
+    public Double getLongitude() {
+        return longitude;
+    }
+
+    public void setLongitude(Double longitude) {
+        this.longitude = longitude;
+    }
+
+    // 经纬度都填写了才算有坐标
+    public boolean hasCoordinates() {
+        return latitude != null && longitude != null;
+    }
+
+    public EventStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(EventStatus status) {
+        this.status = status;
+    }
+
+    public String getSnippet() {
+        return snippet;
+    }
+
+    public void setSnippet(String snippet) {
+        this.snippet = snippet;
+    }
+
+    public long getSeriesId() {
+        return seriesId;
+    }
+
+    public void setSeriesId(long seriesId) {
+        this.seriesId = seriesId;
+    }
+
+    public int getOccurrenceIndex() {
+        return occurrenceIndex;
+    }
+
+    public void setOccurrenceIndex(int occurrenceIndex) {
+        this.occurrenceIndex = occurrenceIndex;
+    }
 } 
\ No newline at end of file
@@ -0,0 +1,8 @@
+package com.example.eventapp.model;
+
+// 活动的时间状态，由开始和结束时间决定
+public enum EventStatus {
+    NOT_STARTED,
+    ONGOING,
+    ENDED
+}
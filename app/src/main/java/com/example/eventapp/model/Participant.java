@@ -0,0 +1,54 @@
+package com.example.eventapp.model;
+
+// 活动名单中的一条报名记录
+public class Participant {
+    // 报名记录的 id，与报名时间一起作为分页的键
+    private long registrationId;
+    private long userId;
+    private String username;
+    private String email;
+    private long registerTime;
+
+    public Participant() {
+    }
+
+    public long getRegistrationId() {
+        return registrationId;
+    }
+
+    public void setRegistrationId(long registrationId) {
+        this.registrationId = registrationId;
+    }
+
+    public long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(long userId) {
+        this.userId = userId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public void setEmail(String email) {
+        this.email = email;
+    }
+
+    public long getRegisterTime() {
+        return registerTime;
+    }
+
+    public void setRegisterTime(long registerTime) {
+        this.registerTime = registerTime;
+    }
+}
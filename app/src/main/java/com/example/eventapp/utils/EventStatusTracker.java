@@ -0,0 +1,128 @@
+package com.example.eventapp.utils;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.example.eventapp.model.Event;
+import com.example.eventapp.model.EventStatus;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+// 维护已加载活动的时间状态：记录所有活动中最近的一个开始或结束时刻，只在那一刻唤醒一次，
+// 重新计算状态并通知发生变化的活动；其余时间列表绑定时直接读取 Event 上的状态字段
+// 只能在主线程使用
+public class EventStatusTracker {
+
+    public interface Listener {
+        void onStatusChanged(Event event);
+    }
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Listener listener;
+    // 还会发生状态变化的活动，已结束的活动不再跟踪
+    private final Set<Event> tracked = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Runnable onBoundary = this::onBoundary;
+    private long nextBoundary = Long.MAX_VALUE;
+
+    public EventStatusTracker(Listener listener) {
+        this.listener = listener;
+    }
+
+    // 绑定列表项时调用：已跟踪的活动直接返回保存的状态，否则计算一次并开始跟踪
+    public EventStatus statusOf(Event event) {
+        EventStatus status = event.getStatus();
+        if (status == EventStatus.ENDED || (status != null && tracked.contains(event))) {
+            return status;
+        }
+        return track(event);
+    }
+
+    // 计算活动的当前状态并开始跟踪，返回计算出的状态
+    private EventStatus track(Event event) {
+        long now = System.currentTimeMillis();
+        EventStatus status = statusAt(event, now);
+        event.setStatus(status);
+        long boundary = boundaryAfter(event, now);
+        if (boundary != Long.MAX_VALUE) {
+            tracked.add(event);
+            scheduleIfEarlier(boundary, now);
+        }
+        return status;
+    }
+
+    // 列表整体替换或页面销毁时调用，取消等待中的唤醒
+    public void clear() {
+        tracked.clear();
+        handler.removeCallbacks(onBoundary);
+        nextBoundary = Long.MAX_VALUE;
+    }
+
+    // 页面重新可见时调用：Handler 的延时按开机后的非休眠时间计算，设备深度休眠期间不走，
+    // 预定的唤醒会晚整个休眠时长，所以按当前时间立即重新计算一次并重新安排
+    public void recheck() {
+        handler.removeCallbacks(onBoundary);
+        onBoundary();
+    }
+
+    private void onBoundary() {
+        long now = System.currentTimeMillis();
+        long next = Long.MAX_VALUE;
+        // 先收集再通知，监听器里会重新绑定列表项
+        List<Event> changed = new ArrayList<>();
+        Iterator<Event> iterator = tracked.iterator();
+        while (iterator.hasNext()) {
+            Event event = iterator.next();
+            EventStatus status = statusAt(event, now);
+            if (status != event.getStatus()) {
+                event.setStatus(status);
+                changed.add(event);
+            }
+            long boundary = boundaryAfter(event, now);
+            if (boundary == Long.MAX_VALUE) {
+                iterator.remove();
+            } else {
+                next = Math.min(next, boundary);
+            }
+        }
+        nextBoundary = Long.MAX_VALUE;
+        scheduleIfEarlier(next, now);
+        for (Event event : changed) {
+            listener.onStatusChanged(event);
+        }
+    }
+
+    private void scheduleIfEarlier(long boundary, long now) {
+        if (boundary >= nextBoundary) {
+            return;
+        }
+        handler.removeCallbacks(onBoundary);
+        nextBoundary = boundary;
+        if (boundary != Long.MAX_VALUE) {
+            handler.postDelayed(onBoundary, Math.max(0, boundary - now));
+        }
+    }
+
+    public static EventStatus statusAt(Event event, long now) {
+        if (now < event.getStartTime()) {
+            return EventStatus.NOT_STARTED;
+        } else if (now <= event.getEndTime()) {
+            return EventStatus.ONGOING;
+        }
+        return EventStatus.ENDED;
+    }
+
+    // 下一次状态变化的时刻，已结束的活动返回 Long.MAX_VALUE
+    private static long boundaryAfter(Event event, long now) {
+        if (now < event.getStartTime()) {
+            return event.getStartTime();
+        } else if (now <= event.getEndTime()) {
+            return event.getEndTime() + 1;
+        }
+        return Long.MAX_VALUE;
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.eventapp.utils;
+
+import android.text.TextUtils;
+
+// 活动字段的校验规则，创建活动页面和批量导入共用同一套规则
+public class EventValidator {
+
+    // 校验不通过的字段及提示信息，按检查顺序排列
+    public enum Problem {
+        TITLE("Please enter the event title"),
+        DESCRIPTION("Please enter the event description"),
+        LOCATION("Please enter the event location"),
+        START_TIME("Please select a start time"),
+        END_TIME("Please select an end time"),
+        END_BEFORE_START("End time cannot be earlier than start time"),
+        MAX_PARTICIPANTS("Please enter the maximum number of participants"),
+        MAX_PARTICIPANTS_NOT_POSITIVE("Number of participants must be greater than 0"),
+        MAX_PARTICIPANTS_INVALID("Please enter a valid number"),
+        COORDINATES_INCOMPLETE("Please enter both latitude and longitude"),
+        LATITUDE_INVALID("Latitude must be a number between -90 and 90"),
+        LONGITUDE_INVALID("Longitude must be a number between -180 and 180"),
+        REPEAT_COUNT_INVALID("Number of occurrences must be a positive number"),
+        REPEAT_UNTIL_BEFORE_START("Repeat end date cannot be earlier than the start time");
+
+        private final String message;
+
+        Problem(String message) {
+            this.message = message;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+    }
+
+    // 返回第一个不满足的规则，全部通过时返回 null；开始、结束时间为 null 表示未填写
+    public static Problem validate(CharSequence title, CharSequence description, CharSequence location,
+                                   Long startTime, Long endTime, CharSequence maxParticipants) {
+        if (TextUtils.isEmpty(title)) {
+            return Problem.TITLE;
+        }
+        if (TextUtils.isEmpty(description)) {
+            return Problem.DESCRIPTION;
+        }
+        if (TextUtils.isEmpty(location)) {
+            return Problem.LOCATION;
+        }
+        if (startTime == null) {
+            return Problem.START_TIME;
+        }
+        if (endTime == null) {
+            return Problem.END_TIME;
+        }
+        if (endTime < startTime) {
+            return Problem.END_BEFORE_START;
+        }
+        if (TextUtils.isEmpty(maxParticipants)) {
+            return Problem.MAX_PARTICIPANTS;
+        }
+        try {
+            if (Integer.parseInt(maxParticipants.toString().trim()) <= 0) {
+                return Problem.MAX_PARTICIPANTS_NOT_POSITIVE;
+            }
+        } catch (NumberFormatException e) {
+            return Problem.MAX_PARTICIPANTS_INVALID;
+        }
+        return null;
+    }
+
+    // 坐标是可选的：两个都不填，或者都是合法的经纬度时返回 null
+    public static Problem validateCoordinates(CharSequence latitude, CharSequence longitude) {
+        boolean hasLatitude = latitude != null && !latitude.toString().trim().isEmpty();
+        boolean hasLongitude = longitude != null && !longitude.toString().trim().isEmpty();
+        if (!hasLatitude && !hasLongitude) {
+            return null;
+        }
+        if (hasLatitude != hasLongitude) {
+            return Problem.COORDINATES_INCOMPLETE;
+        }
+        Double lat = parseCoordinate(latitude);
+        if (lat == null || lat < -90 || lat > 90) {
+            return Problem.LATITUDE_INVALID;
+        }
+        Double lng = parseCoordinate(longitude);
+        if (lng == null || lng < -180 || lng > 180) {
+            return Problem.LONGITUDE_INVALID;
+        }
+        return null;
+    }
+
+    // 重复规则：次数可以不填，填写时必须是正整数；截止时间为 null 表示不限，不能早于第一次的开始时间
+    public static Problem validateRepeat(CharSequence occurrenceCount, Long until, long startTime) {
+        if (!TextUtils.isEmpty(occurrenceCount)) {
+            try {
+                if (Integer.parseInt(occurrenceCount.toString().trim()) <= 0) {
+                    return Problem.REPEAT_COUNT_INVALID;
+                }
+            } catch (NumberFormatException e) {
+                return Problem.REPEAT_COUNT_INVALID;
+            }
+        }
+        if (until != null && until < startTime) {
+            return Problem.REPEAT_UNTIL_BEFORE_START;
+        }
+        return null;
+    }
+
+    // 解析坐标输入，没有填写或不是数字时返回 null
+    public static Double parseCoordinate(CharSequence value) {
+        if (TextUtils.isEmpty(value)) {
+            return null;
+        }
+        try {
+            double parsed = Double.parseDouble(value.toString().trim());
+            return Double.isNaN(parsed) || Double.isInfinite(parsed) ? null : parsed;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
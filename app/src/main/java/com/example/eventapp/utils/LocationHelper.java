@@ -0,0 +1,53 @@
+package com.example.eventapp.utils;
+
+import android.Manifest;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.location.Location;
+import android.location.LocationManager;
+import android.util.Log;
+
+import androidx.core.content.ContextCompat;
+
+// 读取设备最近一次的定位结果，用于“附近的活动”和填写活动坐标
+// 只读取系统缓存的位置，不主动发起定位，所以可以直接在主线程调用
+public class LocationHelper {
+    // 需要申请的定位权限，粗略定位也足够按距离筛选活动
+    public static final String[] PERMISSIONS = {
+            Manifest.permission.ACCESS_FINE_LOCATION,
+            Manifest.permission.ACCESS_COARSE_LOCATION
+    };
+
+    public static boolean hasPermission(Context context) {
+        for (String permission : PERMISSIONS) {
+            if (ContextCompat.checkSelfPermission(context, permission) == PackageManager.PERMISSION_GRANTED) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // 返回各定位来源中最新的一次位置，没有权限或还没有缓存的位置时返回 null
+    public static Location getLastKnownLocation(Context context) {
+        if (!hasPermission(context)) {
+            return null;
+        }
+        LocationManager locationManager = (LocationManager) context.getSystemService(Context.LOCATION_SERVICE);
+        if (locationManager == null) {
+            return null;
+        }
+        Location best = null;
+        try {
+            for (String provider : locationManager.getProviders(true)) {
+                Location location = locationManager.getLastKnownLocation(provider);
+                if (location != null && (best == null || location.getTime() > best.getTime())) {
+                    best = location;
+                }
+            }
+        } catch (SecurityException e) {
+            Log.e("LocationHelper", "读取位置时权限被拒绝: " + e.getMessage());
+            return null;
+        }
+        return best;
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.eventapp.utils;
+
+import android.graphics.Typeface;
+import android.text.SpannableStringBuilder;
+import android.text.Spanned;
+import android.text.style.ForegroundColorSpan;
+import android.text.style.StyleSpan;
+
+public class SearchHighlighter {
+    // 搜索摘要中命中词的起止标记，由数据库生成摘要时插入
+    public static final String MATCH_START = "\u0001";
+    public static final String MATCH_END = "\u0002";
+
+    // 把摘要中的标记转换成加粗、着色的文字
+    public static CharSequence highlight(String snippet, int color) {
+        SpannableStringBuilder builder = new SpannableStringBuilder();
+        if (snippet == null) {
+            return builder;
+        }
+        int index = 0;
+        while (index < snippet.length()) {
+            int start = snippet.indexOf(MATCH_START, index);
+            if (start < 0) {
+                builder.append(snippet, index, snippet.length());
+                break;
+            }
+            builder.append(snippet, index, start);
+            int end = snippet.indexOf(MATCH_END, start + MATCH_START.length());
+            if (end < 0) {
+                end = snippet.length();
+            }
+            int spanStart = builder.length();
+            builder.append(snippet, start + MATCH_START.length(), end);
+            builder.setSpan(new StyleSpan(Typeface.BOLD), spanStart, builder.length(),
+                    Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+            builder.setSpan(new ForegroundColorSpan(color), spanStart, builder.length(),
+                    Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+            index = end + MATCH_END.length();
+        }
+        return builder;
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.eventapp.database;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class EventImporterTest {
+    private static final String HEADER =
+            "\uFEFFTitle,description,location,start_time,end_time,max_participants\r\n";
+
+    private static EventImporter.RowSource csv(String text) throws IOException {
+        return new EventImporter.CsvRowSource(new StringReader(text));
+    }
+
+    @Test
+    public void readsPlainAndQuotedFields() throws IOException {
+        EventImporter.RowSource rows = csv(HEADER
+                + "Meetup,\"Talks, food and \"\"networking\"\"\",Room 1,2024-05-01 18:00,2024-05-01 20:00,30\r\n"
+                + "\"Two\nlines\",,Hall,1714557600000,1714564800000,5\n");
+        Map<String, String> row = rows.next();
+        // 表头去掉 BOM 并转成小写
+        assertEquals("Meetup", row.get("title"));
+        assertEquals("Talks, food and \"networking\"", row.get("description"));
+        assertEquals("30", row.get("max_participants"));
+
+        row = rows.next();
+        assertEquals("Two\nlines", row.get("title"));
+        assertEquals("", row.get("description"));
+        assertEquals("5", row.get("max_participants"));
+        assertNull(rows.next());
+    }
+
+    @Test
+    public void skipsBlankLinesAndToleratesShortRows() throws IOException {
+        EventImporter.RowSource rows = csv(HEADER + "\n\r\nOnly title,desc\n");
+        Map<String, String> row = rows.next();
+        assertEquals("Only title", row.get("title"));
+        assertEquals("desc", row.get("description"));
+        assertNull(row.get("location"));
+        assertNull(rows.next());
+    }
+
+    @Test
+    public void rejectsMissingColumnsAndEmptyFiles() {
+        try {
+            csv("title,description\nA,B\n");
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getMessage().startsWith("Missing column"));
+        }
+        try {
+            csv("");
+            fail();
+        } catch (IOException e) {
+            assertEquals("Empty file", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.eventapp.database;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class EventTimeIndexTest {
+    // 按 (start, id) 排好序：id、开始时间、结束时间
+    private static EventTimeIndex.Snapshot snapshot() {
+        return new EventTimeIndex.Snapshot(
+                new long[]{1, 2, 3, 4, 5},
+                new long[]{10, 20, 20, 30, 40},
+                new long[]{15, 50, 25, 35, 45});
+    }
+
+    @Test
+    public void startRangeAndPaging() {
+        EventTimeIndex.Snapshot index = snapshot();
+        assertArrayEquals(new long[]{2, 3, 4}, index.query(20, 30, EventTimeIndex.END_ANY, 0,
+                DatabaseHelper.FIRST_PAGE, DatabaseHelper.FIRST_PAGE, 10));
+        assertArrayEquals(new long[]{1, 2}, index.query(0, 100, EventTimeIndex.END_ANY, 0,
+                DatabaseHelper.FIRST_PAGE, DatabaseHelper.FIRST_PAGE, 2));
+        // 从上一页最后一条 (20, 2) 之后继续
+        assertArrayEquals(new long[]{3, 4}, index.query(0, 100, EventTimeIndex.END_ANY, 0, 20, 2, 2));
+        assertEquals(0, index.query(50, 40, EventTimeIndex.END_ANY, 0,
+                DatabaseHelper.FIRST_PAGE, DatabaseHelper.FIRST_PAGE, 10).length);
+    }
+
+    @Test
+    public void endConditionsSkipNonMatchingRows() {
+        EventTimeIndex.Snapshot index = snapshot();
+        // 在 33 时进行中：开始不晚于 33，结束不早于 33
+        assertArrayEquals(new long[]{2, 4}, index.query(Long.MIN_VALUE, 33, EventTimeIndex.END_AT_LEAST, 33,
+                DatabaseHelper.FIRST_PAGE, DatabaseHelper.FIRST_PAGE, 10));
+        assertArrayEquals(new long[]{1, 3}, index.query(Long.MIN_VALUE, Long.MAX_VALUE, EventTimeIndex.END_BEFORE, 30,
+                DatabaseHelper.FIRST_PAGE, DatabaseHelper.FIRST_PAGE, 10));
+    }
+
+    @Test
+    public void withReplacesAnExistingIdInPlace() {
+        EventTimeIndex.Snapshot index = snapshot().with(2, 35, 60);
+        assertArrayEquals(new long[]{1, 3, 4, 2, 5}, index.ids);
+        assertArrayEquals(new long[]{10, 20, 30, 35, 40}, index.starts);
+        assertArrayEquals(new long[]{15, 25, 35, 60, 45}, index.ends);
+        // 线段树也随之更新
+        assertArrayEquals(new long[]{2}, index.query(Long.MIN_VALUE, Long.MAX_VALUE, EventTimeIndex.END_AT_LEAST, 50,
+                DatabaseHelper.FIRST_PAGE, DatabaseHelper.FIRST_PAGE, 10));
+
+        // 往前移动、位置不变和新增
+        assertArrayEquals(new long[]{5, 1, 2, 3, 4}, snapshot().with(5, 5, 6).ids);
+        assertArrayEquals(new long[]{1, 2, 3, 4, 5}, snapshot().with(3, 20, 99).ids);
+        assertArrayEquals(new long[]{1, 2, 3, 6, 4, 5}, snapshot().with(6, 20, 21).ids);
+    }
+
+    @Test
+    public void withoutDropsTheRow() {
+        EventTimeIndex.Snapshot index = snapshot().without(3);
+        assertArrayEquals(new long[]{1, 2, 4, 5}, index.ids);
+        assertSame(index, index.without(42));
+        assertEquals(0, new EventTimeIndex.Snapshot(new long[0], new long[0], new long[0])
+                .query(0, 100, EventTimeIndex.END_ANY, 0, DatabaseHelper.FIRST_PAGE, DatabaseHelper.FIRST_PAGE, 10).length);
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.eventapp.database;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.*;
+
+public class FullTextSearchTest {
+    @Test
+    public void matchQueryQuotesEachTermAsPrefix() {
+        assertEquals("\"tech*\" \"meetup*\"", FullTextSearch.toMatchQuery("  tech   meetup "));
+        // 查询语法和通配符不会原样传给 FTS
+        assertEquals("\"a*\" \"OR*\" \"b*\"", FullTextSearch.toMatchQuery("a OR b*"));
+        assertEquals("\"say*\" \"hi*\"", FullTextSearch.toMatchQuery("\"say hi\""));
+        assertNull(FullTextSearch.toMatchQuery("  * \" "));
+        assertNull(FullTextSearch.toMatchQuery(null));
+    }
+
+    @Test
+    public void cjkKeywordsNeedSubstringMatch() {
+        assertTrue(FullTextSearch.needsSubstringMatch("会议"));
+        assertTrue(FullTextSearch.needsSubstringMatch("AI 沙龙"));
+        assertTrue(FullTextSearch.needsSubstringMatch("カフェ"));
+        assertTrue(FullTextSearch.needsSubstringMatch("회의"));
+        assertFalse(FullTextSearch.needsSubstringMatch("meetup 2024"));
+        assertFalse(FullTextSearch.needsSubstringMatch(null));
+    }
+
+    @Test
+    public void likePatternsEscapeWildcards() {
+        assertArrayEquals(new String[]{"%会议%", "%北京%"}, FullTextSearch.toLikePatterns(" 会议  北京 "));
+        assertArrayEquals(new String[]{"%50\\%\\_off\\\\%"}, FullTextSearch.toLikePatterns("50%_off\\"));
+        assertNull(FullTextSearch.toLikePatterns("   "));
+    }
+
+    @Test
+    public void rankPrefersTitleHits() {
+        // 1 个短语、3 列、10 行；各列平均词数和本行词数都相同，只有命中的列不同
+        byte[] titleHit = matchInfo(1, 3, 10, 5, 5, 5, 5, 5, 5, 1, 1, 2, 0, 0, 0, 0, 0, 0);
+        byte[] descriptionHit = matchInfo(1, 3, 10, 5, 5, 5, 5, 5, 5, 0, 0, 0, 1, 1, 2, 0, 0, 0);
+        assertTrue(FullTextSearch.rank(titleHit) > FullTextSearch.rank(descriptionHit));
+        assertTrue(FullTextSearch.rank(descriptionHit) > 0);
+        assertEquals(0, FullTextSearch.rank(null), 0);
+    }
+
+    private static byte[] matchInfo(int... values) {
+        ByteBuffer buffer = ByteBuffer.allocate(values.length * 4).order(ByteOrder.nativeOrder());
+        for (int value : values) {
+            buffer.putInt(value);
+        }
+        return buffer.array();
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.eventapp.database;
+
+import com.example.eventapp.model.Event;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class LazyEventListTest {
+    // 窗口查询先排队，由测试决定什么时候执行；主线程回调直接执行
+    private final Queue<Runnable> pendingLoads = new ArrayDeque<>();
+    private final List<long[]> requestedWindows = new ArrayList<>();
+    private final List<String> notifications = new ArrayList<>();
+    private final Set<Long> deletedIds = new HashSet<>();
+    private boolean failLoads;
+    private LazyEventList list;
+
+    @Before
+    public void setUp() {
+        long[] ids = new long[45];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = 100 + i;
+        }
+        list = new LazyEventList(ids, this::load, pendingLoads::add, Runnable::run);
+        list.setListener(new LazyEventList.Listener() {
+            @Override
+            public void onWindowLoaded(int start, int count) {
+                notifications.add("loaded " + start + "+" + count);
+            }
+
+            @Override
+            public void onRemoved(int position) {
+                notifications.add("removed " + position);
+            }
+        });
+    }
+
+    @Test
+    public void unloadedRowsReturnNullUntilTheirWindowArrives() {
+        assertNull(list.get(3));
+        assertNull(list.get(7));
+        // 同一个窗口只请求一次
+        assertEquals(1, pendingLoads.size());
+        assertEquals(100, list.getId(0));
+
+        runLoads();
+        assertEquals(1, requestedWindows.size());
+        assertEquals(LazyEventList.WINDOW_SIZE, requestedWindows.get(0).length);
+        assertEquals(103, list.get(3).getId());
+        assertEquals("loaded 0+20", notifications.get(0));
+    }
+
+    @Test
+    public void deletedRowsAreRemovedWhenTheirWindowLoads() {
+        deletedIds.add(102L);
+        deletedIds.add(105L);
+        assertNull(list.get(0));
+        runLoads();
+
+        assertEquals(43, list.size());
+        assertEquals("removed 2", notifications.get(0));
+        assertEquals("removed 4", notifications.get(1));
+        assertEquals("loaded 0+18", notifications.get(2));
+        assertEquals(103, list.get(2).getId());
+        assertEquals(106, list.getId(4));
+        long[] ids = list.snapshotIds();
+        assertEquals(43, ids.length);
+        assertEquals(144, ids[42]);
+    }
+
+    @Test
+    public void failedLoadKeepsRowsAndRetries() {
+        failLoads = true;
+        assertNull(list.get(0));
+        runLoads();
+        assertEquals(45, list.size());
+        assertTrue(notifications.isEmpty());
+
+        failLoads = false;
+        assertNull(list.get(0));
+        runLoads();
+        assertNotNull(list.get(0));
+    }
+
+    @Test
+    public void readingPastHalfAWindowPrefetchesTheNext() {
+        list.get(0);
+        runLoads();
+        list.get(5);
+        assertTrue(pendingLoads.isEmpty());
+
+        list.get(15);
+        runLoads();
+        assertEquals(2, requestedWindows.size());
+        assertEquals(120, requestedWindows.get(1)[0]);
+        assertNotNull(list.get(25));
+
+        // 最后一个窗口不足 WINDOW_SIZE 行
+        list.get(35);
+        runLoads();
+        assertEquals(5, requestedWindows.get(2).length);
+        assertNotNull(list.get(44));
+    }
+
+    private List<Event> load(long[] ids) {
+        requestedWindows.add(ids);
+        if (failLoads) {
+            return null;
+        }
+        List<Event> events = new ArrayList<>();
+        // 返回顺序与 id 顺序无关
+        for (int i = ids.length - 1; i >= 0; i--) {
+            if (!deletedIds.contains(ids[i])) {
+                Event event = new Event();
+                event.setId(ids[i]);
+                events.add(event);
+            }
+        }
+        return events;
+    }
+
+    private void runLoads() {
+        Runnable load;
+        while ((load = pendingLoads.poll()) != null) {
+            load.run();
+        }
+    }
+}
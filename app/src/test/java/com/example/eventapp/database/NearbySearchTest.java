@@ -0,0 +1,47 @@
+package com.example.eventapp.database;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class NearbySearchTest {
+    private static final double DELTA = 1e-6;
+
+    @Test
+    public void boxContainsTheCircle() {
+        double[][] boxes = NearbySearch.boundingBoxes(39.9, 116.4, 10);
+        assertEquals(1, boxes.length);
+        double[] box = boxes[0];
+        // 正北、正东 10 千米处的点都在矩形的边上或内部
+        double deltaLat = box[1] - 39.9;
+        assertEquals(10, NearbySearch.distanceKm(39.9, 116.4, 39.9 + deltaLat, 116.4), 1e-3);
+        assertEquals(39.9 - deltaLat, box[0], DELTA);
+        assertTrue(NearbySearch.distanceKm(39.9, 116.4, 39.9, box[3]) >= 10);
+        assertEquals(116.4 * 2, box[2] + box[3], DELTA);
+    }
+
+    @Test
+    public void circleAcrossTheAntimeridianIsSplit() {
+        double[][] boxes = NearbySearch.boundingBoxes(0, 179.95, 20);
+        assertEquals(2, boxes.length);
+        assertEquals(180, boxes[0][3], DELTA);
+        assertEquals(-180, boxes[1][2], DELTA);
+        assertTrue(boxes[0][2] < 179.95);
+        assertTrue(boxes[1][3] > -180 && boxes[1][3] < -179.7);
+
+        boxes = NearbySearch.boundingBoxes(0, -179.95, 20);
+        assertEquals(2, boxes.length);
+        assertEquals(180, boxes[0][3], DELTA);
+        assertEquals(-180, boxes[1][2], DELTA);
+    }
+
+    @Test
+    public void circleAroundAPoleCoversAllLongitudes() {
+        double[][] boxes = NearbySearch.boundingBoxes(89.99, 10, 50);
+        assertEquals(1, boxes.length);
+        assertEquals(90, boxes[0][1], DELTA);
+        assertEquals(-180, boxes[0][2], DELTA);
+        assertEquals(180, boxes[0][3], DELTA);
+        assertTrue(boxes[0][0] < 89.99);
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.eventapp.database;
+
+import com.example.eventapp.model.Event;
+import com.example.eventapp.model.EventSeries;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+
+import static org.junit.Assert.*;
+
+public class RecurrenceTest {
+    private static long time(int year, int month, int day, int hour) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(year, month - 1, day, hour, 0);
+        return calendar.getTimeInMillis();
+    }
+
+    private static EventSeries series(EventSeries.Frequency frequency, int interval, long start) {
+        EventSeries series = new EventSeries();
+        series.setId(7);
+        series.setTitle("Weekly sync");
+        series.setFrequency(frequency);
+        series.setInterval(interval);
+        series.setStartTime(start);
+        series.setEndTime(start + 60 * 60 * 1000L);
+        return series;
+    }
+
+    @Test
+    public void occurrenceIdRoundTrips() {
+        long id = Recurrence.occurrenceId(123, 45);
+        assertTrue(Recurrence.isOccurrenceId(id));
+        assertFalse(Recurrence.isOccurrenceId(1));
+        assertEquals(123, Recurrence.seriesIdOf(id));
+        assertEquals(45, Recurrence.indexOf(id));
+    }
+
+    @Test
+    public void startsAreComputedFromTheFirstOccurrence() {
+        EventSeries weekly = series(EventSeries.Frequency.WEEKLY, 2, time(2024, 1, 1, 9));
+        assertEquals(time(2024, 1, 29, 9), Recurrence.startOf(weekly, 2));
+        // 按月重复时没有 31 日的月份落在月末，之后的月份仍回到 31 日
+        EventSeries monthly = series(EventSeries.Frequency.MONTHLY, 1, time(2024, 1, 31, 18));
+        assertEquals(time(2024, 2, 29, 18), Recurrence.startOf(monthly, 1));
+        assertEquals(time(2024, 3, 31, 18), Recurrence.startOf(monthly, 2));
+    }
+
+    @Test
+    public void firstIndexAtOrAfterFindsTheNextStart() {
+        EventSeries daily = series(EventSeries.Frequency.DAILY, 1, time(2024, 3, 1, 9));
+        assertEquals(0, Recurrence.firstIndexAtOrAfter(daily, time(2023, 1, 1, 0)));
+        assertEquals(10, Recurrence.firstIndexAtOrAfter(daily, time(2024, 3, 11, 9)));
+        assertEquals(11, Recurrence.firstIndexAtOrAfter(daily, time(2024, 3, 11, 10)));
+    }
+
+    @Test
+    public void lastIndexHonoursCountAndUntil() {
+        EventSeries daily = series(EventSeries.Frequency.DAILY, 1, time(2024, 3, 1, 9));
+        assertEquals(Recurrence.MAX_OCCURRENCES - 1, Recurrence.lastIndex(daily));
+        assertNull(Recurrence.lastStart(daily));
+
+        daily.setOccurrenceCount(5);
+        assertEquals(4, Recurrence.lastIndex(daily));
+        // 截止时间正好是某一次的开始时间时包含这一次
+        daily.setUntil(time(2024, 3, 3, 9));
+        assertEquals(2, Recurrence.lastIndex(daily));
+        assertEquals(Long.valueOf(time(2024, 3, 3, 9)), Recurrence.lastStart(daily));
+
+        daily.setUntil(time(2024, 2, 1, 0));
+        assertEquals(-1, Recurrence.lastIndex(daily));
+    }
+
+    @Test
+    public void occurrenceCopiesTheSeries() {
+        EventSeries weekly = series(EventSeries.Frequency.WEEKLY, 1, time(2024, 1, 1, 9));
+        Event event = Recurrence.occurrence(weekly, 3);
+        assertEquals(Recurrence.occurrenceId(7, 3), event.getId());
+        assertEquals("Weekly sync", event.getTitle());
+        assertEquals(time(2024, 1, 22, 9), event.getStartTime());
+        assertEquals(time(2024, 1, 22, 10), event.getEndTime());
+        assertEquals(0, event.getCurrentParticipants());
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.eventapp.database;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class UserScheduleIndexTest {
+    // 按开始时间排序；id 2 持续很久，后面较短的活动结束得更早
+    private static UserScheduleIndex.Schedule schedule() {
+        return new UserScheduleIndex.Schedule(
+                new long[]{1, 2, 3, 4},
+                new long[]{0, 10, 20, 40},
+                new long[]{5, 100, 30, 50});
+    }
+
+    @Test
+    public void overlappingReturnsRowsInStartOrder() {
+        assertArrayEquals(new long[]{2, 3}, schedule().overlapping(25, 35, -1));
+        assertArrayEquals(new long[]{1, 2}, schedule().overlapping(0, 15, -1));
+    }
+
+    @Test
+    public void touchingIntervalsDoNotOverlap() {
+        // 结束时间等于开始时间不算冲突
+        assertArrayEquals(new long[]{2}, schedule().overlapping(30, 40, -1));
+        assertArrayEquals(new long[0], schedule().overlapping(100, 200, -1));
+        assertArrayEquals(new long[0], schedule().overlapping(-10, 0, -1));
+    }
+
+    @Test
+    public void excludedIdIsSkipped() {
+        assertArrayEquals(new long[]{3}, schedule().overlapping(25, 35, 2));
+        assertArrayEquals(new long[0], new UserScheduleIndex.Schedule(new long[0], new long[0], new long[0])
+                .overlapping(0, 10, -1));
+    }
+}